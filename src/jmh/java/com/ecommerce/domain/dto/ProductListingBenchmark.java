@@ -0,0 +1,130 @@
+package com.ecommerce.domain.dto;
+
+import com.ecommerce.domain.model.Category;
+import com.ecommerce.domain.model.Product;
+import com.ecommerce.domain.model.ProductImage;
+import com.ecommerce.domain.model.Review;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// One page of /api/products, materialized from the same rows and serialized to JSON: as the
+// Product entities the endpoint returned before, with their images and reviews loaded, and as
+// the ProductSummaryDTO projections it returns now. The payload sizes are printed at setup;
+// run with the GC profiler for the allocation per page (gc.alloc.rate.norm):
+//   mvn -Pbenchmark test-compile exec:exec -Djmh.args="ProductListingBenchmark -prof gc"
+// The entities' back references to their product are left unset, as Jackson would otherwise
+// recurse through them, so the entity numbers are a lower bound.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ProductListingBenchmark {
+    
+    private static final int PAGE_SIZE = 20;
+    private static final int IMAGES_PER_PRODUCT = 4;
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 3, 1, 12, 0);
+    
+    @Param({"5", "50"})
+    int reviewsPerProduct;
+    
+    // Configured like the Quarkus default mapper
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .findAndRegisterModules()
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+        .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+    
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        System.out.printf("%nJSON bytes per page of %d: entities %d, summaries %d%n", PAGE_SIZE,
+            entities().length, summaries().length);
+    }
+    
+    @Benchmark
+    public byte[] entities() throws JsonProcessingException {
+        List<Product> page = new ArrayList<>(PAGE_SIZE);
+        for (long id = 1; id <= PAGE_SIZE; id++) {
+            page.add(product(id));
+        }
+        return objectMapper.writeValueAsBytes(page);
+    }
+    
+    @Benchmark
+    public byte[] summaries() throws JsonProcessingException {
+        List<ProductSummaryDTO> page = new ArrayList<>(PAGE_SIZE);
+        for (long id = 1; id <= PAGE_SIZE; id++) {
+            page.add(new ProductSummaryDTO(id, name(id), price(id), imageUrl(id, 0), 4.2, 12, CREATED_AT));
+        }
+        return objectMapper.writeValueAsBytes(page);
+    }
+    
+    private Product product(long id) {
+        Category category = new Category();
+        category.setId(id % 8);
+        category.setName("Category " + id % 8);
+        category.setDescription("Everything in category " + id % 8);
+        category.setActive(true);
+        category.setCreatedAt(CREATED_AT);
+        category.setUpdatedAt(CREATED_AT);
+        
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name(id));
+        product.setDescription("A sturdy everyday product with a long description of its materials, " +
+            "sizing and care instructions, as merchants tend to write them. Item " + id + ".");
+        product.setPrice(price(id));
+        product.setStockQuantity(12);
+        product.setCategory(category);
+        product.setAverageRating(4.2);
+        product.setVersion(3L);
+        product.setCreatedAt(CREATED_AT);
+        for (int i = 0; i < IMAGES_PER_PRODUCT; i++) {
+            ProductImage image = new ProductImage();
+            image.setId(id * 100 + i);
+            image.setImageUrl(imageUrl(id, i));
+            image.setIsCover(i == 0);
+            product.getImages().add(image);
+        }
+        for (int i = 0; i < reviewsPerProduct; i++) {
+            Review review = new Review();
+            review.setId(id * 1000 + i);
+            review.setRating(1 + i % 5);
+            review.setComment("Review " + i + ": does what it says, arrived quickly, would buy again.");
+            review.setUserId("user-" + i);
+            review.setCreatedAt(CREATED_AT);
+            review.setHelpfulVotes(i % 7);
+            product.getReviews().add(review);
+        }
+        return product;
+    }
+    
+    private static String name(long id) {
+        return "Everyday product " + id;
+    }
+    
+    private static BigDecimal price(long id) {
+        return BigDecimal.valueOf(1999 + id * 100, 2);
+    }
+    
+    private static String imageUrl(long id, int index) {
+        return "https://cdn.example.com/products/" + id + "/" + index + ".jpg";
+    }
+}
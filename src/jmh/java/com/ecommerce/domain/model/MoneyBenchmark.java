@@ -0,0 +1,93 @@
+package com.ecommerce.domain.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Pricing a cart the way checkout does: line subtotals, the total, a percentage coupon capped
+// at a maximum discount, and the amount due. bigDecimal is the arithmetic before amounts moved
+// to minor units, minorUnits is what CartState and CouponService do now, and money is the same
+// on Money values. Run with the GC profiler to see the allocation per cart (gc.alloc.rate.norm):
+//   mvn -Pbenchmark test-compile exec:exec -Djmh.args="MoneyBenchmark -prof gc"
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MoneyBenchmark {
+    
+    private static final BigDecimal HUNDRED = new BigDecimal("100");
+    
+    @Param({"5", "50"})
+    int lines;
+    
+    private BigDecimal[] decimalPrices;
+    private long[] minorPrices;
+    private int[] quantities;
+    private BigDecimal decimalPercent;
+    private BigDecimal decimalMaximum;
+    private long percentBasisPoints;
+    private long minorMaximum;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        decimalPrices = new BigDecimal[lines];
+        minorPrices = new long[lines];
+        quantities = new int[lines];
+        for (int i = 0; i < lines; i++) {
+            minorPrices[i] = 99 + random.nextInt(50_000);
+            decimalPrices[i] = Money.toDecimal(minorPrices[i]);
+            quantities[i] = 1 + random.nextInt(4);
+        }
+        decimalPercent = new BigDecimal("12.50");
+        decimalMaximum = new BigDecimal("150.00");
+        percentBasisPoints = Money.toBasisPoints(decimalPercent);
+        minorMaximum = Money.toMinor(decimalMaximum);
+    }
+    
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < lines; i++) {
+            total = total.add(decimalPrices[i].multiply(BigDecimal.valueOf(quantities[i])));
+        }
+        BigDecimal discount = total.multiply(decimalPercent.divide(HUNDRED))
+            .setScale(2, Money.DEFAULT_ROUNDING)
+            .min(decimalMaximum);
+        return total.subtract(discount);
+    }
+    
+    @Benchmark
+    public long minorUnits() {
+        long total = 0;
+        for (int i = 0; i < lines; i++) {
+            total = Math.addExact(total, Math.multiplyExact(minorPrices[i], quantities[i]));
+        }
+        long discount = Math.min(Money.percentage(total, percentBasisPoints, Money.DEFAULT_ROUNDING), minorMaximum);
+        return total - discount;
+    }
+    
+    @Benchmark
+    public Money money() {
+        Money total = Money.zero();
+        for (int i = 0; i < lines; i++) {
+            total = total.plus(Money.ofMinor(minorPrices[i]).times(quantities[i]));
+        }
+        Money discount = total.percentage(percentBasisPoints, Money.DEFAULT_ROUNDING)
+            .min(Money.ofMinor(minorMaximum));
+        return total.minus(discount);
+    }
+}
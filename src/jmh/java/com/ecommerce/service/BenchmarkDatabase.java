@@ -0,0 +1,30 @@
+package com.ecommerce.service;
+
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.sqlclient.PoolOptions;
+
+// Connection pool for the database benchmarks, configured from the same DB_* variables as
+// application.yml. The defaults are the docker-compose Postgres.
+final class BenchmarkDatabase {
+    
+    private BenchmarkDatabase() {
+    }
+    
+    static PgPool pool(Vertx vertx, int maxSize) {
+        PgConnectOptions connect = new PgConnectOptions()
+            .setHost(env("DB_HOST", "localhost"))
+            .setPort(Integer.parseInt(env("DB_PORT", "5432")))
+            .setDatabase(env("DB_NAME", "ecommerce"))
+            .setUser(env("DB_USERNAME", "postgres"))
+            .setPassword(env("DB_PASSWORD", "postgres"))
+            .setCachePreparedStatements(true);
+        return PgPool.pool(vertx, connect, new PoolOptions().setMaxSize(maxSize));
+    }
+    
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isBlank() ? value : defaultValue;
+    }
+}
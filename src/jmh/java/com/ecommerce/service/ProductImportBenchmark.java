@@ -0,0 +1,115 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.dto.ImportJobDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// End-to-end throughput of a product import through ProductImportService: spooling, parsing,
+// validation and the pipelined batch inserts, timed until the job reports completion. The
+// score is time per row, so 100 us/op or less meets the 10k rows/s target. Needs a Postgres
+// migrated by the application (the products and product_import_jobs tables):
+//   mvn -Pbenchmark test-compile exec:exec -Djmh.args="ProductImportBenchmark"
+// The imported rows are deleted again after every run.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class ProductImportBenchmark {
+    
+    private static final int ROWS = 100_000;
+    private static final String NAME_PREFIX = "bench-import-";
+    
+    @Param({"ndjson", "csv"})
+    String format;
+    
+    private Vertx vertx;
+    private ValidatorFactory validatorFactory;
+    private ProductImportService service;
+    private byte[] file;
+    
+    @Setup
+    public void setUp() {
+        vertx = Vertx.vertx();
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        service = new ProductImportService();
+        service.pool = BenchmarkDatabase.pool(vertx, 4);
+        service.validator = validatorFactory.getValidator();
+        service.objectMapper = new ObjectMapper();
+        service.abandonedAfter = Duration.ofMinutes(5);
+        service.retention = Duration.ofDays(30);
+        
+        StringBuilder text = new StringBuilder(ROWS * 120);
+        if (format.equals("csv")) {
+            text.append("name,description,price,stock_quantity,active\n");
+        }
+        for (int i = 0; i < ROWS; i++) {
+            String name = NAME_PREFIX + i;
+            String description = "Imported product number " + i + ", with a short merchant description";
+            String price = (i % 500) + 1 + "." + (10 + i % 90);
+            int stock = 1 + i % 250;
+            if (format.equals("csv")) {
+                text.append(name).append(",\"").append(description).append("\",")
+                    .append(price).append(',').append(stock).append(",true\n");
+            } else {
+                text.append("{\"name\":\"").append(name).append("\",\"description\":\"").append(description)
+                    .append("\",\"price\":").append(price).append(",\"stockQuantity\":").append(stock)
+                    .append(",\"active\":true}\n");
+            }
+        }
+        file = text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+    
+    @TearDown(Level.Invocation)
+    public void deleteImportedRows() {
+        service.pool.preparedQuery("DELETE FROM products WHERE name LIKE $1")
+            .execute(Tuple.of(NAME_PREFIX + "%"))
+            .await().indefinitely();
+    }
+    
+    @TearDown
+    public void tearDown() {
+        service.shutdown();
+        service.pool.closeAndAwait();
+        validatorFactory.close();
+        vertx.closeAndAwait();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public ImportJobDTO importFile() throws InterruptedException {
+        String contentType = format.equals("csv") ? "text/csv" : "application/x-ndjson";
+        ImportJobDTO job = service.startImport(new ByteArrayInputStream(file), contentType);
+        while (job.getStatus().equals("QUEUED") || job.getStatus().equals("RUNNING")) {
+            Thread.sleep(20);
+            job = service.getJob(job.getId());
+        }
+        if (!job.getStatus().equals("COMPLETED") || job.getRowsImported() != ROWS) {
+            throw new IllegalStateException("Import " + job.getId() + " ended " + job.getStatus()
+                + " with " + job.getRowsImported() + " of " + ROWS + " rows: " + job.getFailure());
+        }
+        return job;
+    }
+}
@@ -0,0 +1,159 @@
+package com.ecommerce.service;
+
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.RowSet;
+import io.vertx.mutiny.sqlclient.Tuple;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Latency distribution (read p0.99 off the SampleTime output) of one page of search results:
+// answered by ProductSearchIndex plus a primary-key query for the page, against the
+// "lower(name) LIKE '%term%'" scan the search used before. Runs against a Postgres and fills
+// its own bench_products table, so the application schema is not needed:
+//   mvn -Pbenchmark test-compile exec:exec -Djmh.args="ProductSearchBenchmark"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+public class ProductSearchBenchmark {
+    
+    private static final int PAGE_SIZE = 20;
+    private static final int INSERT_BATCH_SIZE = 1000;
+    private static final int VOCABULARY_SIZE = 20_000;
+    private static final String[] SYLLABLES = {
+        "ka", "lo", "mi", "ne", "ru", "ta", "vo", "shi", "pe", "dra", "el", "on", "ix", "ba", "gu", "zo" };
+    
+    private static final String LIKE_PAGE =
+        "SELECT id, name, description, price FROM bench_products " +
+        "WHERE lower(name) LIKE $1 OR lower(description) LIKE $1 ORDER BY id LIMIT " + PAGE_SIZE;
+    private static final String PAGE_BY_IDS =
+        "SELECT id, name, description, price FROM bench_products WHERE id = ANY($1)";
+    
+    @Param({"100000"})
+    int products;
+    
+    private Vertx vertx;
+    private PgPool pool;
+    private ProductSearchIndex index;
+    private String[] queries;
+    private int next;
+    
+    @Setup
+    public void setUp() {
+        vertx = Vertx.vertx();
+        pool = BenchmarkDatabase.pool(vertx, 4);
+        index = new ProductSearchIndex();
+        index.ratingWeight = 0.2;
+        index.salesWeight = 0.3;
+        index.favoritesWeight = 0.1;
+        
+        Random random = new Random(42);
+        String[] vocabulary = vocabulary(random);
+        pool.query("DROP TABLE IF EXISTS bench_products").execute().await().indefinitely();
+        pool.query("CREATE TABLE bench_products (id BIGINT PRIMARY KEY, name VARCHAR(255) NOT NULL, " +
+            "description TEXT, price DECIMAL(10, 2) NOT NULL)").execute().await().indefinitely();
+        
+        List<Tuple> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (long id = 1; id <= products; id++) {
+            String name = words(random, vocabulary, 3);
+            String description = words(random, vocabulary, 25);
+            index.index(id, name, description);
+            batch.add(Tuple.of(id, name, description, BigDecimal.valueOf(random.nextInt(100_000), 2)));
+            if (batch.size() == INSERT_BATCH_SIZE || id == products) {
+                pool.preparedQuery("INSERT INTO bench_products VALUES ($1, $2, $3, $4)")
+                    .executeBatch(batch)
+                    .await().indefinitely();
+                batch.clear();
+            }
+        }
+        pool.query("ANALYZE bench_products").execute().await().indefinitely();
+        
+        // Whole words and prefixes, common and rare alike
+        queries = new String[1024];
+        for (int i = 0; i < queries.length; i++) {
+            String word = vocabulary[skewed(random)];
+            queries[i] = i % 2 == 0 ? word : word.substring(0, Math.min(word.length(), 4));
+        }
+    }
+    
+    @TearDown
+    public void tearDown() {
+        pool.query("DROP TABLE IF EXISTS bench_products").execute().await().indefinitely();
+        pool.closeAndAwait();
+        vertx.closeAndAwait();
+    }
+    
+    @Benchmark
+    public RowSet<Row> likeScan() {
+        return pool.preparedQuery(LIKE_PAGE)
+            .execute(Tuple.of("%" + nextQuery() + "%"))
+            .await().indefinitely();
+    }
+    
+    // Same steps as ProductService: match and rank in memory, then load only the page
+    @Benchmark
+    public RowSet<Row> indexedSearch() {
+        String query = nextQuery();
+        Set<Long> matches = index.search(query);
+        List<Long> ranked = index.rank(query, matches);
+        Long[] page = ranked.subList(0, Math.min(PAGE_SIZE, ranked.size())).toArray(new Long[0]);
+        return pool.preparedQuery(PAGE_BY_IDS)
+            .execute(Tuple.of(page))
+            .await().indefinitely();
+    }
+    
+    private String nextQuery() {
+        return queries[next++ & (queries.length - 1)];
+    }
+    
+    private static String[] vocabulary(Random random) {
+        Set<String> words = new LinkedHashSet<>();
+        while (words.size() < VOCABULARY_SIZE) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int i = 0; i < syllables; i++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            words.add(word.toString());
+        }
+        return words.toArray(new String[0]);
+    }
+    
+    private static String words(Random random, String[] vocabulary, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(vocabulary[skewed(random)]);
+        }
+        return text.toString();
+    }
+    
+    // Word frequencies in product text are heavily skewed towards a few common words
+    private static int skewed(Random random) {
+        double r = random.nextDouble();
+        return (int) (r * r * r * VOCABULARY_SIZE);
+    }
+}
@@ -0,0 +1,16 @@
+package com.ecommerce.domain.dto;
+
+import lombok.Data;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import java.util.List;
+
+@Data
+public class CartBatchDTO {
+    // Applied in order, all or nothing
+    @NotEmpty(message = "At least one operation is required")
+    @Size(max = 200, message = "At most 200 operations per batch")
+    private List<@Valid CartOperationDTO> operations;
+}
@@ -0,0 +1,16 @@
+package com.ecommerce.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class CartDTO {
+    // Null until the cart has been written to the database
+    private Long id;
+    private String userId;
+    private List<CartItemDTO> items;
+    private BigDecimal totalAmount;
+}
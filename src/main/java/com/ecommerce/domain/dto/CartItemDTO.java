@@ -0,0 +1,14 @@
+package com.ecommerce.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+public class CartItemDTO {
+    private Long productId;
+    private int quantity;
+    private BigDecimal price;
+    private BigDecimal subtotal;
+}
@@ -0,0 +1,21 @@
+package com.ecommerce.domain.dto;
+
+import lombok.Data;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+
+@Data
+public class CartOperationDTO {
+    public enum Type { ADD, REMOVE, SET }
+    
+    @NotNull(message = "Operation type is required")
+    private Type type;
+    
+    @NotNull(message = "Product id is required")
+    private Long productId;
+    
+    // Added for ADD, the new quantity for SET (zero removes the line), ignored for REMOVE
+    @PositiveOrZero(message = "Quantity must not be negative")
+    private Integer quantity;
+}
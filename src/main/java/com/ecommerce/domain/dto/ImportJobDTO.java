@@ -0,0 +1,33 @@
+package com.ecommerce.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+public class ImportJobDTO {
+    private String id;
+    private String format;
+    // QUEUED, RUNNING, COMPLETED or FAILED
+    private String status;
+    private long rowsRead;
+    private long rowsImported;
+    private long rowsFailed;
+    private double rowsPerSecond;
+    // Null while queued
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String failure;
+    // Capped; rowsFailed has the full count
+    private List<RowError> errors;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        private long line;
+        private String message;
+    }
+}
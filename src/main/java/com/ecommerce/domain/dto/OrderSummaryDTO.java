@@ -0,0 +1,25 @@
+package com.ecommerce.domain.dto;
+
+import com.ecommerce.domain.model.OrderStatus;
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// List view of an order; the items are only loaded on the order detail endpoint
+@Data
+public class OrderSummaryDTO {
+    private Long id;
+    private LocalDateTime orderDate;
+    private OrderStatus status;
+    private BigDecimal totalAmount;
+    private int itemCount;
+    
+    public OrderSummaryDTO(Long id, LocalDateTime orderDate, OrderStatus status,
+            BigDecimal totalAmount, Integer itemCount) {
+        this.id = id;
+        this.orderDate = orderDate;
+        this.status = status;
+        this.totalAmount = totalAmount;
+        this.itemCount = itemCount != null ? itemCount : 0;
+    }
+}
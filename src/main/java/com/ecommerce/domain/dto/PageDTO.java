@@ -12,6 +12,7 @@ public class PageDTO<T> {
     private int pageSize;
     private boolean hasNext;
     private boolean hasPrevious;
+    private String nextCursor;
     
     public PageDTO(List<T> content, long totalElements, int page, int size) {
         this.content = content;
@@ -22,4 +23,27 @@ public class PageDTO<T> {
         this.hasNext = page < totalPages - 1;
         this.hasPrevious = page > 0;
     }
+    
+    // Page without a total: hasNext comes from reading one row past the page
+    public PageDTO(List<T> content, int page, int size, boolean hasNext) {
+        this.content = content;
+        this.totalElements = -1;
+        this.totalPages = -1;
+        this.currentPage = page;
+        this.pageSize = size;
+        this.hasNext = hasNext;
+        this.hasPrevious = page > 0;
+    }
+    
+    // Keyset page: totals are not computed, the cursor is the only way forward
+    public PageDTO(List<T> content, int size, String nextCursor, boolean hasPrevious) {
+        this.content = content;
+        this.totalElements = -1;
+        this.totalPages = -1;
+        this.currentPage = -1;
+        this.pageSize = size;
+        this.hasNext = nextCursor != null;
+        this.hasPrevious = hasPrevious;
+        this.nextCursor = nextCursor;
+    }
 }
\ No newline at end of file
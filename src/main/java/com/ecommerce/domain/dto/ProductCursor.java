@@ -0,0 +1,102 @@
+package com.ecommerce.domain.dto;
+
+import com.ecommerce.exception.InvalidRequestException;
+import lombok.Data;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+// Opaque keyset position: the sort key and id of the last row a client has seen
+@Data
+public class ProductCursor {
+    private static final String SEPARATOR = "\u001F";
+
+    private final String sortBy;
+    private final boolean descending;
+    private final String value;
+    private final Long id;
+
+    public static String normalizeSortBy(String sortBy) {
+        if (sortBy == null) {
+            return "id";
+        }
+        switch (sortBy.toLowerCase()) {
+            case "price":
+            case "name":
+            case "rating":
+            case "created":
+                return sortBy.toLowerCase();
+            default:
+                return "id";
+        }
+    }
+
+    public static ProductCursor after(ProductSummaryDTO product, String sortBy, String sortDirection) {
+        String key = normalizeSortBy(sortBy);
+        String value;
+        switch (key) {
+            case "price":
+                value = product.getPrice().toPlainString();
+                break;
+            case "name":
+                value = product.getName();
+                break;
+            case "rating":
+                value = String.valueOf(product.getAverageRating() != null ? product.getAverageRating() : 0.0);
+                break;
+            case "created":
+                value = product.getCreatedAt().toString();
+                break;
+            default:
+                value = "";
+        }
+        return new ProductCursor(key, "desc".equalsIgnoreCase(sortDirection), value, product.getId());
+    }
+
+    // An empty token starts a keyset walk from the first row. The token comes from the client,
+    // so the id and sort value are parsed here and anything unreadable is a bad request.
+    public static ProductCursor decode(String token, String sortBy, String sortDirection) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+
+        ProductCursor cursor;
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8)
+                .split(SEPARATOR, -1);
+            if (parts.length != 4) {
+                throw new InvalidRequestException("Invalid cursor");
+            }
+            cursor = new ProductCursor(parts[0], "d".equals(parts[1]), parts[2], Long.valueOf(parts[3]));
+            cursor.typedValue();
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new InvalidRequestException("Invalid cursor");
+        }
+        if (!cursor.getSortBy().equals(normalizeSortBy(sortBy))
+            || cursor.isDescending() != "desc".equalsIgnoreCase(sortDirection)) {
+            throw new InvalidRequestException("Cursor does not match the requested sort order");
+        }
+        return cursor;
+    }
+
+    public String encode() {
+        String raw = sortBy + SEPARATOR + (descending ? "d" : "a") + SEPARATOR + value + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Object typedValue() {
+        switch (sortBy) {
+            case "price":
+                return new BigDecimal(value);
+            case "rating":
+                return Double.valueOf(value);
+            case "created":
+                return LocalDateTime.parse(value);
+            default:
+                return value;
+        }
+    }
+}
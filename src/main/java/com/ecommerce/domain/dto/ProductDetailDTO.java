@@ -0,0 +1,51 @@
+package com.ecommerce.domain.dto;
+
+import com.ecommerce.domain.model.Product;
+import com.ecommerce.domain.model.ProductImage;
+import lombok.Value;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Detail view of a product, copied out of the entity so it can be cached and handed to
+// concurrent requests. Immutable and detached: nothing here can trigger a lazy load.
+@Value
+public class ProductDetailDTO {
+    Long id;
+    String name;
+    String description;
+    BigDecimal price;
+    Integer stockQuantity;
+    Long categoryId;
+    String coverImageUrl;
+    List<String> imageUrls;
+    Double averageRating;
+    Boolean active;
+    Long version;
+    LocalDateTime createdAt;
+    
+    // The category and images must have been fetched with the product
+    public ProductDetailDTO(Product product) {
+        List<ProductImage> images = product.getImages().stream()
+            .sorted(Comparator.comparing(ProductImage::getId))
+            .collect(Collectors.toList());
+        this.id = product.getId();
+        this.name = product.getName();
+        this.description = product.getDescription();
+        this.price = product.getPrice();
+        this.stockQuantity = product.getStockQuantity();
+        this.categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+        this.coverImageUrl = images.stream()
+            .filter(image -> Boolean.TRUE.equals(image.getIsCover()))
+            .map(ProductImage::getImageUrl)
+            .findFirst()
+            .orElse(null);
+        this.imageUrls = images.stream().map(ProductImage::getImageUrl).collect(Collectors.toUnmodifiableList());
+        this.averageRating = product.getAverageRating();
+        this.active = product.getActive();
+        this.version = product.getVersion();
+        this.createdAt = product.getCreatedAt();
+    }
+}
@@ -0,0 +1,15 @@
+package com.ecommerce.domain.dto;
+
+import lombok.Data;
+import java.util.Map;
+
+@Data
+public class ProductFacetsDTO {
+    private long total;
+    private Map<Long, Long> categories;
+    private Map<String, Long> priceRanges;
+    private Map<String, Long> ratings;
+    private Map<String, Long> tags;
+    private long inStock;
+    private long outOfStock;
+}
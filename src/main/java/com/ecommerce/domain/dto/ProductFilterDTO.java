@@ -1,20 +1,38 @@
 package com.ecommerce.domain.dto;
 
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import lombok.Data;
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Set;
 
 @Data
 public class ProductFilterDTO {
+    public static final int MAX_PAGE_SIZE = 100;
+    
     private String searchTerm;
+    // The search term split the way the search index splits it, for matching it in SQL
+    private List<String> searchTokens;
     private Long categoryId;
+    // The category and its descendants, resolved from the in-memory category tree
+    private long[] categoryIds;
     private BigDecimal minPrice;
     private BigDecimal maxPrice;
     private Double minRating;
     private Set<String> tags;
+    // "any" (default) or "all" of the given tags
+    private String tagMatch;
     private Boolean inStock;
     private String sortBy;
     private String sortDirection;
+    @Min(value = 0, message = "Page must not be negative")
     private Integer page;
+    @Min(value = 1, message = "Page size must be between 1 and " + MAX_PAGE_SIZE)
+    @Max(value = MAX_PAGE_SIZE, message = "Page size must be between 1 and " + MAX_PAGE_SIZE)
     private Integer size;
+    // Switches to keyset paging; an empty value requests the first page
+    private String cursor;
+    // Infinite-scroll clients can skip the total and only learn whether more rows exist
+    private Boolean includeTotal;
 }
\ No newline at end of file
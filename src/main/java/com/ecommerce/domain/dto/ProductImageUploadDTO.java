@@ -1,10 +1,13 @@
 package com.ecommerce.domain.dto;
 
 import lombok.Data;
+import org.jboss.resteasy.reactive.RestForm;
 import org.jboss.resteasy.reactive.multipart.FileUpload;
 
 @Data
 public class ProductImageUploadDTO {
+    @RestForm
     private FileUpload file;
+    @RestForm
     private Boolean isCover;
 }
\ No newline at end of file
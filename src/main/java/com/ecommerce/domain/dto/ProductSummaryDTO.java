@@ -0,0 +1,33 @@
+package com.ecommerce.domain.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// List view of a product, selected with a constructor expression so list endpoints never
+// load the entity graph
+@Data
+public class ProductSummaryDTO {
+    private Long id;
+    private String name;
+    private BigDecimal price;
+    private String coverImageUrl;
+    private Double averageRating;
+    private boolean inStock;
+    
+    // Only carried for keyset cursors
+    @JsonIgnore
+    private LocalDateTime createdAt;
+    
+    public ProductSummaryDTO(Long id, String name, BigDecimal price, String coverImageUrl,
+            Double averageRating, Integer stockQuantity, LocalDateTime createdAt) {
+        this.id = id;
+        this.name = name;
+        this.price = price;
+        this.coverImageUrl = coverImageUrl;
+        this.averageRating = averageRating;
+        this.inStock = stockQuantity != null && stockQuantity > 0;
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,12 @@
+package com.ecommerce.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class RelatedProductDTO {
+    private Long productId;
+    // Paid orders containing both products
+    private int orders;
+}
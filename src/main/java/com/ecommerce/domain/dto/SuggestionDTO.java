@@ -0,0 +1,19 @@
+package com.ecommerce.domain.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SuggestionDTO {
+    public static final String PRODUCT = "product";
+    public static final String TAG = "tag";
+    public static final String CATEGORY = "category";
+    
+    private String text;
+    private String type;
+    // Product or category id; tags are addressed by their text
+    private Long id;
+}
@@ -0,0 +1,12 @@
+package com.ecommerce.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class TrendingProductDTO {
+    private Long productId;
+    // Weighted views, add-to-carts and favorites within the window
+    private long score;
+}
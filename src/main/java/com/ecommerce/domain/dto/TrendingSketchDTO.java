@@ -0,0 +1,20 @@
+package com.ecommerce.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrendingSketchDTO {
+    // End of the covered window, epoch milliseconds
+    private long windowEnd;
+    private long windowMillis;
+    private int depth;
+    private int width;
+    // Count-Min cells, row after row
+    private long[] counts;
+    private List<Long> candidates;
+}
@@ -6,6 +6,7 @@ import lombok.EqualsAndHashCode;
 
 import jakarta.persistence.*;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -26,4 +27,14 @@ public class Cart extends PanacheEntityBase {
     
     @Column(nullable = false)
     private String userId;
+    
+    // Only the owner's changes go through the entity; system updates write the row directly
+    @Column(nullable = false)
+    private LocalDateTime activeAt;
+    
+    @PrePersist
+    @PreUpdate
+    protected void onOwnerChange() {
+        activeAt = LocalDateTime.now();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,208 @@
+package com.ecommerce.domain.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.Objects;
+
+// An amount as a whole number of minor units (cents for USD) in one currency. Pricing math
+// runs on the long; BigDecimal only appears where amounts are read from or written to DECIMAL
+// columns and JSON. Operations throw ArithmeticException on overflow, and mixing currencies
+// is an IllegalArgumentException.
+//
+// The static toMinor/toDecimal helpers work on the shop currency, for hot paths that keep raw
+// minor units in primitive fields and never allocate a Money at all.
+public final class Money implements Comparable<Money> {
+    
+    public static final Currency DEFAULT_CURRENCY = Currency.getInstance("USD");
+    
+    // Rounding for every conversion from a decimal amount that does not specify one
+    public static final RoundingMode DEFAULT_ROUNDING = RoundingMode.HALF_EVEN;
+    
+    private static final long BASIS_POINTS = 10_000;
+    
+    private final long minor;
+    private final Currency currency;
+    
+    private Money(long minor, Currency currency) {
+        this.minor = minor;
+        this.currency = currency;
+    }
+    
+    public static Money zero() {
+        return new Money(0, DEFAULT_CURRENCY);
+    }
+    
+    public static Money ofMinor(long minor) {
+        return new Money(minor, DEFAULT_CURRENCY);
+    }
+    
+    public static Money ofMinor(long minor, Currency currency) {
+        fractionDigits(currency);
+        return new Money(minor, currency);
+    }
+    
+    public static Money of(BigDecimal amount) {
+        return of(amount, DEFAULT_CURRENCY, DEFAULT_ROUNDING);
+    }
+    
+    public static Money of(BigDecimal amount, Currency currency, RoundingMode rounding) {
+        return new Money(toMinor(amount, currency, rounding), currency);
+    }
+    
+    public static long toMinor(BigDecimal amount) {
+        return toMinor(amount, DEFAULT_CURRENCY, DEFAULT_ROUNDING);
+    }
+    
+    public static long toMinor(BigDecimal amount, Currency currency, RoundingMode rounding) {
+        Objects.requireNonNull(amount, "amount");
+        return amount.setScale(fractionDigits(currency), rounding).unscaledValue().longValueExact();
+    }
+    
+    public static BigDecimal toDecimal(long minor) {
+        return toDecimal(minor, DEFAULT_CURRENCY);
+    }
+    
+    public static BigDecimal toDecimal(long minor, Currency currency) {
+        return BigDecimal.valueOf(minor, fractionDigits(currency));
+    }
+    
+    // Share of an amount in basis points (1250 is 12.5%), rounded to a whole minor unit
+    public static long percentage(long minor, long basisPoints, RoundingMode rounding) {
+        return divide(Math.multiplyExact(minor, basisPoints), BASIS_POINTS, rounding);
+    }
+    
+    public static long toBasisPoints(BigDecimal percent) {
+        return percent.movePointRight(2).setScale(0, DEFAULT_ROUNDING).longValueExact();
+    }
+    
+    public Money plus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.addExact(minor, other.minor), currency);
+    }
+    
+    public Money minus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.subtractExact(minor, other.minor), currency);
+    }
+    
+    public Money times(long quantity) {
+        return new Money(Math.multiplyExact(minor, quantity), currency);
+    }
+    
+    public Money percentage(long basisPoints, RoundingMode rounding) {
+        return new Money(percentage(minor, basisPoints, rounding), currency);
+    }
+    
+    public Money min(Money other) {
+        return compareTo(other) <= 0 ? this : other;
+    }
+    
+    public Money max(Money other) {
+        return compareTo(other) >= 0 ? this : other;
+    }
+    
+    public boolean isZero() {
+        return minor == 0;
+    }
+    
+    public boolean isNegative() {
+        return minor < 0;
+    }
+    
+    public long minor() {
+        return minor;
+    }
+    
+    public Currency currency() {
+        return currency;
+    }
+    
+    public BigDecimal toBigDecimal() {
+        return toDecimal(minor, currency);
+    }
+    
+    @Override
+    public int compareTo(Money other) {
+        requireSameCurrency(other);
+        return Long.compare(minor, other.minor);
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Money)) {
+            return false;
+        }
+        Money other = (Money) o;
+        return minor == other.minor && currency.equals(other.currency);
+    }
+    
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(minor) + currency.hashCode();
+    }
+    
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString() + " " + currency.getCurrencyCode();
+    }
+    
+    private void requireSameCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Cannot combine " + currency + " with " + other.currency);
+        }
+    }
+    
+    private static int fractionDigits(Currency currency) {
+        int digits = currency.getDefaultFractionDigits();
+        if (digits < 0) {
+            throw new IllegalArgumentException("Currency " + currency + " has no minor unit");
+        }
+        return digits;
+    }
+    
+    // Integer division rounded like BigDecimal.divide with the same mode
+    private static long divide(long dividend, long divisor, RoundingMode rounding) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+        int sign = Long.signum(dividend) * Long.signum(divisor);
+        boolean increment;
+        switch (rounding) {
+            case UP:
+                increment = true;
+                break;
+            case DOWN:
+                increment = false;
+                break;
+            case CEILING:
+                increment = sign > 0;
+                break;
+            case FLOOR:
+                increment = sign < 0;
+                break;
+            case HALF_UP:
+            case HALF_DOWN:
+            case HALF_EVEN:
+                int half = Long.compare(Math.abs(remainder) * 2, Math.abs(divisor));
+                if (half != 0) {
+                    increment = half > 0;
+                } else if (rounding == RoundingMode.HALF_UP) {
+                    increment = true;
+                } else if (rounding == RoundingMode.HALF_DOWN) {
+                    increment = false;
+                } else {
+                    increment = (quotient & 1) != 0;
+                }
+                break;
+            default:
+                throw new ArithmeticException("Rounding necessary");
+        }
+        return increment ? quotient + sign : quotient;
+    }
+}
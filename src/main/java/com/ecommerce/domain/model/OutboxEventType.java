@@ -0,0 +1,8 @@
+package com.ecommerce.domain.model;
+
+public enum OutboxEventType {
+    ORDER_CONFIRMATION,
+    EMAIL_VERIFICATION,
+    PASSWORD_RESET,
+    LOW_STOCK_ALERT
+}
\ No newline at end of file
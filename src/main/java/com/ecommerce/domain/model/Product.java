@@ -1,11 +1,14 @@
 package com.ecommerce.domain.model;
 
 import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 import jakarta.persistence.*;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -30,6 +33,9 @@ public class Product extends PanacheEntityBase {
     @Column(nullable = false)
     private Integer stockQuantity;
     
+    @Column(nullable = false)
+    private Integer lowStockThreshold = 10;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "category_id")
     private Category category;
@@ -40,6 +46,17 @@ public class Product extends PanacheEntityBase {
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL)
     private Set<Review> reviews = new HashSet<>();
     
+    @ManyToMany
+    @JoinTable(
+        name = "product_tags",
+        joinColumns = @JoinColumn(name = "product_id"),
+        inverseJoinColumns = @JoinColumn(name = "tag_id")
+    )
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Set<Tag> tags = new HashSet<>();
+    
     private Double averageRating;
     
     @Column(nullable = false)
@@ -47,4 +64,12 @@ public class Product extends PanacheEntityBase {
     
     @Version
     private Long version;
+    
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.ecommerce.domain.model;
+
+import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@EqualsAndHashCode(callSuper = true)
+@Table(name = "tags")
+public class Tag extends PanacheEntityBase {
+    public static final int MAX_NAME_LENGTH = 50;
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false, unique = true, length = MAX_NAME_LENGTH)
+    private String name;
+    
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
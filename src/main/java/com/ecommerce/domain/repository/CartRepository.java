@@ -8,7 +8,12 @@ import jakarta.enterprise.context.ApplicationScoped;
 @ApplicationScoped
 public class CartRepository implements PanacheRepository<Cart> {
     
+    // Items are fetched with the cart; every caller walks them. A user has one cart, so no row
+    // limit is needed, and one would make Hibernate page the fetched collection in memory.
     public Uni<Cart> findByUserId(String userId) {
-        return find("userId", userId).firstResult();
+        return getSession().chain(session -> session
+            .createQuery("from Cart c left join fetch c.items where c.userId = ?1", Cart.class)
+            .setParameter(1, userId)
+            .getSingleResultOrNull());
     }
 }
\ No newline at end of file
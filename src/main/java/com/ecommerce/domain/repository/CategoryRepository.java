@@ -0,0 +1,18 @@
+package com.ecommerce.domain.repository;
+
+import com.ecommerce.domain.model.Category;
+import io.quarkus.hibernate.reactive.panache.PanacheRepository;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import java.util.List;
+
+@ApplicationScoped
+public class CategoryRepository implements PanacheRepository<Category> {
+    
+    // (id, parent id) of every category, enough to rebuild the tree
+    public Uni<List<Object[]>> findHierarchy() {
+        return getSession().chain(session -> session
+            .createQuery("select c.id, c.parent.id from Category c", Object[].class)
+            .getResultList());
+    }
+}
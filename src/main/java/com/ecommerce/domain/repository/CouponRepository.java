@@ -14,6 +14,12 @@ public class CouponRepository implements PanacheRepository<Coupon> {
         return find("code", code).firstResult();
     }
     
+    // Both restriction sets in the same round trip, for pricing cart lines against the coupon
+    public Uni<Coupon> findByCodeWithRestrictions(String code) {
+        return find("select distinct c from Coupon c left join fetch c.applicableCategories " +
+            "left join fetch c.applicableProducts where c.code = ?1", code).firstResult();
+    }
+    
     public Uni<List<Coupon>> findActive() {
         LocalDateTime now = LocalDateTime.now();
         return list("active = true and startDate <= ?1 and endDate >= ?1", now);
@@ -1,5 +1,6 @@
 package com.ecommerce.domain.repository;
 
+import com.ecommerce.domain.dto.ProductSummaryDTO;
 import com.ecommerce.domain.model.Favorite;
 import io.quarkus.hibernate.reactive.panache.PanacheRepository;
 import io.smallrye.mutiny.Uni;
@@ -13,6 +14,15 @@ public class FavoriteRepository implements PanacheRepository<Favorite> {
         return list("userId", userId);
     }
     
+    public Uni<List<ProductSummaryDTO>> findProductSummariesByUser(String userId) {
+        return getSession().chain(session -> session
+            .createQuery(ProductRepository.SUMMARY_SELECT +
+                " from Favorite f join f.product p where f.userId = ?1 order by f.createdAt desc",
+                ProductSummaryDTO.class)
+            .setParameter(1, userId)
+            .getResultList());
+    }
+    
     public Uni<Boolean> isFavorite(String userId, Long productId) {
         return count("userId = ?1 and product.id = ?2", userId, productId)
             .map(count -> count > 0);
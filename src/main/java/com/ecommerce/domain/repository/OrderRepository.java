@@ -1,15 +1,74 @@
 package com.ecommerce.domain.repository;
 
+import com.ecommerce.domain.dto.OrderSummaryDTO;
 import com.ecommerce.domain.model.Order;
 import io.quarkus.hibernate.reactive.panache.PanacheRepository;
 import io.smallrye.mutiny.Uni;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import jakarta.enterprise.context.ApplicationScoped;
 import java.util.List;
 
 @ApplicationScoped
 public class OrderRepository implements PanacheRepository<Order> {
     
+    // Carries {"order": id, "products": [ids]} for every payment that commits
+    public static final String PAID_CHANNEL = "order_paid";
+    
+    // Carries {"order": id} for every cancellation that commits
+    public static final String CANCELLED_CHANNEL = "order_cancelled";
+    
     public Uni<List<Order>> findByUserId(String userId) {
         return list("userId", userId);
     }
-}
\ No newline at end of file
+    
+    // Lines and their products come with the order, for rendering it outside a request
+    public Uni<Order> findWithItems(Long orderId) {
+        return find("from Order o left join fetch o.items i left join fetch i.product where o.id = ?1", orderId)
+            .firstResult();
+    }
+    
+    public Uni<List<OrderSummaryDTO>> findSummariesByUserId(String userId) {
+        return getSession().chain(session -> session
+            .createQuery("select new com.ecommerce.domain.dto.OrderSummaryDTO(" +
+                "o.id, o.orderDate, o.status, o.totalAmount, size(o.items)) " +
+                "from Order o where o.userId = ?1 order by o.orderDate desc",
+                OrderSummaryDTO.class)
+            .setParameter(1, userId)
+            .getResultList());
+    }
+    
+    // (order id, product id) rows for whole orders that were paid, batched by order
+    public Uni<List<Object[]>> findPaidOrderProducts(long afterOrderId, int orderLimit) {
+        return getSession().chain(session -> session
+            .createNativeQuery("select oi.order_id, oi.product_id from order_items oi " +
+                "where oi.product_id is not null and oi.order_id in (" +
+                "select o.id from orders o where o.id > :afterId " +
+                "and o.status in ('PAID', 'PROCESSING', 'SHIPPED', 'DELIVERED') " +
+                "order by o.id limit :orderLimit) " +
+                "order by oi.order_id", Object[].class)
+            .setParameter("afterId", afterOrderId)
+            .setParameter("orderLimit", orderLimit)
+            .getResultList());
+    }
+    
+    // Issued inside the transaction, so listeners only hear about it once the payment commits
+    public Uni<Void> notifyPaid(Long orderId, List<Long> productIds) {
+        return notify(PAID_CHANNEL, new JsonObject()
+            .put("order", orderId)
+            .put("products", new JsonArray(productIds)));
+    }
+    
+    public Uni<Void> notifyCancelled(Long orderId) {
+        return notify(CANCELLED_CHANNEL, new JsonObject().put("order", orderId));
+    }
+    
+    private Uni<Void> notify(String channel, JsonObject payload) {
+        return getSession().chain(session -> session
+                .createNativeQuery("select cast(pg_notify(:channel, :payload) as text)")
+                .setParameter("channel", channel)
+                .setParameter("payload", payload.encode())
+                .getSingleResultOrNull())
+            .replaceWithVoid();
+    }
+}
@@ -0,0 +1,19 @@
+package com.ecommerce.domain.repository;
+
+import com.ecommerce.domain.model.OutboxEventType;
+import com.ecommerce.domain.model.OutboxMessage;
+import io.quarkus.hibernate.reactive.panache.PanacheRepository;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+
+@ApplicationScoped
+public class OutboxRepository implements PanacheRepository<OutboxMessage> {
+    
+    // Joins the caller's session, so the message commits or rolls back with the business change
+    public Uni<Void> enqueue(OutboxEventType type, Long aggregateId) {
+        OutboxMessage message = new OutboxMessage();
+        message.setType(type);
+        message.setAggregateId(aggregateId);
+        return persist(message).replaceWithVoid();
+    }
+}
\ No newline at end of file
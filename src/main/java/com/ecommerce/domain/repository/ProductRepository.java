@@ -1,25 +1,47 @@
 package com.ecommerce.domain.repository;
 
+import com.ecommerce.domain.dto.ProductCursor;
 import com.ecommerce.domain.dto.ProductFilterDTO;
+import com.ecommerce.domain.dto.ProductSummaryDTO;
 import com.ecommerce.domain.model.Product;
 import io.quarkus.hibernate.reactive.panache.PanacheRepository;
-import io.quarkus.panache.common.Page;
-import io.quarkus.panache.common.Sort;
 import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
+import io.vertx.core.json.JsonObject;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.hibernate.StaleObjectStateException;
+import org.hibernate.reactive.mutiny.Mutiny;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @ApplicationScoped
 public class ProductRepository implements PanacheRepository<Product> {
     
+    // List views select just these columns; the cover image comes from a scalar subquery
+    public static final String SUMMARY_SELECT = "select new com.ecommerce.domain.dto.ProductSummaryDTO(" +
+        "p.id, p.name, p.price, " +
+        "(select max(i.imageUrl) from ProductImage i where i.product = p and i.isCover = true), " +
+        "p.averageRating, p.stockQuantity, p.createdAt)";
+    
+    // Units sold, the same measure InventoryService adds as sales are recorded. inventory_analytics
+    // counts sale transactions, not units, so it is not used here.
+    private static final String UNITS_SOLD =
+        "coalesce((select sum(t.quantity) from inventory_transactions t " +
+        "where t.product_id = p.id and t.type = 'SALE'), 0)";
+    
     public Uni<List<Product>> findByCategory(Long categoryId) {
         return find("category.id", categoryId).list();
     }
     
     public Multi<Product> searchProducts(String query) {
-        return find("name like ?1 or description like ?1", "%" + query + "%").stream();
+        return find("name like ?1 or description like ?1", "%" + query + "%").list()
+            .onItem().transformToMulti(products -> Multi.createFrom().iterable(products));
     }
     
     public Uni<List<Product>> findActiveProducts() {
@@ -30,115 +52,385 @@ public class ProductRepository implements PanacheRepository<Product> {
         return find("price >= ?1 and price <= ?2", minPrice, maxPrice).list();
     }
     
-    public Uni<List<Product>> findFiltered(ProductFilterDTO filter) {
-        StringBuilder query = new StringBuilder("1=1");
-        List<Object> params = new ArrayList<>();
-        int paramIndex = 1;
+    public Uni<List<ProductSummaryDTO>> findSummariesByIds(Collection<Long> ids) {
+        return getSession().chain(session -> session
+            .createQuery(SUMMARY_SELECT + " from Product p where p.id in ?1", ProductSummaryDTO.class)
+            .setParameter(1, ids)
+            .getResultList());
+    }
+    
+    // Everything the detail view shows, in one query
+    public Uni<Product> findDetail(Long id) {
+        return getSession().chain(session -> session
+            .createQuery("from Product p left join fetch p.category left join fetch p.images where p.id = ?1", Product.class)
+            .setParameter(1, id)
+            .getSingleResultOrNull());
+    }
+    
+    // Sales and favorites move search ranking without touching the products row, so they are
+    // announced on the change channel themselves. Issued inside the transaction, so every
+    // replica applies them once they commit and never for a rollback.
+    public Uni<Void> notifySignals(Long id, long sales, long favorites) {
+        String payload = new JsonObject()
+            .put("op", "SIGNALS")
+            .put("id", id)
+            .put("sales", sales)
+            .put("favorites", favorites)
+            .encode();
+        return getSession().chain(session -> session
+                .createNativeQuery("select cast(pg_notify('product_changes', :payload) as text)")
+                .setParameter("payload", payload)
+                .getSingleResultOrNull())
+            .replaceWithVoid();
+    }
+    
+    // Uninitialized proxy for linking associations without loading the row
+    public Uni<Product> reference(Long id) {
+        return getSession().map(session -> session.getReference(Product.class, id));
+    }
+    
+    // The writes below check the version the caller read, as a managed entity would, so a
+    // snapshot from ProductBatchLoader can be written back without loading the entity again
+    public Uni<Void> setStock(Long id, Long version, int quantity) {
+        return updateVersioned("stockQuantity", quantity, id, version);
+    }
+    
+    public Uni<Void> setAverageRating(Long id, Long version, Double averageRating) {
+        return updateVersioned("averageRating", averageRating, id, version);
+    }
+    
+    private Uni<Void> updateVersioned(String attribute, Object value, Long id, Long version) {
+        return getSession().chain(session -> session
+            .createMutationQuery("update versioned Product set " + attribute + " = ?1 where id = ?2 and version = ?3")
+            .setParameter(1, value)
+            .setParameter(2, id)
+            .setParameter(3, version)
+            .executeUpdate())
+            .chain(updated -> updated == 0
+                ? Uni.createFrom().failure(new StaleObjectStateException(Product.class.getName(), id))
+                : Uni.createFrom().voidItem());
+    }
+    
+    // Returns 0 when the product is gone or the change would take stock below zero
+    public Uni<Integer> adjustStock(Long id, int delta) {
+        return getSession().chain(session -> session
+            .createMutationQuery("update versioned Product set stockQuantity = stockQuantity + ?1 " +
+                "where id = ?2 and stockQuantity + ?1 >= 0")
+            .setParameter(1, delta)
+            .setParameter(2, id)
+            .executeUpdate());
+    }
+    
+    // Units moved out of stock_quantity into replicas' reservation leases; still on hand
+    public Uni<Integer> findLeasedStock(Long id) {
+        return getSession().chain(session -> session
+            .createNativeQuery("select cast(coalesce(sum(a.quantity), 0) as integer) from stock_allotments a " +
+                "where a.product_id = :id", Integer.class)
+            .setParameter("id", id)
+            .getSingleResult());
+    }
+    
+    // On-hand stock is stock_quantity plus whatever is leased for reservations
+    public Uni<List<Product>> findLowStock() {
+        return getSession().chain(session -> session
+            .createNativeQuery("select p.* from products p where p.active and p.stock_quantity + " +
+                "coalesce((select sum(a.quantity) from stock_allotments a where a.product_id = p.id), 0) " +
+                "<= p.low_stock_threshold", Product.class)
+            .getResultList());
+    }
+    
+    // Text plus the ranking signals: rating, units sold and favorites
+    public Uni<List<Object[]>> findSearchDocuments(long afterId, int limit) {
+        return getSession().chain(session -> session
+            .createNativeQuery("select p.id, p.name, p.description, p.average_rating, " +
+                UNITS_SOLD + ", " +
+                "(select count(*) from favorites f where f.product_id = p.id) " +
+                "from products p where p.id > :afterId order by p.id", Object[].class)
+            .setParameter("afterId", afterId)
+            .setMaxResults(limit)
+            .getResultList());
+    }
+    
+    public Uni<List<Object[]>> findFacetDocuments(long afterId, int limit) {
+        return getSession().chain(session -> session
+            .createQuery("select p.id, p.category.id, p.price, p.averageRating, p.stockQuantity " +
+                "from Product p where p.id > ?1 order by p.id", Object[].class)
+            .setParameter(1, afterId)
+            .setMaxResults(limit)
+            .getResultList());
+    }
+    
+    // Active products with a popularity score: units sold plus two per favorite
+    public Uni<List<Object[]>> findAutocompleteDocuments(long afterId, int limit) {
+        return getSession().chain(session -> session
+            .createNativeQuery("select p.id, p.name, " +
+                UNITS_SOLD + " + " +
+                "2 * (select count(*) from favorites f where f.product_id = p.id) " +
+                "from products p where p.id > :afterId and p.active order by p.id", Object[].class)
+            .setParameter("afterId", afterId)
+            .setMaxResults(limit)
+            .getResultList());
+    }
+    
+    public Uni<List<Object[]>> findNamesStartingWith(String prefix, int limit) {
+        String pattern = prefix.toLowerCase(Locale.ROOT)
+            .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return getSession().chain(session -> session
+            .createQuery("select p.id, p.name from Product p where p.active = true " +
+                "and lower(p.name) like ?1 escape '\\' order by p.name", Object[].class)
+            .setParameter(1, pattern)
+            .setMaxResults(limit)
+            .getResultList());
+    }
+    
+    // Active categories ranked by how many active products they hold
+    public Uni<List<Object[]>> findCategorySuggestions() {
+        return getSession().chain(session -> session
+            .createNativeQuery("select c.id, c.name, count(p.id) from categories c " +
+                "left join products p on p.category_id = c.id and p.active " +
+                "where c.active group by c.id, c.name", Object[].class)
+            .getResultList());
+    }
+    
+    public Uni<Map<Long, Long>> findCategoryIds(Collection<Long> productIds) {
+        return getSession().chain(session -> session
+            .createQuery("select p.id, p.category.id from Product p " +
+                "where p.id in ?1 and p.category is not null", Object[].class)
+            .setParameter(1, productIds)
+            .getResultList())
+            .map(rows -> rows.stream().collect(Collectors.toMap(
+                row -> (Long) row[0], row -> (Long) row[1])));
+    }
+    
+    public Uni<List<Object[]>> findTagNames(Collection<Long> productIds) {
+        return getSession().chain(session -> session
+            .createNativeQuery("select pt.product_id, t.name from product_tags pt " +
+                "join tags t on t.id = pt.tag_id where pt.product_id in (:ids)", Object[].class)
+            .setParameter("ids", productIds)
+            .getResultList());
+    }
+    
+    // Page and total in one round trip via a window count. Without the total one extra
+    // row is read instead, which is enough to tell whether another page exists.
+    public Uni<FilteredProducts> findFilteredPage(
+            ProductFilterDTO filter, Candidates candidates, boolean withTotal) {
+        FilterQuery query = buildFilterQuery(filter, candidates);
+        int size = filter.getSize();
+        int first = filter.getPage() * size;
         
-        if (filter.getSearchTerm() != null && !filter.getSearchTerm().isEmpty()) {
-            query.append(" and (lower(name) like ?").append(paramIndex)
-                .append(" or lower(description) like ?").append(paramIndex).append(")");
-            params.add("%" + filter.getSearchTerm().toLowerCase() + "%");
-            paramIndex++;
+        if (!withTotal) {
+            return getSession().chain(session -> query.bind(session.createQuery(
+                    SUMMARY_SELECT + " from Product p where " + query.where + orderBy(filter),
+                    ProductSummaryDTO.class))
+                .setFirstResult(first)
+                .setMaxResults(size + 1)
+                .getResultList())
+                .map(products -> products.size() > size
+                    ? new FilteredProducts(products.subList(0, size), -1, true)
+                    : new FilteredProducts(products, -1, false));
         }
         
-        if (filter.getCategoryId() != null) {
-            query.append(" and category.id = ?").append(paramIndex);
-            params.add(filter.getCategoryId());
-            paramIndex++;
-        }
+        return getSession().chain(session -> query.bind(session.createQuery(
+                SUMMARY_SELECT + ", count(p) over() from Product p where " + query.where + orderBy(filter),
+                Object[].class))
+            .setFirstResult(first)
+            .setMaxResults(size)
+            .getResultList())
+            .chain(rows -> {
+                // Past the last page the window has no row to carry the total
+                if (rows.isEmpty() && first > 0) {
+                    return count(query.where.toString(), query.params.toArray())
+                        .map(total -> new FilteredProducts(List.of(), total, false));
+                }
+                
+                List<ProductSummaryDTO> products = new ArrayList<>(rows.size());
+                rows.forEach(row -> products.add((ProductSummaryDTO) row[0]));
+                long total = rows.isEmpty() ? 0 : ((Number) rows.get(0)[1]).longValue();
+                return Uni.createFrom().item(
+                    new FilteredProducts(products, total, first + products.size() < total));
+            });
+    }
+    
+    public record FilteredProducts(List<ProductSummaryDTO> products, long total, boolean hasNext) {
+    }
+    
+    // How many filtered products meet each condition, in one scan. The conditions are fixed
+    // HQL fragments over Product, never user input.
+    public Uni<List<Long>> countMatching(ProductFilterDTO filter, List<String> conditions) {
+        FilterQuery query = buildFilterQuery(filter, null);
+        String sums = conditions.stream()
+            .map(condition -> "sum(case when " + condition + " then 1 else 0 end)")
+            .collect(Collectors.joining(", "));
+        return getSession().chain(session -> query.bind(session.createQuery(
+                "select " + sums + " from Product where " + query.where, Object[].class))
+            .getSingleResult())
+            .map(row -> Arrays.stream(row)
+                .map(count -> count == null ? 0L : ((Number) count).longValue())
+                .collect(Collectors.toList()));
+    }
+    
+    // Per direct category, not rolled up to ancestors
+    public Uni<Map<Long, Long>> countByCategory(ProductFilterDTO filter) {
+        FilterQuery query = buildFilterQuery(filter, null);
+        return getSession().chain(session -> query.bind(session.createQuery(
+                "select category.id, count(id) from Product where " + query.where +
+                " and category is not null group by category.id", Object[].class))
+            .getResultList())
+            .map(rows -> rows.stream().collect(Collectors.toMap(
+                row -> (Long) row[0], row -> ((Number) row[1]).longValue())));
+    }
+    
+    // The most common tags among the filtered products, most common first
+    public Uni<List<Object[]>> countByTag(ProductFilterDTO filter, int limit) {
+        FilterQuery query = buildFilterQuery(filter, null);
+        return getSession().chain(session -> query.bind(session.createQuery(
+                "select lower(t.name), count(distinct tp.id) from Product tp join tp.tags t " +
+                "where tp.id in (select id from Product where " + query.where + ") " +
+                "group by lower(t.name) order by count(distinct tp.id) desc", Object[].class))
+            .setMaxResults(limit)
+            .getResultList());
+    }
+    
+    // Seeks past the cursor with (sortKey, id) instead of skipping rows with OFFSET
+    public Uni<List<ProductSummaryDTO>> findFilteredAfter(
+            ProductFilterDTO filter, Candidates candidates, ProductCursor after, int limit) {
+        FilterQuery query = buildFilterQuery(filter, candidates);
+        String sortKey = ProductCursor.normalizeSortBy(filter.getSortBy());
+        String column = sortColumn(sortKey);
+        boolean descending = "desc".equalsIgnoreCase(filter.getSortDirection());
+        String comparison = descending ? " < " : " > ";
         
-        if (filter.getMinPrice() != null) {
-            query.append(" and price >= ?").append(paramIndex);
-            params.add(filter.getMinPrice());
-            paramIndex++;
+        if (after != null) {
+            String id = query.param(after.getId());
+            if ("id".equals(sortKey)) {
+                query.where.append(" and id").append(comparison).append(id);
+            } else {
+                // A row-value comparison is one range scan on the matching (column, id) index
+                String value = query.param(after.typedValue());
+                query.where.append(" and (").append(column).append(", id)").append(comparison)
+                    .append("(").append(value).append(", ").append(id).append(")");
+            }
         }
         
-        if (filter.getMaxPrice() != null) {
-            query.append(" and price <= ?").append(paramIndex);
-            params.add(filter.getMaxPrice());
-            paramIndex++;
-        }
+        return getSession().chain(session -> query.bind(session.createQuery(
+                SUMMARY_SELECT + " from Product p where " + query.where + orderBy(filter),
+                ProductSummaryDTO.class))
+            .setMaxResults(limit)
+            .getResultList());
+    }
+    
+    // Ids already resolved in memory, and which of the filter's criteria they account for
+    public record Candidates(Collection<Long> ids, boolean coversSearchTerm, boolean coversTags) {
+    }
+    
+    private FilterQuery buildFilterQuery(ProductFilterDTO filter, Candidates candidates) {
+        FilterQuery query = new FilterQuery();
         
-        if (filter.getMinRating() != null) {
-            query.append(" and averageRating >= ?").append(paramIndex);
-            params.add(filter.getMinRating());
-            paramIndex++;
+        if (candidates != null) {
+            query.where.append(" and id in ").append(query.param(candidates.ids()));
         }
         
-        if (filter.getInStock() != null && filter.getInStock()) {
-            query.append(" and stockQuantity > 0");
+        // Matches like the search index: every token starts a word of the name, the description
+        // or a tag. Tokens are letters and digits only, so they need no escaping in the pattern.
+        if ((candidates == null || !candidates.coversSearchTerm()) && filter.getSearchTokens() != null) {
+            if (filter.getSearchTokens().isEmpty()) {
+                query.where.append(" and 1 = 0");
+            }
+            for (String token : filter.getSearchTokens()) {
+                String wordStart = query.param("(^|[^[:alnum:]])" + token);
+                query.where.append(" and (").append(matches("lower(name)", wordStart))
+                    .append(" or ").append(matches("lower(description)", wordStart))
+                    .append(" or id in (select tp.id from Product tp join tp.tags t where ")
+                    .append(matches("lower(t.name)", wordStart)).append("))");
+            }
         }
         
-        Sort sort = createSort(filter.getSortBy(), filter.getSortDirection());
-        Page page = Page.of(filter.getPage(), filter.getSize());
-        
-        return find(query.toString(), sort, params.toArray()).page(page).list();
-    }
-    
-    public Uni<Long> countFiltered(ProductFilterDTO filter) {
-        StringBuilder query = new StringBuilder("1=1");
-        List<Object> params = new ArrayList<>();
-        int paramIndex = 1;
-        
-        if (filter.getSearchTerm() != null && !filter.getSearchTerm().isEmpty()) {
-            query.append(" and (lower(name) like ?").append(paramIndex)
-                .append(" or lower(description) like ?").append(paramIndex).append(")");
-            params.add("%" + filter.getSearchTerm().toLowerCase() + "%");
-            paramIndex++;
+        if ((candidates == null || !candidates.coversTags())
+                && filter.getTags() != null && !filter.getTags().isEmpty()) {
+            List<String> tags = filter.getTags().stream()
+                .map(tag -> tag.trim().toLowerCase(Locale.ROOT))
+                .collect(Collectors.toList());
+            query.where.append(" and id in (select tp.id from Product tp join tp.tags t where t.name in ")
+                .append(query.param(tags));
+            if ("all".equalsIgnoreCase(filter.getTagMatch())) {
+                query.where.append(" group by tp.id having count(distinct t.id) = ")
+                    .append(query.param((long) new HashSet<>(tags).size()));
+            }
+            query.where.append(")");
         }
         
-        if (filter.getCategoryId() != null) {
-            query.append(" and category.id = ?").append(paramIndex);
-            params.add(filter.getCategoryId());
-            paramIndex++;
+        if (filter.getCategoryIds() != null && filter.getCategoryIds().length > 1) {
+            query.where.append(" and category.id in ")
+                .append(query.param(Arrays.stream(filter.getCategoryIds()).boxed().collect(Collectors.toList())));
+        } else if (filter.getCategoryId() != null) {
+            query.where.append(" and category.id = ").append(query.param(filter.getCategoryId()));
         }
         
         if (filter.getMinPrice() != null) {
-            query.append(" and price >= ?").append(paramIndex);
-            params.add(filter.getMinPrice());
-            paramIndex++;
+            query.where.append(" and price >= ").append(query.param(filter.getMinPrice()));
         }
         
         if (filter.getMaxPrice() != null) {
-            query.append(" and price <= ?").append(paramIndex);
-            params.add(filter.getMaxPrice());
-            paramIndex++;
+            query.where.append(" and price <= ").append(query.param(filter.getMaxPrice()));
         }
         
         if (filter.getMinRating() != null) {
-            query.append(" and averageRating >= ?").append(paramIndex);
-            params.add(filter.getMinRating());
-            paramIndex++;
+            query.where.append(" and averageRating >= ").append(query.param(filter.getMinRating()));
         }
         
         if (filter.getInStock() != null && filter.getInStock()) {
-            query.append(" and stockQuantity > 0");
+            query.where.append(" and stockQuantity > 0");
         }
         
-        return count(query.toString(), params.toArray());
+        return query;
     }
     
-    private Sort createSort(String sortBy, String sortDirection) {
-        if (sortBy == null) {
-            return Sort.by("id");
-        }
+    // PostgreSQL's ~ operator, which HQL has no syntax for
+    private static String matches(String text, String pattern) {
+        return "function('textregexeq', " + text + ", " + pattern + ") = true";
+    }
+    
+    private static class FilterQuery {
+        private final StringBuilder where = new StringBuilder("1=1");
+        private final List<Object> params = new ArrayList<>();
         
-        Sort.Direction direction = "desc".equalsIgnoreCase(sortDirection) 
-            ? Sort.Direction.Descending 
-            : Sort.Direction.Ascending;
+        private String param(Object value) {
+            params.add(value);
+            return "?" + params.size();
+        }
         
-        switch (sortBy.toLowerCase()) {
+        private <T> Mutiny.SelectionQuery<T> bind(Mutiny.SelectionQuery<T> selection) {
+            for (int i = 0; i < params.size(); i++) {
+                selection.setParameter(i + 1, params.get(i));
+            }
+            return selection;
+        }
+    }
+    
+    // Null ratings sort as 0 so the seek predicate never compares against NULL
+    private String sortColumn(String sortKey) {
+        switch (sortKey) {
             case "price":
-                return Sort.by("price", direction);
+                return "price";
             case "name":
-                return Sort.by("name", direction);
+                return "name";
             case "rating":
-                return Sort.by("averageRating", direction);
+                return "coalesce(averageRating, 0.0)";
             case "created":
-                return Sort.by("createdAt", direction);
+                return "createdAt";
             default:
-                return Sort.by("id", direction);
+                return "id";
+        }
+    }
+    
+    // The id tiebreaker keeps page boundaries stable when sort keys repeat
+    private String orderBy(ProductFilterDTO filter) {
+        String sortKey = ProductCursor.normalizeSortBy(filter.getSortBy());
+        String direction = "desc".equalsIgnoreCase(filter.getSortDirection()) ? " desc" : " asc";
+        
+        if ("id".equals(sortKey)) {
+            return " order by id" + direction;
         }
+        return " order by " + sortColumn(sortKey) + direction + ", id" + direction;
     }
 }
\ No newline at end of file
@@ -19,8 +19,7 @@ public class ReviewRepository implements PanacheRepository<Review> {
     
     public Uni<Double> getAverageRating(Long productId) {
         return find("product.id", productId)
-            .stream()
-            .collect().asList()
+            .list()
             .map(reviews -> reviews.stream()
                 .mapToInt(Review::getRating)
                 .average()
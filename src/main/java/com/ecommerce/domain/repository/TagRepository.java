@@ -0,0 +1,55 @@
+package com.ecommerce.domain.repository;
+
+import com.ecommerce.domain.model.Tag;
+import io.quarkus.hibernate.reactive.panache.PanacheRepository;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.hibernate.reactive.mutiny.Mutiny;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@ApplicationScoped
+public class TagRepository implements PanacheRepository<Tag> {
+    
+    public Uni<List<Tag>> findByNames(Collection<String> names) {
+        return list("name in ?1", names);
+    }
+    
+    // Missing names are inserted with ON CONFLICT DO NOTHING, so two requests creating the same
+    // tag both succeed, then everything is read back. Names go in sorted so concurrent inserts
+    // take their row locks in the same order.
+    public Uni<List<Tag>> findOrCreate(Collection<String> names) {
+        if (names.isEmpty()) {
+            return Uni.createFrom().item(List.of());
+        }
+        return findByNames(names)
+            .chain(existing -> {
+                Set<String> known = existing.stream()
+                    .map(Tag::getName)
+                    .collect(Collectors.toSet());
+                List<String> missing = names.stream()
+                    .filter(name -> !known.contains(name))
+                    .sorted()
+                    .distinct()
+                    .collect(Collectors.toList());
+                if (missing.isEmpty()) {
+                    return Uni.createFrom().item(existing);
+                }
+                String values = IntStream.range(0, missing.size())
+                    .mapToObj(i -> "(:name" + i + ", now())")
+                    .collect(Collectors.joining(", "));
+                return getSession().chain(session -> {
+                        Mutiny.MutationQuery insert = session.createNativeQuery(
+                            "insert into tags (name, created_at) values " + values + " on conflict (name) do nothing");
+                        for (int i = 0; i < missing.size(); i++) {
+                            insert.setParameter("name" + i, missing.get(i));
+                        }
+                        return insert.executeUpdate();
+                    })
+                    .chain(() -> findByNames(names));
+            });
+    }
+}
@@ -15,6 +15,12 @@ public class GlobalExceptionHandler implements ExceptionMapper<Exception> {
                 .build();
         }
         
+        if (exception instanceof InvalidRequestException) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                .entity(new ErrorResponse(exception.getMessage()))
+                .build();
+        }
+        
         return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
             .entity(new ErrorResponse("An unexpected error occurred"))
             .build();
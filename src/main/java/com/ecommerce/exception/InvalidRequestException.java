@@ -0,0 +1,8 @@
+package com.ecommerce.exception;
+
+// Input the client can fix; answered with 400 and this message
+public class InvalidRequestException extends RuntimeException {
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
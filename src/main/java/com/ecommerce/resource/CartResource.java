@@ -1,8 +1,10 @@
 package com.ecommerce.resource;
 
+import com.ecommerce.domain.dto.CartBatchDTO;
 import com.ecommerce.service.CartService;
 import io.smallrye.mutiny.Uni;
 import jakarta.inject.Inject;
+import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
@@ -30,4 +32,14 @@ public class CartResource {
         return cartService.addToCart(userId, productId, quantity)
             .onItem().transform(cart -> Response.ok(cart).build());
     }
-}
\ No newline at end of file
+    
+    // Restoring a saved list or reordering applies every line in one call
+    @POST
+    @Path("/items/batch")
+    public Uni<Response> applyBatch(
+            @HeaderParam("X-User-Id") String userId,
+            @Valid CartBatchDTO batch) {
+        return cartService.applyBatch(userId, batch.getOperations())
+            .onItem().transform(cart -> Response.ok(cart).build());
+    }
+}
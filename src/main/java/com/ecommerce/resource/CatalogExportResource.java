@@ -0,0 +1,32 @@
+package com.ecommerce.resource;
+
+import com.ecommerce.service.CatalogExportService;
+import io.smallrye.mutiny.Multi;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import org.jboss.resteasy.reactive.common.util.RestMediaType;
+import org.jboss.resteasy.reactive.RestStreamElementType;
+
+// Full catalog feeds for search partners; responses are gzipped when the client accepts it
+@Path("/api/catalog/export")
+public class CatalogExportResource {
+    
+    @Inject
+    CatalogExportService catalogExportService;
+    
+    @GET
+    @Path("/ndjson")
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @RestStreamElementType(MediaType.TEXT_PLAIN)
+    public Multi<String> exportNdjson() {
+        return catalogExportService.exportNdjson();
+    }
+    
+    @GET
+    @Path("/csv")
+    @Produces("text/csv")
+    public Multi<String> exportCsv() {
+        return catalogExportService.exportCsv();
+    }
+}
@@ -1,6 +1,8 @@
 package com.ecommerce.resource;
 
 import com.ecommerce.domain.dto.CouponDTO;
+import com.ecommerce.domain.model.Money;
+import com.ecommerce.exception.InvalidRequestException;
 import com.ecommerce.service.CouponService;
 import io.smallrye.mutiny.Uni;
 import jakarta.inject.Inject;
@@ -8,6 +10,7 @@ import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import java.math.BigDecimal;
 
 @Path("/api/coupons")
 @Produces(MediaType.APPLICATION_JSON)
@@ -44,9 +47,12 @@ public class CouponResource {
     public Uni<Response> validateCoupon(
             @QueryParam("code") String code,
             @QueryParam("cartTotal") BigDecimal cartTotal) {
-        return couponService.calculateDiscount(code, cartTotal, null)
+        if (cartTotal == null) {
+            throw new InvalidRequestException("cartTotal is required");
+        }
+        return couponService.calculateDiscount(code, Money.of(cartTotal), null)
             .onItem().transform(discount -> Response.ok(
-                new DiscountResponse(discount)).build());
+                new DiscountResponse(discount.toBigDecimal())).build());
     }
     
     private static class DiscountResponse {
@@ -28,8 +28,7 @@ public class ProductImageResource {
         return imageStorageService.uploadImage(
                 uploadDTO.getFile().fileName(),
                 uploadDTO.getFile().uploadedFile().toFile(),
-                uploadDTO.getFile().contentType(),
-                uploadDTO.getFile().size())
+                uploadDTO.getFile().contentType())
             .chain(imageUrl -> 
                 productService.addProductImage(productId, imageUrl, uploadDTO.getIsCover()))
             .onItem().transform(image -> 
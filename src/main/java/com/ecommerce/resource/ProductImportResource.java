@@ -0,0 +1,40 @@
+package com.ecommerce.resource;
+
+import com.ecommerce.domain.dto.ImportJobDTO;
+import com.ecommerce.service.ProductImportService;
+import io.smallrye.common.annotation.Blocking;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.jboss.resteasy.reactive.common.util.RestMediaType;
+import java.io.InputStream;
+import java.net.URI;
+
+@Path("/api/products/import")
+@Produces(MediaType.APPLICATION_JSON)
+public class ProductImportResource {
+    
+    @Inject
+    ProductImportService productImportService;
+    
+    // The upload is spooled and imported in the background; poll the returned job for progress
+    @POST
+    @Blocking
+    @Consumes({RestMediaType.APPLICATION_NDJSON, "text/csv"})
+    public Response startImport(
+            @HeaderParam(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body) {
+        ImportJobDTO job = productImportService.startImport(body, contentType);
+        return Response.accepted(job)
+            .location(URI.create("/api/products/import/" + job.getId()))
+            .build();
+    }
+    
+    @GET
+    @Path("/{jobId}")
+    public Response getImport(@PathParam("jobId") String jobId) {
+        return Response.ok(productImportService.getJob(jobId)).build();
+    }
+}
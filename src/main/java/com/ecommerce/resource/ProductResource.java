@@ -3,24 +3,59 @@ package com.ecommerce.resource;
 import com.ecommerce.domain.dto.PageDTO;
 import com.ecommerce.domain.dto.ProductDTO;
 import com.ecommerce.domain.dto.ProductFilterDTO;
+import com.ecommerce.domain.dto.TrendingSketchDTO;
 import com.ecommerce.domain.model.Product;
+import com.ecommerce.domain.model.Tag;
+import com.ecommerce.exception.InvalidRequestException;
+import com.ecommerce.service.CatalogETags;
+import com.ecommerce.service.HotListingCache;
+import com.ecommerce.service.ProductCoOccurrence;
 import com.ecommerce.service.ProductService;
+import com.ecommerce.service.TrendingProducts;
 import io.smallrye.mutiny.Uni;
+import io.vertx.core.buffer.Buffer;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import java.math.BigDecimal;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 @Path("/api/products")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
 public class ProductResource {
     
+    // Clients may keep responses but must revalidate them with If-None-Match
+    private static final CacheControl REVALIDATE = CacheControl.valueOf("no-cache");
+    private static final int MAX_TAGS = 50;
+    
     @Inject
     ProductService productService;
     
+    @Inject
+    CatalogETags eTags;
+    
+    @Inject
+    HotListingCache hotListings;
+    
+    @Inject
+    ProductCoOccurrence coOccurrence;
+    
+    @Inject
+    TrendingProducts trending;
+    
     @GET
     public Uni<Response> getProducts(
             @QueryParam("searchTerm") String searchTerm,
@@ -29,11 +64,129 @@ public class ProductResource {
             @QueryParam("maxPrice") Double maxPrice,
             @QueryParam("minRating") Double minRating,
             @QueryParam("inStock") Boolean inStock,
+            @QueryParam("tags") List<String> tags,
+            @QueryParam("tagMatch") String tagMatch,
             @QueryParam("sortBy") String sortBy,
             @QueryParam("sortDirection") String sortDirection,
-            @QueryParam("page") Integer page,
-            @QueryParam("size") Integer size) {
+            @QueryParam("page") @Min(0) Integer page,
+            @QueryParam("size") @Min(1) @Max(ProductFilterDTO.MAX_PAGE_SIZE) Integer size,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("includeTotal") Boolean includeTotal,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+            @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) {
         
+        EntityTag tag = eTags.catalogTag();
+        if (eTags.isNotModified(CatalogETags.LISTING, ifNoneMatch, tag)) {
+            return Uni.createFrom().item(notModified(tag));
+        }
+        
+        ProductFilterDTO filter = createFilter(searchTerm, categoryId, minPrice, maxPrice, minRating, inStock);
+        filter.setTags(parseTags(tags));
+        filter.setTagMatch(tagMatch);
+        filter.setSortBy(sortBy);
+        filter.setSortDirection(sortDirection);
+        filter.setPage(page);
+        filter.setSize(size);
+        filter.setCursor(cursor);
+        filter.setIncludeTotal(includeTotal);
+        
+        // Hot listings skip both the query and Jackson
+        String hotKey = hotListings.keyOf(filter);
+        HotListingCache.HotPage hot = hotListings.get(hotKey, tag);
+        if (hot != null) {
+            return Uni.createFrom().item(hotResponse(hot, acceptEncoding));
+        }
+        
+        return productService.getFilteredProducts(filter)
+            .onItem().transform(products -> hotKey != null
+                ? hotResponse(hotListings.offer(hotKey, filter, tag, products), acceptEncoding)
+                : Response.ok(products).tag(tag).cacheControl(REVALIDATE).build());
+    }
+    
+    @GET
+    @Path("/facets")
+    public Uni<Response> getFacets(
+            @QueryParam("searchTerm") String searchTerm,
+            @QueryParam("categoryId") Long categoryId,
+            @QueryParam("minPrice") Double minPrice,
+            @QueryParam("maxPrice") Double maxPrice,
+            @QueryParam("minRating") Double minRating,
+            @QueryParam("inStock") Boolean inStock,
+            @QueryParam("tags") List<String> tags,
+            @QueryParam("tagMatch") String tagMatch,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+        EntityTag tag = eTags.catalogTag();
+        if (eTags.isNotModified(CatalogETags.FACETS, ifNoneMatch, tag)) {
+            return Uni.createFrom().item(notModified(tag));
+        }
+        
+        ProductFilterDTO filter = createFilter(searchTerm, categoryId, minPrice, maxPrice, minRating, inStock);
+        filter.setTags(parseTags(tags));
+        filter.setTagMatch(tagMatch);
+        return productService.getFacets(filter)
+            .onItem().transform(facets -> Response.ok(facets).tag(tag).cacheControl(REVALIDATE).build());
+    }
+    
+    @GET
+    @Path("/autocomplete")
+    public Uni<Response> autocomplete(
+            @QueryParam("q") String query,
+            @QueryParam("limit") @DefaultValue("10") int limit) {
+        return productService.getSuggestions(query, limit)
+            .onItem().transform(suggestions -> Response.ok(suggestions).build());
+    }
+    
+    // The bytes are wrapped, not copied. Pre-compressed bodies carry Content-Encoding, so the
+    // HTTP compression filter passes them through untouched; plain ones it compresses itself.
+    private static Response hotResponse(HotListingCache.HotPage page, String acceptEncoding) {
+        boolean gzip = page.gzip() != null && acceptsGzip(acceptEncoding);
+        Response.ResponseBuilder response = Response
+            .ok(Buffer.buffer(gzip ? page.gzip() : page.json()), MediaType.APPLICATION_JSON_TYPE)
+            .tag(page.tag())
+            .cacheControl(REVALIDATE)
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.build();
+    }
+    
+    // Honours q-values: "gzip;q=0" refuses gzip, and "*" covers it unless gzip is listed itself
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        double gzip = -1;
+        double any = -1;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.length() > 2 && (param.startsWith("q=") || param.startsWith("Q="))) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = Math.max(gzip, quality);
+            } else if (coding.equals("*")) {
+                any = Math.max(any, quality);
+            }
+        }
+        return gzip >= 0 ? gzip > 0 : any > 0;
+    }
+    
+    private static Response notModified(EntityTag tag) {
+        return Response.notModified(tag).cacheControl(REVALIDATE).build();
+    }
+    
+    private ProductFilterDTO createFilter(String searchTerm, Long categoryId, Double minPrice,
+            Double maxPrice, Double minRating, Boolean inStock) {
         ProductFilterDTO filter = new ProductFilterDTO();
         filter.setSearchTerm(searchTerm);
         filter.setCategoryId(categoryId);
@@ -41,20 +194,96 @@ public class ProductResource {
         filter.setMaxPrice(maxPrice != null ? BigDecimal.valueOf(maxPrice) : null);
         filter.setMinRating(minRating);
         filter.setInStock(inStock);
-        filter.setSortBy(sortBy);
-        filter.setSortDirection(sortDirection);
-        filter.setPage(page);
-        filter.setSize(size);
-        
-        return productService.getFilteredProducts(filter)
-            .onItem().transform(products -> Response.ok(products).build());
+        return filter;
+    }
+    
+    // Accepts both repeated tags parameters and comma separated values
+    private Set<String> parseTags(List<String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return null;
+        }
+        Set<String> parsed = new LinkedHashSet<>();
+        for (String value : tags) {
+            for (String tag : value.split(",")) {
+                if (!tag.isBlank()) {
+                    parsed.add(tag.trim());
+                }
+            }
+        }
+        return parsed.isEmpty() ? null : parsed;
+    }
+    
+    // This replica's view of the last hour
+    @GET
+    @Path("/trending")
+    public Uni<Response> getTrending(@QueryParam("limit") @DefaultValue("20") int limit) {
+        return Uni.createFrom().item(() ->
+            Response.ok(trending.trending(Math.max(1, Math.min(limit, 100)))).build());
+    }
+    
+    // Raw window sketch; an aggregator collects these from every replica and posts them to /trending/merge
+    @GET
+    @Path("/trending/sketch")
+    public Uni<Response> getTrendingSketch() {
+        return Uni.createFrom().item(() -> Response.ok(trending.snapshot()).build());
+    }
+    
+    // The sketches come from the caller, so sketches that cannot be merged are its error
+    @POST
+    @Path("/trending/merge")
+    public Uni<Response> mergeTrending(List<TrendingSketchDTO> sketches,
+            @QueryParam("limit") @DefaultValue("20") int limit) {
+        return Uni.createFrom().item(() -> {
+            try {
+                return Response.ok(trending.merge(sketches, Math.max(1, Math.min(limit, 100)))).build();
+            } catch (IllegalArgumentException e) {
+                throw new InvalidRequestException(e.getMessage());
+            }
+        });
+    }
+    
+    // Answered from memory; an unknown or never co-purchased product simply has no partners
+    @GET
+    @Path("/{id}/frequently-bought-together")
+    public Uni<Response> getFrequentlyBoughtTogether(@PathParam("id") Long id,
+            @QueryParam("limit") @DefaultValue("10") int limit) {
+        return Uni.createFrom().item(() ->
+            Response.ok(coOccurrence.related(id, Math.max(1, Math.min(limit, 50)))).build());
+    }
+    
+    @GET
+    @Path("/{id}/tags")
+    public Uni<Response> getProductTags(@PathParam("id") Long id) {
+        return productService.getProductTags(id)
+            .onItem().transform(tags -> Response.ok(tags).build());
+    }
+    
+    // The body stays a bare JSON array of names; each must fit the tags.name column
+    @PUT
+    @Path("/{id}/tags")
+    public Uni<Response> updateProductTags(@PathParam("id") Long id,
+            @Size(max = MAX_TAGS, message = "At most " + MAX_TAGS + " tags per product")
+            Set<@NotBlank(message = "Tag names must not be blank")
+                @Size(max = Tag.MAX_NAME_LENGTH, message = "Tag names are at most " + Tag.MAX_NAME_LENGTH + " characters")
+                String> tags) {
+        return productService.updateProductTags(id, tags)
+            .onItem().transform(updated -> Response.ok(updated).build());
     }
     
     @GET
     @Path("/{id}")
-    public Uni<Response> getProduct(@PathParam("id") Long id) {
+    public Uni<Response> getProduct(@PathParam("id") Long id,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+        // Cache hits answer without touching the database; the body is only serialized on a mismatch
         return productService.getProductById(id)
-            .onItem().transform(product -> Response.ok(product).build());
+            .onItem().transform(product -> {
+                trending.record(product.getId(), TrendingProducts.Signal.VIEW);
+                EntityTag tag = eTags.productTag(product);
+                if (eTags.isNotModified(CatalogETags.PRODUCT, ifNoneMatch, tag)) {
+                    return notModified(tag);
+                }
+                return Response.ok(product).tag(tag).cacheControl(REVALIDATE).build();
+            });
     }
     
     @POST
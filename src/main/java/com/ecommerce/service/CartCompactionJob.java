@@ -0,0 +1,156 @@
+package com.ecommerce.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Expires carts nobody is coming back to: empty carts after a short TTL and any cart after a
+// long one, measured from carts.active_at, which only the owner's changes move (repricing
+// does not). The cutoffs come from the application clock that stamps active_at. Rows go in small chunks, each in its own short
+// transaction with a pause after it, and a run stops after a fixed number of chunks, so the
+// job never holds many locks or saturates the database however large the backlog is.
+//
+// Candidates are locked with SKIP LOCKED, so replicas running the job at the same time split
+// the work instead of queueing behind each other.
+@ApplicationScoped
+public class CartCompactionJob {
+    
+    private static final Logger LOG = Logger.getLogger(CartCompactionJob.class);
+    
+    // Goes through idx_carts_active; the emptiness check only runs on carts past the short TTL
+    private static final String SELECT_EXPIRED =
+        "SELECT c.id FROM carts c WHERE c.active_at < $1 " +
+        "AND (c.active_at < $2 " +
+        "OR NOT EXISTS (SELECT 1 FROM cart_items ci WHERE ci.cart_id = c.id)) " +
+        "LIMIT $3 FOR UPDATE SKIP LOCKED";
+    private static final String DELETE_ITEMS =
+        "DELETE FROM cart_items WHERE cart_id = ANY($1)";
+    private static final String DELETE_CARTS =
+        "DELETE FROM carts WHERE id = ANY($1)";
+    
+    @ConfigProperty(name = "cart.compaction.enabled", defaultValue = "true")
+    boolean enabled;
+    
+    @ConfigProperty(name = "cart.compaction.empty-ttl", defaultValue = "P1D")
+    Duration emptyTtl;
+    
+    @ConfigProperty(name = "cart.compaction.idle-ttl", defaultValue = "P30D")
+    Duration idleTtl;
+    
+    @ConfigProperty(name = "cart.compaction.batch-size", defaultValue = "500")
+    int batchSize;
+    
+    @ConfigProperty(name = "cart.compaction.pause", defaultValue = "PT0.2S")
+    Duration pause;
+    
+    @ConfigProperty(name = "cart.compaction.max-batches", defaultValue = "200")
+    int maxBatches;
+    
+    @Inject
+    PgPool pool;
+    
+    @Inject
+    MeterRegistry registry;
+    
+    private Counter cartsRemoved;
+    private Counter itemsRemoved;
+    private Timer batchTimer;
+    
+    @PostConstruct
+    void init() {
+        cartsRemoved = Counter.builder("cart.compaction.carts")
+            .description("Expired carts deleted")
+            .register(registry);
+        itemsRemoved = Counter.builder("cart.compaction.items")
+            .description("Cart lines deleted with their expired carts")
+            .register(registry);
+        batchTimer = Timer.builder("cart.compaction.batch")
+            .description("Database time of one compaction chunk, lock to commit")
+            .register(registry);
+    }
+    
+    @Scheduled(every = "${cart.compaction.interval:15m}", delayed = "5m",
+        concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> compact() {
+        if (!enabled) {
+            return Uni.createFrom().voidItem();
+        }
+        Tally tally = new Tally();
+        return nextBatch(tally)
+            .invoke(() -> {
+                if (tally.carts > 0) {
+                    LOG.infof("Cart compaction removed %d carts and %d items in %d chunks, %d ms in the database",
+                        tally.carts, tally.items, tally.batches, Duration.ofNanos(tally.nanos).toMillis());
+                }
+            })
+            .onFailure().invoke(e -> LOG.warnf(e, "Cart compaction stopped after %d carts", tally.carts))
+            .onFailure().recoverWithNull();
+    }
+    
+    // A short chunk means the backlog is gone; otherwise rest before taking the next one
+    private Uni<Void> nextBatch(Tally tally) {
+        return deleteBatch(tally).chain(removed -> {
+            if (removed < batchSize || tally.batches >= maxBatches) {
+                return Uni.createFrom().voidItem();
+            }
+            return Uni.createFrom().voidItem()
+                .onItem().delayIt().by(pause)
+                .chain(() -> nextBatch(tally));
+        });
+    }
+    
+    // Counted once the chunk commits; returns how many carts it removed
+    private Uni<Integer> deleteBatch(Tally tally) {
+        Duration shortest = emptyTtl.compareTo(idleTtl) <= 0 ? emptyTtl : idleTtl;
+        LocalDateTime now = LocalDateTime.now();
+        Tuple bounds = Tuple.of(now.minus(shortest), now.minus(idleTtl), batchSize);
+        long started = System.nanoTime();
+        return pool.withTransaction(connection -> connection.preparedQuery(SELECT_EXPIRED)
+                .execute(bounds)
+                .chain(rows -> {
+                    List<Long> ids = new ArrayList<>(rows.size());
+                    for (Row row : rows) {
+                        ids.add(row.getLong("id"));
+                    }
+                    if (ids.isEmpty()) {
+                        return Uni.createFrom().item(new int[2]);
+                    }
+                    Tuple expired = Tuple.of((Object) ids.toArray(Long[]::new));
+                    return connection.preparedQuery(DELETE_ITEMS).execute(expired)
+                        .chain(items -> connection.preparedQuery(DELETE_CARTS).execute(expired)
+                            .map(carts -> new int[] { carts.rowCount(), items.rowCount() }));
+                }))
+            .map(removed -> {
+                long elapsed = System.nanoTime() - started;
+                tally.batches++;
+                tally.nanos += elapsed;
+                tally.carts += removed[0];
+                tally.items += removed[1];
+                batchTimer.record(Duration.ofNanos(elapsed));
+                cartsRemoved.increment(removed[0]);
+                itemsRemoved.increment(removed[1]);
+                return removed[0];
+            });
+    }
+    
+    private static final class Tally {
+        private long carts;
+        private long items;
+        private int batches;
+        private long nanos;
+    }
+}
@@ -0,0 +1,286 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.model.Money;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.RowSet;
+import io.vertx.mutiny.sqlclient.SqlConnection;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Brings cart lines up to date when product prices change, instead of waiting for the owner
+// to touch the cart. Changed products are collected for a short delay, then repriced in chunks
+// off the request path. Each chunk is two set-based statements. The lines go through the
+// cart_items(product_id) index, then the totals of exactly the carts that changed are updated.
+// Resident write-behind carts are repriced in memory through the store's reverse index.
+// A bulk write that announces price changes reprices every line instead, walking cart_items
+// by id range so each transaction stays as small as a regular chunk.
+//
+// Every replica hears every change and runs the same statements. Only lines whose price
+// actually differs are touched, so the replicas that come second update nothing.
+@ApplicationScoped
+public class CartRepricer {
+    
+    private static final Logger LOG = Logger.getLogger(CartRepricer.class);
+    
+    private static final String LOAD_PRICES =
+        "SELECT id, price FROM products WHERE id = ANY($1)";
+    private static final String REPRICE_LINES =
+        "UPDATE cart_items ci SET price = p.price, subtotal = p.price * ci.quantity " +
+        "FROM products p WHERE p.id = ANY($1) AND ci.product_id = p.id AND ci.price <> p.price " +
+        "RETURNING ci.cart_id";
+    private static final String MAX_LINE_ID =
+        "SELECT max(id) AS id FROM cart_items";
+    private static final String REPRICE_LINE_RANGE =
+        "UPDATE cart_items ci SET price = p.price, subtotal = p.price * ci.quantity " +
+        "FROM products p WHERE ci.id > $1 AND ci.id <= $2 AND ci.product_id = p.id AND ci.price <> p.price " +
+        "RETURNING ci.cart_id";
+    private static final String UPDATE_TOTALS =
+        "UPDATE carts c SET total_amount = t.total " +
+        "FROM (SELECT cart_id, SUM(subtotal) AS total FROM cart_items WHERE cart_id = ANY($1) GROUP BY cart_id) t " +
+        "WHERE c.id = t.cart_id";
+    
+    @ConfigProperty(name = "cart.repricing.delay", defaultValue = "PT0.5S")
+    Duration delay;
+    
+    @ConfigProperty(name = "cart.repricing.batch-size", defaultValue = "200")
+    int batchSize;
+    
+    @ConfigProperty(name = "cart.repricing.concurrency", defaultValue = "2")
+    int concurrency;
+    
+    @ConfigProperty(name = "cart.repricing.range-size", defaultValue = "5000")
+    long rangeSize;
+    
+    @Inject
+    PgPool pool;
+    
+    @Inject
+    CartWriteBehindStore cartStore;
+    
+    @Inject
+    Vertx vertx;
+    
+    @Inject
+    MeterRegistry registry;
+    
+    // Product id to when its change was first seen, for the lag metric
+    private final Map<Long, Long> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean repriceAll = new AtomicBoolean();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile long repriceAllSince;
+    
+    private Timer lag;
+    private Counter linesRepriced;
+    private Counter residentRepriced;
+    private Counter failures;
+    
+    @PostConstruct
+    void init() {
+        lag = Timer.builder("cart.repricing.lag")
+            .description("Time from a product change reaching this replica to its carts being repriced")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(registry);
+        Gauge.builder("cart.repricing.pending", pending, Map::size)
+            .description("Changed products waiting to be repriced in carts")
+            .register(registry);
+        Gauge.builder("cart.repricing.oldest.seconds", this, CartRepricer::oldestPendingSeconds)
+            .description("Age of the oldest product change not yet repriced in carts")
+            .register(registry);
+        linesRepriced = Counter.builder("cart.repricing.lines")
+            .description("Stored cart lines updated to a new price")
+            .register(registry);
+        residentRepriced = Counter.builder("cart.repricing.resident.carts")
+            .description("In-memory carts updated to a new price")
+            .register(registry);
+        failures = Counter.builder("cart.repricing.failures")
+            .description("Repricing chunks that failed and were queued again")
+            .register(registry);
+    }
+    
+    // Deletions, stock and rating updates, category edits, imports of new products and reconnect
+    // resyncs leave every existing price as it was; only a bulk write announcing price changes
+    // reprices everything
+    void onProductChanged(@Observes ProductChangedEvent event) {
+        if (!event.pricesChanged()) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (event.isBulk()) {
+            if (repriceAll.compareAndSet(false, true)) {
+                repriceAllSince = now;
+            }
+        } else {
+            pending.putIfAbsent(event.productId(), now);
+        }
+        schedule();
+    }
+    
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            vertx.setTimer(Math.max(1, delay.toMillis()), id -> {
+                scheduled.set(false);
+                run();
+            });
+        }
+    }
+    
+    // One pass at a time; changes arriving meanwhile are picked up by the pass scheduled after it
+    private void run() {
+        if (!running.compareAndSet(false, true)) {
+            schedule();
+            return;
+        }
+        Uni<Void> pass;
+        if (repriceAll.getAndSet(false)) {
+            long since = repriceAllSince;
+            pending.clear();
+            pass = repriceEverything(since);
+        } else {
+            List<Map<Long, Long>> chunks = drain();
+            pass = Multi.createFrom().iterable(chunks)
+                .onItem().transformToUni(this::repriceChunk)
+                .merge(Math.max(1, concurrency))
+                .collect().last()
+                .replaceWithVoid();
+        }
+        pass.eventually(() -> {
+                running.set(false);
+                if (!pending.isEmpty() || repriceAll.get()) {
+                    schedule();
+                }
+            })
+            .subscribe().with(
+                done -> { },
+                e -> LOG.warn("Failed to reprice carts", e));
+    }
+    
+    // Taken off the pending map, so a change arriving while its chunk runs is queued afresh
+    // rather than absorbed by a statement that may already have read the old price
+    private List<Map<Long, Long>> drain() {
+        List<Map<Long, Long>> chunks = new ArrayList<>();
+        Map<Long, Long> chunk = new HashMap<>();
+        for (Long productId : new ArrayList<>(pending.keySet())) {
+            Long seen = pending.remove(productId);
+            if (seen == null) {
+                continue;
+            }
+            chunk.put(productId, seen);
+            if (chunk.size() == batchSize) {
+                chunks.add(chunk);
+                chunk = new HashMap<>();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+    
+    // A failed chunk goes back on the pending map, keeping when each change was first seen
+    private Uni<Void> repriceChunk(Map<Long, Long> chunk) {
+        Long[] ids = chunk.keySet().toArray(Long[]::new);
+        return repriceResident(ids)
+            .chain(() -> pool.withTransaction(connection -> connection.preparedQuery(REPRICE_LINES)
+                .execute(Tuple.of((Object) ids))
+                .chain(rows -> updateTotals(connection, rows))))
+            .invoke(() -> {
+                long now = System.nanoTime();
+                chunk.values().forEach(seen -> lag.record(Duration.ofNanos(now - seen)));
+            })
+            .onFailure().invoke(e -> {
+                failures.increment();
+                chunk.forEach((productId, seen) -> pending.merge(productId, seen, Math::min));
+                LOG.warnf(e, "Failed to reprice carts for %d products, retrying", chunk.size());
+            })
+            .onFailure().recoverWithNull()
+            .replaceWithVoid();
+    }
+    
+    // Lines added after the upper bound was read were priced when they were added
+    private Uni<Void> repriceEverything(long since) {
+        Set<Long> resident = cartStore.isEnabled() ? cartStore.residentProductIds() : Set.of();
+        return repriceResident(resident.toArray(Long[]::new))
+            .chain(() -> pool.query(MAX_LINE_ID).execute())
+            .chain(rows -> {
+                Long last = rows.iterator().next().getLong("id");
+                return last == null ? Uni.createFrom().voidItem() : repriceRange(0, last);
+            })
+            .invoke(() -> lag.record(Duration.ofNanos(System.nanoTime() - since)))
+            .onFailure().invoke(e -> {
+                failures.increment();
+                repriceAll.compareAndSet(false, true);
+                LOG.warn("Failed to reprice all carts, retrying", e);
+            })
+            .onFailure().recoverWithNull()
+            .replaceWithVoid();
+    }
+    
+    // One range per transaction, one after the other
+    private Uni<Void> repriceRange(long after, long last) {
+        long upTo = Math.min(last, after + Math.max(1, rangeSize));
+        return pool.withTransaction(connection -> connection.preparedQuery(REPRICE_LINE_RANGE)
+                .execute(Tuple.of(after, upTo))
+                .chain(rows -> updateTotals(connection, rows)))
+            .chain(() -> upTo < last ? repriceRange(upTo, last) : Uni.createFrom().voidItem());
+    }
+    
+    private Uni<Void> updateTotals(SqlConnection connection, RowSet<Row> repriced) {
+        Set<Long> cartIds = new HashSet<>();
+        for (Row row : repriced) {
+            cartIds.add(row.getLong("cart_id"));
+        }
+        if (cartIds.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        linesRepriced.increment(repriced.rowCount());
+        return connection.preparedQuery(UPDATE_TOTALS)
+            .execute(Tuple.of((Object) cartIds.toArray(Long[]::new)))
+            .replaceWithVoid();
+    }
+    
+    private Uni<Void> repriceResident(Long[] productIds) {
+        if (!cartStore.isEnabled() || productIds.length == 0) {
+            return Uni.createFrom().voidItem();
+        }
+        return pool.preparedQuery(LOAD_PRICES)
+            .execute(Tuple.of((Object) productIds))
+            .invoke(rows -> {
+                Map<Long, Long> prices = new HashMap<>();
+                for (Row row : rows) {
+                    prices.put(row.getLong("id"), Money.toMinor(row.getBigDecimal("price")));
+                }
+                residentRepriced.increment(cartStore.reprice(prices));
+            })
+            .replaceWithVoid();
+    }
+    
+    private double oldestPendingSeconds() {
+        long now = System.nanoTime();
+        long oldest = now;
+        for (Long seen : pending.values()) {
+            oldest = Math.min(oldest, seen);
+        }
+        if (repriceAll.get()) {
+            oldest = Math.min(oldest, repriceAllSince);
+        }
+        return (now - oldest) / 1e9;
+    }
+}
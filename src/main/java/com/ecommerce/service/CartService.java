@@ -1,16 +1,28 @@
 package com.ecommerce.service;
 
+import com.ecommerce.domain.dto.CartDTO;
+import com.ecommerce.domain.dto.CartItemDTO;
+import com.ecommerce.domain.dto.CartOperationDTO;
 import com.ecommerce.domain.model.Cart;
 import com.ecommerce.domain.model.CartItem;
+import com.ecommerce.domain.model.Money;
 import com.ecommerce.domain.model.Product;
 import com.ecommerce.domain.repository.CartRepository;
 import com.ecommerce.domain.repository.ProductRepository;
+import com.ecommerce.exception.InvalidRequestException;
 import com.ecommerce.exception.ResourceNotFoundException;
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
-import jakarta.transaction.Transactional;
-import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @ApplicationScoped
 public class CartService {
@@ -21,16 +33,89 @@ public class CartService {
     @Inject
     ProductRepository productRepository;
     
-    public Uni<Cart> getCart(String userId) {
+    @Inject
+    ProductBatchLoader productLoader;
+    
+    @Inject
+    TrendingProducts trending;
+    
+    @Inject
+    CartWriteBehindStore cartStore;
+    
+    // With write-behind enabled, reads never leave memory once the cart is resident. Reading
+    // never creates a row; a cart is stored with its first item.
+    public Uni<CartDTO> getCart(String userId) {
+        if (cartStore.isEnabled()) {
+            return cartStore.get(userId).map(CartState::toDTO);
+        }
         return cartRepository.findByUserId(userId)
-            .onItem().ifNull().switchTo(() -> createCart(userId));
+            .map(cart -> cart != null ? toDTO(cart) : CartState.empty(userId).toDTO());
+    }
+    
+    public Uni<CartDTO> addToCart(String userId, Long productId, Integer quantity) {
+        if (cartStore.isEnabled()) {
+            return productLoader.load(productId)
+                .onItem().ifNull().failWith(() ->
+                    new ResourceNotFoundException("Product not found"))
+                .chain(product -> cartStore.update(userId,
+                    state -> state.add(productId, quantity, Money.toMinor(product.getPrice()))))
+                .invoke(() -> trending.record(productId, TrendingProducts.Signal.CART))
+                .map(CartState::toDTO);
+        }
+        return addToStoredCart(userId, productId, quantity)
+            .map(CartService::toDTO);
+    }
+    
+    // All referenced products come from one batched query, and the cart is written and totalled
+    // once, so a batch costs about as much as a single add
+    public Uni<CartDTO> applyBatch(String userId, List<CartOperationDTO> operations) {
+        Set<Long> priced = new LinkedHashSet<>();
+        for (CartOperationDTO operation : operations) {
+            if (operation.getType() == CartOperationDTO.Type.SET && operation.getQuantity() == null) {
+                return Uni.createFrom().failure(new InvalidRequestException(
+                    "Quantity is required to set product " + operation.getProductId()));
+            }
+            if (operation.getType() != CartOperationDTO.Type.REMOVE) {
+                priced.add(operation.getProductId());
+            }
+        }
+        
+        return productLoader.loadAll(priced)
+            .chain(products -> {
+                Set<Long> missing = new LinkedHashSet<>(priced);
+                missing.removeAll(products.keySet());
+                if (!missing.isEmpty()) {
+                    return Uni.createFrom().failure(
+                        new ResourceNotFoundException("Products not found: " + missing));
+                }
+                Map<Long, Long> prices = new HashMap<>();
+                products.forEach((id, product) -> prices.put(id, Money.toMinor(product.getPrice())));
+                
+                if (cartStore.isEnabled()) {
+                    return cartStore.update(userId, state -> state.withQuantities(
+                            fold(quantitiesOf(state), operations), prices))
+                        .map(CartState::toDTO);
+                }
+                return applyToStoredCart(userId, operations, prices)
+                    .map(CartService::toDTO);
+            })
+            .invoke(() -> operations.stream()
+                .filter(operation -> operation.getType() == CartOperationDTO.Type.ADD)
+                .forEach(operation -> trending.record(operation.getProductId(), TrendingProducts.Signal.CART)));
+    }
+    
+    // Checkout reads the cart from the database, so anything still held in memory goes first
+    public Uni<Void> flush(String userId) {
+        return cartStore.flush(userId);
     }
     
-    @Transactional
-    public Uni<Cart> addToCart(String userId, Long productId, Integer quantity) {
-        return Uni.combine().all().unis(
-            getCart(userId),
-            productRepository.findById(productId)
+    // Called from inside this bean, where an interceptor binding would never apply, so the
+    // transaction is opened explicitly
+    private Uni<Cart> addToStoredCart(String userId, Long productId, Integer quantity) {
+        return Panache.withTransaction(() -> Uni.combine().all().unis(
+            cartRepository.findByUserId(userId)
+                .onItem().ifNull().switchTo(() -> createCart(userId)),
+            productLoader.load(productId)
         ).asTuple()
         .chain(tuple -> {
             Cart cart = tuple.getItem1();
@@ -41,23 +126,102 @@ public class CartService {
                     new ResourceNotFoundException("Product not found"));
             }
             
-            CartItem cartItem = findOrCreateCartItem(cart, product);
-            cartItem.setQuantity(cartItem.getQuantity() + quantity);
-            cartItem.setPrice(product.getPrice());
-            cartItem.setSubtotal(product.getPrice().multiply(
-                BigDecimal.valueOf(cartItem.getQuantity())));
-            
-            updateCartTotal(cart);
-            
-            return cartRepository.persist(cart);
-        });
+            return findOrCreateCartItem(cart, productId)
+                .chain(cartItem -> {
+                    reprice(cartItem, cartItem.getQuantity() + quantity, Money.toMinor(product.getPrice()));
+                    
+                    updateCartTotal(cart);
+                    
+                    return cartRepository.persist(cart);
+                });
+        }))
+        .invoke(() -> trending.record(productId, TrendingProducts.Signal.CART));
+    }
+    
+    // Opened explicitly for the same reason as addToStoredCart
+    private Uni<Cart> applyToStoredCart(String userId, List<CartOperationDTO> operations, Map<Long, Long> prices) {
+        return Panache.withTransaction(() -> cartRepository.findByUserId(userId)
+            .onItem().ifNull().switchTo(() -> createCart(userId))
+            .chain(cart -> {
+                Map<Long, CartItem> items = new HashMap<>();
+                Map<Long, Integer> current = new HashMap<>();
+                for (CartItem item : cart.getItems()) {
+                    items.put(item.getProduct().getId(), item);
+                    current.put(item.getProduct().getId(), item.getQuantity());
+                }
+                Map<Long, Integer> quantities = fold(current, operations);
+                
+                List<Uni<CartItem>> added = new ArrayList<>();
+                quantities.forEach((productId, quantity) -> {
+                    CartItem item = items.get(productId);
+                    if (quantity <= 0) {
+                        if (item != null) {
+                            cart.getItems().remove(item);
+                        }
+                    } else if (item != null) {
+                        reprice(item, quantity, prices.get(productId));
+                    } else {
+                        added.add(findOrCreateCartItem(cart, productId)
+                            .invoke(created -> reprice(created, quantity, prices.get(productId))));
+                    }
+                });
+                
+                // One after the other: the session must not be used concurrently
+                return Multi.createFrom().iterable(added)
+                    .onItem().transformToUniAndConcatenate(line -> line)
+                    .collect().asList()
+                    .chain(() -> {
+                        updateCartTotal(cart);
+                        return cartRepository.persist(cart);
+                    });
+            }));
+    }
+    
+    // Final quantity of every product the batch touches, starting from what the cart holds
+    private static Map<Long, Integer> fold(Map<Long, Integer> current, List<CartOperationDTO> operations) {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (CartOperationDTO operation : operations) {
+            Long productId = operation.getProductId();
+            int quantity = quantities.getOrDefault(productId, current.getOrDefault(productId, 0));
+            switch (operation.getType()) {
+                case ADD:
+                    quantity += operation.getQuantity() != null ? operation.getQuantity() : 1;
+                    break;
+                case SET:
+                    quantity = operation.getQuantity();
+                    break;
+                default:
+                    quantity = 0;
+            }
+            quantities.put(productId, quantity);
+        }
+        return quantities;
     }
     
-    private CartItem findOrCreateCartItem(Cart cart, Product product) {
-        return cart.getItems().stream()
-            .filter(item -> item.getProduct().getId().equals(product.getId()))
+    private static Map<Long, Integer> quantitiesOf(CartState state) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        state.lines().forEach((productId, line) -> quantities.put(productId, line.quantity()));
+        return quantities;
+    }
+    
+    // Computed in minor units; the entity only holds the DECIMAL column values
+    private static void reprice(CartItem item, int quantity, long price) {
+        item.setQuantity(quantity);
+        item.setPrice(Money.toDecimal(price));
+        item.setSubtotal(Money.toDecimal(Math.multiplyExact(price, quantity)));
+    }
+    
+    // New lines link to the product by reference; the batch-loaded product is only a snapshot
+    private Uni<CartItem> findOrCreateCartItem(Cart cart, Long productId) {
+        CartItem existing = cart.getItems().stream()
+            .filter(item -> item.getProduct().getId().equals(productId))
             .findFirst()
-            .orElseGet(() -> {
+            .orElse(null);
+        if (existing != null) {
+            return Uni.createFrom().item(existing);
+        }
+        return productRepository.reference(productId)
+            .map(product -> {
                 CartItem newItem = new CartItem();
                 newItem.setCart(cart);
                 newItem.setProduct(product);
@@ -68,9 +232,11 @@ public class CartService {
     }
     
     private void updateCartTotal(Cart cart) {
-        cart.setTotalAmount(cart.getItems().stream()
-            .map(CartItem::getSubtotal)
-            .reduce(BigDecimal.ZERO, BigDecimal::add));
+        long total = 0;
+        for (CartItem item : cart.getItems()) {
+            total = Math.addExact(total, Money.toMinor(item.getSubtotal()));
+        }
+        cart.setTotalAmount(Money.toDecimal(total));
     }
     
     private Uni<Cart> createCart(String userId) {
@@ -78,4 +244,13 @@ public class CartService {
         cart.setUserId(userId);
         return cartRepository.persist(cart);
     }
+    
+    private static CartDTO toDTO(Cart cart) {
+        List<CartItemDTO> items = new ArrayList<>(cart.getItems().size());
+        for (CartItem item : cart.getItems()) {
+            items.add(new CartItemDTO(item.getProduct().getId(), item.getQuantity(),
+                item.getPrice(), item.getSubtotal()));
+        }
+        return new CartDTO(cart.getId(), cart.getUserId(), items, cart.getTotalAmount());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,122 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.dto.CartDTO;
+import com.ecommerce.domain.dto.CartItemDTO;
+import com.ecommerce.domain.model.Money;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Immutable value of one cart in the write-behind store. Every mutation returns a new state,
+// which the store installs with a compare-and-set, so a mutation may be evaluated more than
+// once and must not have side effects. Amounts are minor units of the shop currency (see Money).
+public record CartState(String userId, Long cartId, Map<Long, Line> lines, long total,
+        boolean dirty, boolean retired) {
+    
+    public record Line(Long productId, int quantity, long price, long subtotal) {
+    }
+    
+    public static CartState empty(String userId) {
+        return new CartState(userId, null, Map.of(), 0, false, false);
+    }
+    
+    public static CartState loaded(String userId, Long cartId, List<Line> lines) {
+        Map<Long, Line> byProduct = new LinkedHashMap<>();
+        long total = 0;
+        for (Line line : lines) {
+            byProduct.put(line.productId(), line);
+            total = Math.addExact(total, line.subtotal());
+        }
+        return new CartState(userId, cartId, Collections.unmodifiableMap(byProduct), total, false, false);
+    }
+    
+    // Adds to the quantity already in the cart, repricing the line at the current price
+    public CartState add(Long productId, int quantity, long price) {
+        Line existing = lines.get(productId);
+        return withQuantity(productId, (existing != null ? existing.quantity() : 0) + quantity, price);
+    }
+    
+    // A quantity of zero or less removes the line; the total is adjusted by the difference only
+    public CartState withQuantity(Long productId, int quantity, long price) {
+        Map<Long, Line> updated = new LinkedHashMap<>(lines);
+        Line previous = quantity > 0
+            ? updated.put(productId, line(productId, quantity, price))
+            : updated.remove(productId);
+        long total = this.total;
+        if (previous != null) {
+            total = Math.subtractExact(total, previous.subtotal());
+        }
+        if (quantity > 0) {
+            total = Math.addExact(total, updated.get(productId).subtotal());
+        }
+        return new CartState(userId, cartId, Collections.unmodifiableMap(updated), total, true, false);
+    }
+    
+    // Sets many quantities with one copy of the lines and one pass over the total. Lines whose
+    // quantity changes are repriced; a price is required for every quantity above zero.
+    public CartState withQuantities(Map<Long, Integer> quantities, Map<Long, Long> prices) {
+        Map<Long, Line> updated = new LinkedHashMap<>(lines);
+        quantities.forEach((productId, quantity) -> {
+            if (quantity > 0) {
+                updated.put(productId, line(productId, quantity, prices.get(productId)));
+            } else {
+                updated.remove(productId);
+            }
+        });
+        long total = 0;
+        for (Line line : updated.values()) {
+            total = Math.addExact(total, line.subtotal());
+        }
+        return new CartState(userId, cartId, Collections.unmodifiableMap(updated), total, true, false);
+    }
+    
+    // Lines of the given products at a different price are repriced; the same instance comes
+    // back when nothing changes, so callers can tell whether a write is needed
+    public CartState reprice(Map<Long, Long> prices) {
+        Map<Long, Line> updated = null;
+        for (Line line : lines.values()) {
+            Long price = prices.get(line.productId());
+            if (price != null && price != line.price()) {
+                if (updated == null) {
+                    updated = new LinkedHashMap<>(lines);
+                }
+                updated.put(line.productId(), line(line.productId(), line.quantity(), price));
+            }
+        }
+        if (updated == null) {
+            return this;
+        }
+        long total = 0;
+        for (Line line : updated.values()) {
+            total = Math.addExact(total, line.subtotal());
+        }
+        return new CartState(userId, cartId, Collections.unmodifiableMap(updated), total, true, false);
+    }
+    
+    CartState flushed(Long persistedId) {
+        return new CartState(userId, persistedId, lines, total, false, false);
+    }
+    
+    CartState withCartId(Long persistedId) {
+        return new CartState(userId, persistedId, lines, total, dirty, retired);
+    }
+    
+    CartState retire() {
+        return new CartState(userId, cartId, lines, total, false, true);
+    }
+    
+    public CartDTO toDTO() {
+        List<CartItemDTO> items = new ArrayList<>(lines.size());
+        for (Line line : lines.values()) {
+            items.add(new CartItemDTO(line.productId(), line.quantity(),
+                Money.toDecimal(line.price()), Money.toDecimal(line.subtotal())));
+        }
+        return new CartDTO(cartId, userId, items, Money.toDecimal(total));
+    }
+    
+    private static Line line(Long productId, int quantity, long price) {
+        return new Line(productId, quantity, price, Math.multiplyExact(price, quantity));
+    }
+}
@@ -0,0 +1,503 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.model.CartItem;
+import com.ecommerce.domain.model.Money;
+import com.ecommerce.domain.repository.CartRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.RowSet;
+import io.vertx.mutiny.sqlclient.SqlConnection;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+
+// Keeps active carts in memory and writes them to carts/cart_items behind the request path.
+// Carts are spread over shards by user id. A mutation is a compare-and-set on the cart's
+// immutable state, so nothing is locked. The shard only notes that the cart is dirty.
+//
+// Every flush-interval the dirty carts of each shard are written in one pipelined transaction,
+// which bounds how much a crash can lose. Checkout flushes the buyer's cart first.
+//
+// State is local to the replica, so this mode requires requests to be routed by user. Since
+// nothing here can check that, enabling it also takes cart.write-behind.routed-by-user, and
+// startup fails without it.
+@ApplicationScoped
+public class CartWriteBehindStore {
+    
+    private static final Logger LOG = Logger.getLogger(CartWriteBehindStore.class);
+    
+    private static final int FLUSH_CONCURRENCY = 4;
+    
+    private static final String INSERT_CART =
+        "INSERT INTO carts (user_id, total_amount, active_at, created_at, updated_at) " +
+        "VALUES ($1, $2, $3, now(), now()) RETURNING id";
+    // Restores the row under the same id if the compaction job expired it while the cart sat here.
+    // active_at is the owner's last access, so a flush that only carries a repricing keeps it.
+    private static final String UPDATE_CART =
+        "INSERT INTO carts (id, user_id, total_amount, active_at, created_at, updated_at) " +
+        "VALUES ($1, $2, $3, $4, now(), now()) " +
+        "ON CONFLICT (id) DO UPDATE SET total_amount = EXCLUDED.total_amount, " +
+        "active_at = GREATEST(carts.active_at, EXCLUDED.active_at)";
+    private static final String DELETE_ITEMS =
+        "DELETE FROM cart_items WHERE cart_id = ANY($1)";
+    private static final String INSERT_ITEM =
+        "INSERT INTO cart_items (cart_id, product_id, quantity, price, subtotal, created_at) " +
+        "VALUES ($1, $2, $3, $4, $5, now())";
+    
+    @ConfigProperty(name = "cart.write-behind.enabled", defaultValue = "false")
+    boolean enabled;
+    
+    // Confirms the load balancer sends each user's requests to the same replica
+    @ConfigProperty(name = "cart.write-behind.routed-by-user", defaultValue = "false")
+    boolean routedByUser;
+    
+    @ConfigProperty(name = "cart.write-behind.shards", defaultValue = "16")
+    int shardCount;
+    
+    // Upper bound on how long an acknowledged change lives only in memory
+    @ConfigProperty(name = "cart.write-behind.flush-interval", defaultValue = "PT1S")
+    Duration flushInterval;
+    
+    @ConfigProperty(name = "cart.write-behind.batch-size", defaultValue = "500")
+    int batchSize;
+    
+    // Clean carts untouched for this long are dropped from memory and reloaded on next use
+    @ConfigProperty(name = "cart.write-behind.idle-timeout", defaultValue = "PT30M")
+    Duration idleTimeout;
+    
+    @Inject
+    CartRepository cartRepository;
+    
+    @Inject
+    PgPool pool;
+    
+    @Inject
+    Vertx vertx;
+    
+    @Inject
+    MeterRegistry registry;
+    
+    private Shard[] shards;
+    // Reverse index from product to the resident carts holding it, for repricing
+    private final Map<Long, Set<String>> cartsByProduct = new ConcurrentHashMap<>();
+    // The periodic or shutdown pass in progress, if any
+    private final AtomicReference<CompletableFuture<Void>> flushing = new AtomicReference<>();
+    private Timer flushTimer;
+    private Counter flushFailures;
+    
+    @PostConstruct
+    void init() {
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+        }
+        Gauge.builder("cart.write_behind.resident", this, store -> store.count(shard -> shard.carts.size()))
+            .description("Carts held in memory")
+            .register(registry);
+        Gauge.builder("cart.write_behind.dirty", this, store -> store.count(shard -> shard.dirty.size()))
+            .description("Carts changed in memory and not yet written")
+            .register(registry);
+        flushTimer = Timer.builder("cart.write_behind.flush")
+            .description("Time to write one batch of dirty carts")
+            .register(registry);
+        flushFailures = Counter.builder("cart.write_behind.flush.failures")
+            .description("Batches of dirty carts that failed to write and were retried")
+            .register(registry);
+    }
+    
+    void onStart(@Observes StartupEvent ev) {
+        if (enabled && !routedByUser) {
+            throw new IllegalStateException("cart.write-behind.enabled requires requests routed by user; " +
+                "set cart.write-behind.routed-by-user once the load balancer does so");
+        }
+        if (enabled) {
+            vertx.setPeriodic(Math.max(1, flushInterval.toMillis()), id -> flushAll().subscribe().with(
+                ran -> { },
+                e -> LOG.warn("Failed to flush carts", e)));
+            LOG.infof("Cart write-behind enabled with %d shards, flushing every %s", shardCount, flushInterval);
+        }
+    }
+    
+    void onStop(@Observes ShutdownEvent ev) {
+        if (enabled) {
+            try {
+                drain().await().atMost(Duration.ofSeconds(30));
+            } catch (RuntimeException e) {
+                LOG.error("Failed to write carts on shutdown", e);
+            }
+        }
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public Uni<CartState> get(String userId) {
+        return resident(userId).map(holder -> {
+            holder.touch();
+            return holder.state.get();
+        });
+    }
+    
+    // The mutation is applied with a compare-and-set and may run more than once
+    public Uni<CartState> update(String userId, UnaryOperator<CartState> mutation) {
+        return resident(userId).chain(holder -> {
+            holder.touch();
+            CartState previous;
+            CartState updated;
+            do {
+                previous = holder.state.get();
+                if (previous.retired()) {
+                    // Evicted between lookup and update; apply it to the reloaded cart instead
+                    return update(userId, mutation);
+                }
+                updated = mutation.apply(previous);
+            } while (!holder.state.compareAndSet(previous, updated));
+            for (Long productId : updated.lines().keySet()) {
+                if (!previous.lines().containsKey(productId)) {
+                    index(productId, userId);
+                }
+            }
+            shardOf(userId).dirty.add(userId);
+            return Uni.createFrom().item(updated);
+        });
+    }
+    
+    // Products held by at least one resident cart, for a full repricing pass
+    public Set<Long> residentProductIds() {
+        return new HashSet<>(cartsByProduct.keySet());
+    }
+    
+    // Reprices the resident carts holding any of the products, found through the reverse index.
+    // Repriced carts are written with the next flush. Returns the number of carts changed.
+    public int reprice(Map<Long, Long> prices) {
+        Set<String> candidates = new HashSet<>();
+        prices.keySet().forEach(productId -> {
+            Set<String> userIds = cartsByProduct.get(productId);
+            if (userIds != null) {
+                candidates.addAll(userIds);
+            }
+        });
+        
+        int changed = 0;
+        for (String userId : candidates) {
+            Holder holder = shardOf(userId).carts.get(userId);
+            if (holder == null) {
+                continue;
+            }
+            CartState previous;
+            CartState updated;
+            do {
+                previous = holder.state.get();
+                updated = previous.retired() ? previous : previous.reprice(prices);
+            } while (updated != previous && !holder.state.compareAndSet(previous, updated));
+            if (updated != previous) {
+                shardOf(userId).dirty.add(userId);
+                changed++;
+            }
+        }
+        prices.keySet().forEach(productId -> candidates.forEach(userId -> unindex(productId, userId)));
+        return changed;
+    }
+    
+    // Writes one cart now, for readers that go to the database (checkout); fails if the write does
+    public Uni<Void> flush(String userId) {
+        if (!enabled) {
+            return Uni.createFrom().voidItem();
+        }
+        return flush(shardOf(userId), userId);
+    }
+    
+    // A cart missing from the dirty set may still be in a periodic write. The shard publishes
+    // that pass before taking any ids, so waiting for it covers the write; if the write failed
+    // the cart is dirty again and is written here, failing the caller if it fails again.
+    private Uni<Void> flush(Shard shard, String userId) {
+        if (shard.dirty.remove(userId)) {
+            return write(shard, List.of(userId));
+        }
+        CompletableFuture<Void> pass = shard.pass;
+        if (pass.isDone()) {
+            return Uni.createFrom().voidItem();
+        }
+        return Uni.createFrom().completionStage(pass).chain(() -> flush(shard, userId));
+    }
+    
+    private Uni<Holder> resident(String userId) {
+        Shard shard = shardOf(userId);
+        Holder holder = shard.carts.get(userId);
+        if (holder != null && !holder.state.get().retired()) {
+            return Uni.createFrom().item(holder);
+        }
+        return cartRepository.findByUserId(userId)
+            .map(cart -> {
+                if (cart == null) {
+                    return CartState.empty(userId);
+                }
+                List<CartState.Line> lines = new ArrayList<>(cart.getItems().size());
+                for (CartItem item : cart.getItems()) {
+                    lines.add(new CartState.Line(item.getProduct().getId(), item.getQuantity(),
+                        Money.toMinor(item.getPrice()), Money.toMinor(item.getSubtotal())));
+                }
+                return CartState.loaded(userId, cart.getId(), lines);
+            })
+            // A concurrent load of the same cart may have won; its state is just as current
+            .map(loaded -> {
+                Holder installed = shard.carts.compute(userId, (id, existing) ->
+                    existing != null && !existing.state.get().retired() ? existing : new Holder(loaded));
+                installed.state.get().lines().keySet().forEach(productId -> index(productId, userId));
+                return installed;
+            });
+    }
+    
+    // The index only over-approximates: entries are added once a cart gains a product and
+    // dropped lazily, after checking the cart really no longer holds it. Adding and dropping
+    // both go through compute on the product's entry, so a drop never races past an add.
+    private void index(Long productId, String userId) {
+        cartsByProduct.compute(productId, (id, userIds) -> {
+            Set<String> updated = userIds != null ? userIds : ConcurrentHashMap.newKeySet();
+            updated.add(userId);
+            return updated;
+        });
+    }
+    
+    private void unindex(Long productId, String userId) {
+        cartsByProduct.computeIfPresent(productId, (id, userIds) -> {
+            Holder holder = shardOf(userId).carts.get(userId);
+            if (holder == null || holder.state.get().retired()
+                    || !holder.state.get().lines().containsKey(productId)) {
+                userIds.remove(userId);
+            }
+            return userIds.isEmpty() ? null : userIds;
+        });
+    }
+    
+    // False when another pass is already running
+    private Uni<Boolean> flushAll() {
+        CompletableFuture<Void> pass = new CompletableFuture<>();
+        if (!flushing.compareAndSet(null, pass)) {
+            return Uni.createFrom().item(false);
+        }
+        long idleBefore = System.currentTimeMillis() - idleTimeout.toMillis();
+        return Multi.createFrom().items(shards)
+            .onItem().transformToUni(shard -> {
+                evictIdle(shard, idleBefore);
+                return flushShard(shard);
+            })
+            .merge(FLUSH_CONCURRENCY)
+            .collect().last()
+            .replaceWith(true)
+            .eventually(() -> {
+                flushing.set(null);
+                pass.complete(null);
+            });
+    }
+    
+    // Shutdown waits out a periodic pass that is running, then runs one of its own for
+    // whatever is still dirty
+    private Uni<Void> drain() {
+        return flushAll().chain(ran -> {
+            if (ran) {
+                return Uni.createFrom().voidItem();
+            }
+            CompletableFuture<Void> running = flushing.get();
+            return running == null ? drain() : Uni.createFrom().completionStage(running).chain(this::drain);
+        });
+    }
+    
+    private Uni<Void> flushShard(Shard shard) {
+        if (shard.dirty.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        CompletableFuture<Void> pass = new CompletableFuture<>();
+        shard.pass = pass;
+        List<List<String>> batches = new ArrayList<>();
+        List<String> batch = new ArrayList<>(batchSize);
+        for (Iterator<String> it = shard.dirty.iterator(); it.hasNext(); ) {
+            String userId = it.next();
+            it.remove();
+            batch.add(userId);
+            if (batch.size() == batchSize) {
+                batches.add(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return Multi.createFrom().iterable(batches)
+            // A failed batch is already back on the dirty set; the remaining batches still go out
+            .onItem().transformToUniAndConcatenate(userIds -> write(shard, userIds)
+                .onFailure().recoverWithNull())
+            .collect().last()
+            .replaceWithVoid()
+            .eventually(() -> pass.complete(null));
+    }
+    
+    // Writes the current state of each cart. The ids are taken off the dirty set before the
+    // states are read, so a change that lands during the write marks its cart dirty again.
+    private Uni<Void> write(Shard shard, List<String> userIds) {
+        List<Map.Entry<Holder, CartState>> pending = new ArrayList<>(userIds.size());
+        for (String userId : userIds) {
+            Holder holder = shard.carts.get(userId);
+            if (holder != null && holder.state.get().dirty()) {
+                pending.add(Map.entry(holder, holder.state.get()));
+            }
+        }
+        if (pending.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        
+        long started = System.nanoTime();
+        return pool.withTransaction(connection -> persist(connection, pending))
+            .invoke(ids -> {
+                for (int i = 0; i < pending.size(); i++) {
+                    Holder holder = pending.get(i).getKey();
+                    CartState written = pending.get(i).getValue();
+                    Long cartId = ids.get(i);
+                    holder.state.updateAndGet(state -> state == written ? state.flushed(cartId) : state.withCartId(cartId));
+                }
+                flushTimer.record(Duration.ofNanos(System.nanoTime() - started));
+            })
+            .replaceWithVoid()
+            .onFailure().invoke(e -> {
+                flushFailures.increment();
+                LOG.warnf(e, "Failed to write %d carts, retrying on the next flush", pending.size());
+                userIds.forEach(shard.dirty::add);
+            });
+    }
+    
+    // Returns the row id of each cart in order. Carts that were never written and are still
+    // empty get no row at all.
+    private Uni<List<Long>> persist(SqlConnection connection, List<Map.Entry<Holder, CartState>> pending) {
+        List<Tuple> inserts = new ArrayList<>();
+        List<Tuple> updates = new ArrayList<>();
+        for (Map.Entry<Holder, CartState> entry : pending) {
+            CartState state = entry.getValue();
+            LocalDateTime activeAt = LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(entry.getKey().lastAccess), ZoneId.systemDefault());
+            if (state.cartId() != null) {
+                updates.add(Tuple.of(state.cartId(), state.userId(), Money.toDecimal(state.total()), activeAt));
+            } else if (!state.lines().isEmpty()) {
+                inserts.add(Tuple.of(state.userId(), Money.toDecimal(state.total()), activeAt));
+            }
+        }
+        
+        Uni<List<Long>> insertedIds = inserts.isEmpty()
+            ? Uni.createFrom().item(List.of())
+            : connection.preparedQuery(INSERT_CART).executeBatch(inserts).map(rows -> {
+                List<Long> ids = new ArrayList<>(inserts.size());
+                for (RowSet<Row> result = rows; result != null; result = result.next()) {
+                    ids.add(result.iterator().next().getLong("id"));
+                }
+                return ids;
+            });
+        
+        return insertedIds.chain(inserted -> {
+            List<Long> cartIds = new ArrayList<>(pending.size());
+            Iterator<Long> fresh = inserted.iterator();
+            for (Map.Entry<Holder, CartState> entry : pending) {
+                CartState state = entry.getValue();
+                cartIds.add(state.cartId() != null ? state.cartId()
+                    : !state.lines().isEmpty() ? fresh.next() : null);
+            }
+            
+            List<Tuple> items = new ArrayList<>();
+            for (int i = 0; i < pending.size(); i++) {
+                Long cartId = cartIds.get(i);
+                if (cartId == null) {
+                    continue;
+                }
+                for (CartState.Line line : pending.get(i).getValue().lines().values()) {
+                    items.add(Tuple.tuple()
+                        .addValue(cartId)
+                        .addValue(line.productId())
+                        .addValue(line.quantity())
+                        .addValue(Money.toDecimal(line.price()))
+                        .addValue(Money.toDecimal(line.subtotal())));
+                }
+            }
+            Long[] written = cartIds.stream().filter(Objects::nonNull).toArray(Long[]::new);
+            
+            Uni<Void> chain = updates.isEmpty()
+                ? Uni.createFrom().voidItem()
+                : connection.preparedQuery(UPDATE_CART).executeBatch(updates).replaceWithVoid();
+            if (written.length > 0) {
+                chain = chain.chain(() -> connection.preparedQuery(DELETE_ITEMS)
+                    .execute(Tuple.of(written)).replaceWithVoid());
+            }
+            if (!items.isEmpty()) {
+                chain = chain.chain(() -> connection.preparedQuery(INSERT_ITEM)
+                    .executeBatch(items).replaceWithVoid());
+            }
+            return chain.replaceWith(cartIds);
+        });
+    }
+    
+    // Only clean carts are retired, and only by a compare-and-set against the state that was
+    // seen clean, so a change racing with eviction either wins or is replayed on a fresh load
+    private void evictIdle(Shard shard, long idleBefore) {
+        shard.carts.forEach((userId, holder) -> {
+            CartState state = holder.state.get();
+            if (holder.lastAccess < idleBefore && !state.dirty() && !state.retired()
+                    && holder.state.compareAndSet(state, state.retire())) {
+                shard.carts.remove(userId, holder);
+                state.lines().keySet().forEach(productId -> unindex(productId, userId));
+            }
+        });
+    }
+    
+    private Shard shardOf(String userId) {
+        return shards[Math.floorMod(userId.hashCode(), shards.length)];
+    }
+    
+    private double count(ToIntFunction<Shard> size) {
+        int total = 0;
+        for (Shard shard : shards) {
+            total += size.applyAsInt(shard);
+        }
+        return total;
+    }
+    
+    private static final class Shard {
+        private final Map<String, Holder> carts = new ConcurrentHashMap<>();
+        private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+        // Set before a periodic pass takes ids off the dirty set, completed once they are written
+        private volatile CompletableFuture<Void> pass = CompletableFuture.completedFuture(null);
+    }
+    
+    private static final class Holder {
+        private final AtomicReference<CartState> state;
+        private volatile long lastAccess = System.currentTimeMillis();
+        
+        private Holder(CartState initial) {
+            state = new AtomicReference<>(initial);
+        }
+        
+        private void touch() {
+            lastAccess = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.dto.ProductDetailDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.mutiny.pgclient.PgPool;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.EntityTag;
+import org.jboss.logging.Logger;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Entity tags for conditional catalog reads. Product detail gets a strong tag from the row
+// version. Listings and facets get a weak tag from the catalog_revision sequence: every product
+// and category notification a listing can show carries the revision the database assigned to
+// it (stock moving without crossing zero carries none and is ignored), and every replica receives the same notifications, so replicas that have applied the same changes hand
+// out the same tag and a client bouncing between pods still gets its 304s.
+//
+// The tag follows the highest revision applied. Until a replica has seen a notification (after
+// startup or a LISTEN reconnect, when changes may have been missed) it uses a provisional tag
+// taken from the sequence position, which no notification-derived tag can equal.
+@ApplicationScoped
+public class CatalogETags {
+    
+    public static final String PRODUCT = "product";
+    public static final String LISTING = "listing";
+    public static final String FACETS = "facets";
+    
+    private static final Logger LOG = Logger.getLogger(CatalogETags.class);
+    
+    private final AtomicReference<Revision> revision = new AtomicReference<>(
+        new Revision(0, "i" + Long.toString(new SecureRandom().nextLong() & Long.MAX_VALUE, 36)));
+    
+    @Inject
+    MeterRegistry registry;
+    
+    @Inject
+    PgPool pool;
+    
+    private final Map<String, Counter> notModified = new HashMap<>();
+    private final Map<String, Counter> modified = new HashMap<>();
+    
+    @PostConstruct
+    void init() {
+        for (String endpoint : new String[] { PRODUCT, LISTING, FACETS }) {
+            Counter hits = Counter.builder("http.conditional.requests")
+                .description("Requests carrying If-None-Match, by outcome")
+                .tag("endpoint", endpoint)
+                .tag("result", "not_modified")
+                .register(registry);
+            Counter misses = Counter.builder("http.conditional.requests")
+                .description("Requests carrying If-None-Match, by outcome")
+                .tag("endpoint", endpoint)
+                .tag("result", "modified")
+                .register(registry);
+            notModified.put(endpoint, hits);
+            modified.put(endpoint, misses);
+            Gauge.builder("http.conditional.not_modified.ratio",
+                    () -> ratio(hits.count(), misses.count()))
+                .description("Share of conditional requests answered with 304 Not Modified")
+                .tag("endpoint", endpoint)
+                .register(registry);
+        }
+        restart();
+    }
+    
+    void onProductChanged(@Observes ProductChangedEvent event) {
+        if (!event.listingChanged()) {
+            return;
+        }
+        Long applied = event.revision();
+        if (applied == null) {
+            restart();
+            return;
+        }
+        revision.accumulateAndGet(new Revision(applied, "r" + applied),
+            (current, next) -> next.value > current.value || current.provisional() ? next : current);
+    }
+    
+    // Read before loading the page: a change landing mid-request leaves the tag older than
+    // the body, which costs one extra 200 but never a wrong 304
+    public EntityTag catalogTag() {
+        return new EntityTag(revision.get().tag, true);
+    }
+    
+    public EntityTag productTag(ProductDetailDTO product) {
+        return new EntityTag(product.getId() + "-" + product.getVersion());
+    }
+    
+    // Weak comparison as RFC 9110 prescribes for If-None-Match; requests without the header are not counted
+    public boolean isNotModified(String endpoint, String ifNoneMatch, EntityTag current) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        boolean matches = false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || opaque(tag).equals(current.getValue())) {
+                matches = true;
+                break;
+            }
+        }
+        (matches ? notModified : modified).get(endpoint).increment();
+        return matches;
+    }
+    
+    private static String opaque(String tag) {
+        String value = tag.startsWith("W/") ? tag.substring(2) : tag;
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+    
+    private static double ratio(double hits, double misses) {
+        double total = hits + misses;
+        return total == 0 ? 0 : hits / total;
+    }
+    
+    // Drops back to a provisional tag; a notification applied meanwhile is newer and wins
+    private void restart() {
+        Revision before = revision.get();
+        pool.query("SELECT last_value FROM catalog_revision").execute()
+            .map(rows -> rows.iterator().next().getLong("last_value"))
+            .subscribe().with(
+                position -> revision.compareAndSet(before, new Revision(position, "s" + position)),
+                e -> {
+                    LOG.warn("Could not read the catalog revision, using an instance-local listing tag", e);
+                    revision.compareAndSet(before, new Revision(0,
+                        "i" + Long.toString(new SecureRandom().nextLong() & Long.MAX_VALUE, 36)));
+                });
+    }
+    
+    private record Revision(long value, String tag) {
+        
+        boolean provisional() {
+            return tag.charAt(0) != 'r';
+        }
+    }
+}
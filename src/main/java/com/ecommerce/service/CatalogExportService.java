@@ -0,0 +1,113 @@
+package com.ecommerce.service;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.SqlConnection;
+import io.vertx.mutiny.sqlclient.Transaction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+// Streams the active catalog from a server-side cursor. Rows are fetched FETCH_SIZE at a time
+// as the client reads, so memory stays flat however large the catalog is.
+@ApplicationScoped
+public class CatalogExportService {
+    
+    private static final int FETCH_SIZE = 500;
+    
+    private static final String EXPORT_QUERY =
+        "SELECT p.id, p.name, p.description, p.price, p.stock_quantity, p.category_id, " +
+        "p.average_rating, p.updated_at, " +
+        "(SELECT i.image_url FROM product_images i " +
+        "  WHERE i.product_id = p.id AND i.is_cover ORDER BY i.id LIMIT 1) AS cover_image_url, " +
+        "ARRAY(SELECT t.name FROM product_tags pt JOIN tags t ON t.id = pt.tag_id " +
+        "  WHERE pt.product_id = p.id ORDER BY t.name) AS tags " +
+        "FROM products p WHERE p.active ORDER BY p.id";
+    
+    private static final String CSV_HEADER =
+        "id,name,description,price,stock_quantity,category_id,average_rating,cover_image_url,tags,updated_at\n";
+    
+    @Inject
+    PgPool pool;
+    
+    public Multi<String> exportNdjson() {
+        return streamRows().map(row -> toJson(row).encode());
+    }
+    
+    public Multi<String> exportCsv() {
+        return Multi.createBy().concatenating().streams(
+            Multi.createFrom().item(CSV_HEADER),
+            streamRows().map(this::toCsvLine));
+    }
+    
+    // Cursors only live inside a transaction; a read-only repeatable read one also gives the
+    // whole export a single consistent snapshot
+    private Multi<Row> streamRows() {
+        return Multi.createFrom().resourceFromUni(
+                () -> pool.getConnection(),
+                connection -> connection.begin()
+                    .chain(tx -> connection.query("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ, READ ONLY").execute())
+                    .chain(() -> connection.prepare(EXPORT_QUERY))
+                    .onItem().transformToMulti(statement -> statement.createStream(FETCH_SIZE).toMulti()))
+            .withFinalizer(this::release);
+    }
+    
+    private Uni<Void> release(SqlConnection connection) {
+        Transaction tx = connection.transaction();
+        Uni<Void> end = tx != null
+            ? tx.rollback().onFailure().recoverWithNull()
+            : Uni.createFrom().voidItem();
+        return end.eventually(connection::close);
+    }
+    
+    private JsonObject toJson(Row row) {
+        Integer stock = row.getInteger("stock_quantity");
+        LocalDateTime updatedAt = row.getLocalDateTime("updated_at");
+        return new JsonObject()
+            .put("id", row.getLong("id"))
+            .put("name", row.getString("name"))
+            .put("description", row.getString("description"))
+            .put("price", row.getBigDecimal("price"))
+            .put("stockQuantity", stock)
+            .put("inStock", stock != null && stock > 0)
+            .put("categoryId", row.getLong("category_id"))
+            .put("averageRating", row.getDouble("average_rating"))
+            .put("coverImageUrl", row.getString("cover_image_url"))
+            .put("tags", new JsonArray(Arrays.asList(row.getArrayOfStrings("tags"))))
+            .put("updatedAt", updatedAt != null ? updatedAt.toString() : null);
+    }
+    
+    private String toCsvLine(Row row) {
+        LocalDateTime updatedAt = row.getLocalDateTime("updated_at");
+        return new StringBuilder(256)
+            .append(row.getLong("id")).append(',')
+            .append(csv(row.getString("name"))).append(',')
+            .append(csv(row.getString("description"))).append(',')
+            .append(row.getBigDecimal("price").toPlainString()).append(',')
+            .append(row.getInteger("stock_quantity")).append(',')
+            .append(csv(row.getLong("category_id"))).append(',')
+            .append(csv(row.getDouble("average_rating"))).append(',')
+            .append(csv(row.getString("cover_image_url"))).append(',')
+            .append(csv(String.join("|", row.getArrayOfStrings("tags")))).append(',')
+            .append(csv(updatedAt))
+            .append('\n')
+            .toString();
+    }
+    
+    // RFC 4180: quote fields containing separators, quotes or line breaks
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,208 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.repository.CategoryRepository;
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.vertx.VertxContextSupport;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+import java.util.Arrays;
+import java.util.List;
+
+// In-memory closure of the category tree. Categories are laid out in preorder, so the
+// subtree of a category is the contiguous range [start, end) of that order: a membership
+// check is two comparisons and listing the descendants is one array copy.
+//
+// The whole tree is swapped atomically on reload; readers never see a half-built snapshot.
+@ApplicationScoped
+public class CategoryTree {
+    
+    private static final Logger LOG = Logger.getLogger(CategoryTree.class);
+    
+    @Inject
+    CategoryRepository categoryRepository;
+    
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    
+    void onStart(@Observes StartupEvent ev) {
+        try {
+            int loaded = VertxContextSupport.subscribeAndAwait(
+                () -> Panache.withSession(this::reload));
+            LOG.infof("Category tree loaded with %d categories", loaded);
+        } catch (Throwable e) {
+            LOG.error("Failed to load category tree", e);
+        }
+    }
+    
+    public Uni<Integer> reload() {
+        return categoryRepository.findHierarchy()
+            .map(rows -> {
+                snapshot = Snapshot.build(rows);
+                return rows.size();
+            });
+    }
+    
+    // The category and all of its descendants. Unknown ids (say, a category created a moment
+    // ago on another replica) resolve to themselves.
+    public long[] subtree(long categoryId) {
+        Snapshot current = snapshot;
+        int index = current.indexOf(categoryId);
+        if (index < 0) {
+            return new long[] { categoryId };
+        }
+        return Arrays.copyOfRange(current.preorder, current.start[index], current.end[index]);
+    }
+    
+    public boolean isInSubtree(long ancestorId, Long categoryId) {
+        if (categoryId == null) {
+            return false;
+        }
+        if (ancestorId == categoryId) {
+            return true;
+        }
+        Snapshot current = snapshot;
+        int ancestor = current.indexOf(ancestorId);
+        int category = current.indexOf(categoryId);
+        if (ancestor < 0 || category < 0) {
+            return false;
+        }
+        int position = current.start[category];
+        return position >= current.start[ancestor] && position < current.end[ancestor];
+    }
+    
+    public boolean isInAnySubtree(long[] ancestorIds, Long categoryId) {
+        for (long ancestorId : ancestorIds) {
+            if (isInSubtree(ancestorId, categoryId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // The category followed by its parent, grandparent and so on up to the root
+    public long[] pathToRoot(long categoryId) {
+        Snapshot current = snapshot;
+        int index = current.indexOf(categoryId);
+        if (index < 0) {
+            return new long[] { categoryId };
+        }
+        long[] path = new long[current.ids.length];
+        int length = 0;
+        for (int node = index; node >= 0 && length < path.length; node = current.parent[node]) {
+            path[length++] = current.ids[node];
+        }
+        return Arrays.copyOf(path, length);
+    }
+    
+    private static final class Snapshot {
+        private static final Snapshot EMPTY = new Snapshot(new long[0], new int[0], new long[0], new int[0], new int[0]);
+        
+        // Sorted category ids; every other per-category array is indexed like this one
+        private final long[] ids;
+        private final int[] parent;
+        // Category ids in preorder, and each category's subtree range within it
+        private final long[] preorder;
+        private final int[] start;
+        private final int[] end;
+        
+        private Snapshot(long[] ids, int[] parent, long[] preorder, int[] start, int[] end) {
+            this.ids = ids;
+            this.parent = parent;
+            this.preorder = preorder;
+            this.start = start;
+            this.end = end;
+        }
+        
+        private int indexOf(long categoryId) {
+            int index = Arrays.binarySearch(ids, categoryId);
+            return index >= 0 ? index : -1;
+        }
+        
+        private static Snapshot build(List<Object[]> rows) {
+            int n = rows.size();
+            long[][] pairs = new long[n][];
+            for (int i = 0; i < n; i++) {
+                Object[] row = rows.get(i);
+                pairs[i] = new long[] {
+                    ((Number) row[0]).longValue(),
+                    row[1] != null ? ((Number) row[1]).longValue() : -1L
+                };
+            }
+            Arrays.sort(pairs, (a, b) -> Long.compare(a[0], b[0]));
+            
+            long[] ids = new long[n];
+            for (int i = 0; i < n; i++) {
+                ids[i] = pairs[i][0];
+            }
+            
+            // Children as a CSR adjacency list: the children of i are childList[childStart[i]..childStart[i + 1])
+            int[] parent = new int[n];
+            int[] childStart = new int[n + 1];
+            for (int i = 0; i < n; i++) {
+                int p = pairs[i][1] >= 0 ? Arrays.binarySearch(ids, pairs[i][1]) : -1;
+                parent[i] = p >= 0 && p != i ? p : -1;
+                if (parent[i] >= 0) {
+                    childStart[parent[i] + 1]++;
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                childStart[i + 1] += childStart[i];
+            }
+            int[] childList = new int[childStart[n]];
+            int[] fill = Arrays.copyOf(childStart, n);
+            for (int i = 0; i < n; i++) {
+                if (parent[i] >= 0) {
+                    childList[fill[parent[i]]++] = i;
+                }
+            }
+            
+            long[] preorder = new long[n];
+            int[] start = new int[n];
+            int[] end = new int[n];
+            int[] cursor = new int[n];
+            int[] stack = new int[n];
+            boolean[] visited = new boolean[n];
+            int next = 0;
+            
+            // Roots first; a second pass picks up categories caught in a parent cycle
+            for (int pass = 0; pass < 2; pass++) {
+                for (int root = 0; root < n; root++) {
+                    if (visited[root] || (pass == 0 && parent[root] >= 0)) {
+                        continue;
+                    }
+                    if (pass == 1) {
+                        LOG.warnf("Category %d is part of a parent cycle, treating it as a root", ids[root]);
+                        parent[root] = -1;
+                    }
+                    
+                    int top = 0;
+                    stack[0] = root;
+                    visited[root] = true;
+                    start[root] = next;
+                    preorder[next++] = ids[root];
+                    cursor[root] = childStart[root];
+                    while (top >= 0) {
+                        int node = stack[top];
+                        if (cursor[node] < childStart[node + 1]) {
+                            int child = childList[cursor[node]++];
+                            if (!visited[child]) {
+                                visited[child] = true;
+                                start[child] = next;
+                                preorder[next++] = ids[child];
+                                cursor[child] = childStart[child];
+                                stack[++top] = child;
+                            }
+                        } else {
+                            end[node] = next;
+                            top--;
+                        }
+                    }
+                }
+            }
+            return new Snapshot(ids, parent, preorder, start, end);
+        }
+    }
+}
@@ -2,8 +2,9 @@ package com.ecommerce.service;
 
 import com.ecommerce.domain.model.Order;
 import com.ecommerce.domain.model.OrderStatus;
+import com.ecommerce.domain.model.OutboxEventType;
 import com.ecommerce.domain.model.ShippingAddress;
-import com.ecommerce.domain.model.User;
+import com.ecommerce.domain.repository.OutboxRepository;
 import com.stripe.model.PaymentIntent;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
@@ -20,7 +21,7 @@ public class CheckoutService {
     PaymentService paymentService;
     
     @Inject
-    EmailService emailService;
+    OutboxRepository outboxRepository;
     
     @Transactional
     public Uni<Order> initiateCheckout(String userId, ShippingAddress shippingAddress) {
@@ -37,12 +38,10 @@ public class CheckoutService {
         return paymentService.confirmPayment(paymentIntentId)
             .chain(paymentIntent -> {
                 if ("succeeded".equals(paymentIntent.getStatus())) {
+                    // The confirmation email commits with the payment and is sent in the background
                     return orderService.updateOrderStatus(orderId, OrderStatus.PAID)
-                        .chain(order -> User.<User>findById(order.getUserId())
-                            .chain(user -> {
-                                emailService.sendOrderConfirmation(order, user);
-                                return Uni.createFrom().item(order);
-                            }));
+                        .call(order -> outboxRepository.enqueue(
+                            OutboxEventType.ORDER_CONFIRMATION, order.getId()));
                 } else {
                     return orderService.updateOrderStatus(orderId, OrderStatus.CANCELLED);
                 }
@@ -1,6 +1,7 @@
 package com.ecommerce.service;
 
 import com.ecommerce.domain.dto.CouponDTO;
+import com.ecommerce.domain.dto.ProductDetailDTO;
 import com.ecommerce.domain.model.*;
 import com.ecommerce.domain.repository.CouponRepository;
 import com.ecommerce.domain.repository.CategoryRepository;
@@ -10,9 +11,12 @@ import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @ApplicationScoped
@@ -27,6 +31,12 @@ public class CouponService {
     @Inject
     ProductRepository productRepository;
     
+    @Inject
+    CategoryTree categoryTree;
+    
+    @Inject
+    ProductCache productCache;
+    
     public Uni<List<Coupon>> getActiveCoupons() {
         return couponRepository.findActive();
     }
@@ -62,14 +72,17 @@ public class CouponService {
             });
     }
     
-    public Uni<BigDecimal> calculateDiscount(String code, BigDecimal cartTotal, List<CartItem> items) {
-        return couponRepository.findByCode(code)
+    // Without the cart lines a restricted coupon cannot be checked against them, so it is
+    // priced as if it applied to the whole cart
+    public Uni<Money> calculateDiscount(String code, Money cartTotal, List<CartItem> items) {
+        return (items != null ? couponRepository.findByCodeWithRestrictions(code) : couponRepository.findByCode(code))
             .chain(coupon -> {
-                if (coupon == null || !isValidCoupon(coupon, cartTotal)) {
-                    return Uni.createFrom().item(BigDecimal.ZERO);
+                if (coupon == null || !isValidCoupon(coupon, cartTotal.minor())) {
+                    return Uni.createFrom().item(Money.zero());
                 }
                 
-                return calculateApplicableDiscount(coupon, cartTotal, items);
+                return calculateApplicableDiscount(coupon, cartTotal.minor(), items)
+                    .map(Money::ofMinor);
             });
     }
     
@@ -125,31 +138,99 @@ public class CouponService {
             .map(list -> new HashSet<>(list));
     }
     
-    private boolean isValidCoupon(Coupon coupon, BigDecimal cartTotal) {
+    private boolean isValidCoupon(Coupon coupon, long cartTotal) {
         LocalDateTime now = LocalDateTime.now();
         return coupon.getActive() &&
                now.isAfter(coupon.getStartDate()) &&
                now.isBefore(coupon.getEndDate()) &&
                coupon.getUsageCount() < coupon.getUsageLimit() &&
                (coupon.getMinimumPurchase() == null || 
-                cartTotal.compareTo(coupon.getMinimumPurchase()) >= 0);
+                cartTotal >= Money.toMinor(coupon.getMinimumPurchase()));
     }
     
-    private Uni<BigDecimal> calculateApplicableDiscount(
-            Coupon coupon, BigDecimal cartTotal, List<CartItem> items) {
-        BigDecimal discount;
+    private Uni<Long> calculateApplicableDiscount(
+            Coupon coupon, long cartTotal, List<CartItem> items) {
+        return eligibleTotal(coupon, items)
+            .map(eligible -> {
+                if (eligible == null) {
+                    return discountOn(coupon, cartTotal);
+                }
+                // A restricted coupon never discounts more than the lines it applies to
+                return Math.min(discountOn(coupon, eligible), eligible);
+            });
+    }
+    
+    // In minor units; a percentage is rounded once, to the nearest cent
+    private long discountOn(Coupon coupon, long amount) {
+        long discount;
         if (coupon.getDiscountType() == DiscountType.PERCENTAGE) {
-            discount = cartTotal.multiply(
-                coupon.getDiscountValue().divide(new BigDecimal("100")));
+            discount = Money.percentage(amount, Money.toBasisPoints(coupon.getDiscountValue()),
+                Money.DEFAULT_ROUNDING);
         } else {
-            discount = coupon.getDiscountValue();
+            discount = Money.toMinor(coupon.getDiscountValue());
         }
         
-        if (coupon.getMaximumDiscount() != null && 
-            discount.compareTo(coupon.getMaximumDiscount()) > 0) {
-            discount = coupon.getMaximumDiscount();
+        if (coupon.getMaximumDiscount() != null) {
+            discount = Math.min(discount, Money.toMinor(coupon.getMaximumDiscount()));
         }
         
-        return Uni.createFrom().item(discount);
+        return discount;
+    }
+    
+    // Subtotal of the lines a product or category restricted coupon applies to, or null when the
+    // coupon applies to the whole cart. A category covers its descendants, resolved in memory.
+    // The coupon arrives with its restrictions fetched.
+    private Uni<Long> eligibleTotal(Coupon coupon, List<CartItem> items) {
+        if (items == null) {
+            return Uni.createFrom().nullItem();
+        }
+        Set<Category> categories = coupon.getApplicableCategories();
+        Set<Product> products = coupon.getApplicableProducts();
+        if (categories.isEmpty() && products.isEmpty()) {
+            return Uni.createFrom().nullItem();
+        }
+        Set<Long> productIds = products.stream()
+            .map(Product::getId)
+            .collect(Collectors.toSet());
+        long[] categoryIds = categories.stream()
+            .mapToLong(Category::getId)
+            .toArray();
+        Set<Long> itemProductIds = items.stream()
+            .map(item -> item.getProduct().getId())
+            .collect(Collectors.toSet());
+        
+        Uni<Map<Long, Long>> categoryByProduct = categoryIds.length == 0
+            ? Uni.createFrom().item(Map.of())
+            : findCategoryIds(itemProductIds);
+        return categoryByProduct.map(categoryOf -> items.stream()
+            .filter(item -> {
+                Long productId = item.getProduct().getId();
+                return productIds.contains(productId)
+                    || categoryTree.isInAnySubtree(categoryIds, categoryOf.get(productId));
+            })
+            .mapToLong(item -> Money.toMinor(item.getSubtotal()))
+            .reduce(0L, Math::addExact));
+    }
+    
+    // Cached products answer first; only the rest are looked up, in one query
+    private Uni<Map<Long, Long>> findCategoryIds(Set<Long> productIds) {
+        Map<Long, Long> categoryOf = new HashMap<>();
+        Set<Long> uncached = new HashSet<>();
+        for (Long productId : productIds) {
+            ProductDetailDTO cached = productCache.get(productId);
+            if (cached == null) {
+                uncached.add(productId);
+            } else if (cached.getCategoryId() != null) {
+                categoryOf.put(productId, cached.getCategoryId());
+            }
+        }
+        if (uncached.isEmpty()) {
+            return Uni.createFrom().item(categoryOf);
+        }
+        return productRepository.findCategoryIds(uncached)
+            .map(loaded -> {
+                categoryOf.putAll(loaded);
+                return categoryOf;
+            });
     }
 }
\ No newline at end of file
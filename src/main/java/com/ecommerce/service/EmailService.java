@@ -2,6 +2,7 @@ package com.ecommerce.service;
 
 import com.ecommerce.domain.model.Order;
 import com.ecommerce.domain.model.OrderItem;
+import com.ecommerce.domain.model.Product;
 import com.ecommerce.domain.model.User;
 import com.sendgrid.Method;
 import com.sendgrid.Request;
@@ -24,6 +25,9 @@ public class EmailService {
     @ConfigProperty(name = "app.base-url")
     String baseUrl;
     
+    @ConfigProperty(name = "inventory.alert-email", defaultValue = "inventory@ecommerce.com")
+    String inventoryAlertEmail;
+    
     public void sendVerificationEmail(User user) {
         try {
             Email from = new Email("noreply@ecommerce.com", "E-commerce");
@@ -283,4 +287,56 @@ public class EmailService {
         
         return html.toString();
     }
-}
\ No newline at end of file
+    
+    public void sendLowStockAlert(Product product) {
+        try {
+            Email from = new Email("noreply@ecommerce.com", "E-commerce");
+            Email to = new Email(inventoryAlertEmail);
+            String subject = "Low Stock Alert - " + product.getName();
+            
+            String htmlContent = buildLowStockAlertEmail(product);
+            
+            Content content = new Content("text/html", htmlContent);
+            Mail mail = new Mail(from, subject, to, content);
+            
+            SendGrid sg = new SendGrid(sendGridApiKey);
+            Request request = new Request();
+            request.setMethod(Method.POST);
+            request.setEndpoint("mail/send");
+            request.setBody(mail.build());
+            
+            Response response = sg.api(request);
+            if (response.getStatusCode() >= 400) {
+                throw new RuntimeException("Failed to send low stock alert: " + response.getBody());
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Error sending low stock alert", e);
+        }
+    }
+    
+    private String buildLowStockAlertEmail(Product product) {
+        StringBuilder html = new StringBuilder();
+        
+        html.append("<div style='font-family: Arial, sans-serif; max-width: 600px; margin: 0 auto; padding: 20px;'>");
+        html.append("<div style='background-color: #ffffff; border-radius: 8px; box-shadow: 0 2px 4px rgba(0,0,0,0.1); padding: 30px;'>");
+        
+        // Header
+        html.append("<div style='text-align: center; margin-bottom: 30px;'>");
+        html.append("<h1 style='color: #333333; margin-bottom: 10px;'>Low Stock Alert</h1>");
+        html.append("<p style='color: #666666; font-size: 16px;'>A product has reached its low stock threshold</p>");
+        html.append("</div>");
+        
+        // Stock Details
+        html.append("<div style='background-color: #f8f9fa; padding: 20px; border-radius: 4px; margin: 20px 0;'>");
+        html.append("<p style='margin: 5px 0; color: #666666;'>Product: <strong>").append(product.getName()).append("</strong></p>");
+        html.append("<p style='margin: 5px 0; color: #666666;'>Product ID: <strong>").append(product.getId()).append("</strong></p>");
+        html.append("<p style='margin: 5px 0; color: #666666;'>Stock: <strong>").append(product.getStockQuantity()).append("</strong></p>");
+        html.append("<p style='margin: 5px 0; color: #666666;'>Threshold: <strong>").append(product.getLowStockThreshold()).append("</strong></p>");
+        html.append("</div>");
+        
+        html.append("</div>");
+        html.append("</div>");
+        
+        return html.toString();
+    }
+}
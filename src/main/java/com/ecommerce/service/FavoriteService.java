@@ -1,7 +1,7 @@
 package com.ecommerce.service;
 
+import com.ecommerce.domain.dto.ProductSummaryDTO;
 import com.ecommerce.domain.model.Favorite;
-import com.ecommerce.domain.model.Product;
 import com.ecommerce.domain.repository.FavoriteRepository;
 import com.ecommerce.domain.repository.ProductRepository;
 import com.ecommerce.exception.ResourceNotFoundException;
@@ -20,8 +20,14 @@ public class FavoriteService {
     @Inject
     ProductRepository productRepository;
     
-    public Uni<List<Favorite>> getUserFavorites(String userId) {
-        return favoriteRepository.findByUser(userId);
+    @Inject
+    ProductBatchLoader productLoader;
+    
+    @Inject
+    TrendingProducts trending;
+    
+    public Uni<List<ProductSummaryDTO>> getUserFavorites(String userId) {
+        return favoriteRepository.findProductSummariesByUser(userId);
     }
     
     public Uni<Boolean> isFavorite(String userId, Long productId) {
@@ -30,25 +36,33 @@ public class FavoriteService {
     
     @Transactional
     public Uni<Favorite> addToFavorites(String userId, Long productId) {
-        return productRepository.findById(productId)
+        return productLoader.load(productId)
             .onItem().ifNull().failWith(() -> 
                 new ResourceNotFoundException("Product not found"))
-            .chain(product -> favoriteRepository.isFavorite(userId, productId)
-                .chain(exists -> {
-                    if (exists) {
-                        return Uni.createFrom().failure(
-                            new IllegalStateException("Product already in favorites"));
-                    }
-                    
-                    Favorite favorite = new Favorite();
-                    favorite.setUserId(userId);
-                    favorite.setProduct(product);
-                    return favoriteRepository.persist(favorite);
-                }));
+            .chain(snapshot -> favoriteRepository.isFavorite(userId, productId))
+            .chain(exists -> {
+                if (exists) {
+                    return Uni.createFrom().failure(
+                        new IllegalStateException("Product already in favorites"));
+                }
+                
+                return productRepository.reference(productId)
+                    .chain(product -> {
+                        Favorite favorite = new Favorite();
+                        favorite.setUserId(userId);
+                        favorite.setProduct(product);
+                        return favoriteRepository.persist(favorite);
+                    })
+                    .call(() -> productRepository.notifySignals(productId, 0, 1));
+            })
+            .invoke(() -> trending.record(productId, TrendingProducts.Signal.FAVORITE));
     }
     
     @Transactional
     public Uni<Boolean> removeFromFavorites(String userId, Long productId) {
-        return favoriteRepository.removeByUserAndProduct(userId, productId);
+        return favoriteRepository.removeByUserAndProduct(userId, productId)
+            .call(removed -> removed
+                ? productRepository.notifySignals(productId, 0, -1)
+                : Uni.createFrom().voidItem());
     }
 }
\ No newline at end of file
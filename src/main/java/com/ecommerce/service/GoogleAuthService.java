@@ -9,6 +9,8 @@ import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
 import java.util.Collections;
 
 @ApplicationScoped
@@ -31,7 +33,12 @@ public class GoogleAuthService {
     
     public Uni<String> authenticateWithGoogle(String idTokenString) {
         return Uni.createFrom().item(() -> {
-            GoogleIdToken idToken = verifier.verify(idTokenString);
+            GoogleIdToken idToken;
+            try {
+                idToken = verifier.verify(idTokenString);
+            } catch (GeneralSecurityException | IOException e) {
+                throw new SecurityException("Invalid ID token", e);
+            }
             if (idToken == null) {
                 throw new SecurityException("Invalid ID token");
             }
@@ -45,7 +52,7 @@ public class GoogleAuthService {
                 .chain(existingUser -> {
                     if (existingUser != null) {
                         existingUser.setGoogleId(googleId);
-                        return existingUser.persist();
+                        return existingUser.<User>persist();
                     }
                     
                     User newUser = new User();
@@ -53,7 +60,7 @@ public class GoogleAuthService {
                     newUser.setGoogleId(googleId);
                     newUser.setEmailVerified(true);
                     
-                    return newUser.persist();
+                    return newUser.<User>persist();
                 })
                 .map(user -> jwtService.generateToken(user));
         }).flatMap(uni -> uni);
@@ -0,0 +1,234 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.dto.PageDTO;
+import com.ecommerce.domain.dto.ProductFilterDTO;
+import com.ecommerce.domain.dto.ProductSummaryDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.vertx.core.runtime.context.VertxContextSafetyToggle;
+import io.smallrye.common.vertx.VertxContext;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Context;
+import io.vertx.mutiny.core.Vertx;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.EntityTag;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+// Already serialized JSON for the listings requested most often: the home page, category
+// pages, "newest" and the like. Caffeine's frequency based admission decides which filter
+// combinations stay. A page is only served while its catalog tag is current, and after a
+// product change the hottest pages are rebuilt in the background.
+//
+// Only the pages Caffeine ranks among the hottest are also kept gzipped; compressing every
+// miss would spend CPU on pages that are never asked for again. The others are compressed
+// per response by the HTTP layer.
+@ApplicationScoped
+public class HotListingCache {
+    
+    private static final Logger LOG = Logger.getLogger(HotListingCache.class);
+    
+    @ConfigProperty(name = "hot-listings.maximum-size", defaultValue = "200")
+    long maximumSize;
+    
+    // Changes arriving within this window are folded into one refresh
+    @ConfigProperty(name = "hot-listings.refresh-delay", defaultValue = "PT0.2S")
+    Duration refreshDelay;
+    
+    @ConfigProperty(name = "hot-listings.refresh-limit", defaultValue = "50")
+    int refreshLimit;
+    
+    // How long the ranking of the hottest pages is reused before Caffeine is asked again
+    @ConfigProperty(name = "hot-listings.hot-keys-interval", defaultValue = "PT10S")
+    Duration hotKeysInterval;
+    
+    @Inject
+    ProductService productService;
+    
+    @Inject
+    CatalogETags eTags;
+    
+    @Inject
+    ObjectMapper objectMapper;
+    
+    @Inject
+    Vertx vertx;
+    
+    @Inject
+    MeterRegistry registry;
+    
+    private Cache<String, HotPage> pages;
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private volatile Set<String> hotKeys = Set.of();
+    private volatile long hotKeysAt = System.nanoTime();
+    
+    @PostConstruct
+    void init() {
+        pages = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(registry, pages, "hot-listings");
+    }
+    
+    // Free-text searches are too varied to be worth keeping; null means "do not cache"
+    public String keyOf(ProductFilterDTO filter) {
+        if (filter.getSearchTerm() != null && !filter.getSearchTerm().isBlank()) {
+            return null;
+        }
+        return String.join("|",
+            Objects.toString(filter.getCategoryId(), ""),
+            Objects.toString(filter.getMinPrice(), ""),
+            Objects.toString(filter.getMaxPrice(), ""),
+            Objects.toString(filter.getMinRating(), ""),
+            filter.getTags() != null ? String.join(",", new TreeSet<>(filter.getTags())) : "",
+            Objects.toString(filter.getTagMatch(), ""),
+            Objects.toString(filter.getInStock(), ""),
+            Objects.toString(filter.getSortBy(), ""),
+            Objects.toString(filter.getSortDirection(), ""),
+            Objects.toString(filter.getPage(), "0"),
+            Objects.toString(filter.getSize(), ""),
+            Objects.toString(filter.getCursor(), ""),
+            Objects.toString(filter.getIncludeTotal(), ""));
+    }
+    
+    public HotPage get(String key, EntityTag current) {
+        if (key == null) {
+            return null;
+        }
+        HotPage page = pages.getIfPresent(key);
+        if (page == null || !page.tag().equals(current)) {
+            return null;
+        }
+        // A page that has become hot since it was stored is compressed once, on its next hit
+        if (page.gzip() == null && isHot(key)) {
+            HotPage compressed = page.withGzip(gzip(page.json()));
+            pages.asMap().replace(key, page, compressed);
+            return compressed;
+        }
+        return page;
+    }
+    
+    // Serializes a freshly loaded listing once; the caller answers with these bytes as well
+    public HotPage offer(String key, ProductFilterDTO filter, EntityTag tag, PageDTO<ProductSummaryDTO> listing) {
+        HotPage page = serialize(filter, tag, listing, key != null && isHot(key));
+        if (key != null) {
+            pages.put(key, page);
+        }
+        return page;
+    }
+    
+    // Asking Caffeine for the hottest entries sorts its frequency sketch, so the answer is
+    // reused for a while. Concurrent callers may both recompute it, which is harmless.
+    private boolean isHot(String key) {
+        long now = System.nanoTime();
+        if (now - hotKeysAt > hotKeysInterval.toNanos()) {
+            hotKeysAt = now;
+            hotKeys = hottest();
+        }
+        return hotKeys.contains(key);
+    }
+    
+    private Set<String> hottest() {
+        return Set.copyOf(pages.policy().eviction()
+            .map(eviction -> eviction.hottest(refreshLimit).keySet())
+            .orElse(pages.asMap().keySet()));
+    }
+    
+    // Pages are keyed by the catalog ETag, which changes that listings cannot show leave alone
+    void onProductChanged(@Observes ProductChangedEvent event) {
+        if (!event.listingChanged()) {
+            return;
+        }
+        if (refreshScheduled.compareAndSet(false, true)) {
+            vertx.setTimer(Math.max(1, refreshDelay.toMillis()), id -> {
+                refreshScheduled.set(false);
+                refresh();
+            });
+        }
+    }
+    
+    // Rebuilds the hottest pages one at a time. A page whose tag went stale again while it was
+    // loading is left for the next refresh, which that newer change has already scheduled.
+    private void refresh() {
+        Set<String> hottest = hottest();
+        hotKeys = hottest;
+        hotKeysAt = System.nanoTime();
+        List<String> keys = new ArrayList<>(hottest);
+        if (keys.isEmpty()) {
+            return;
+        }
+        
+        Context context = VertxContext.createNewDuplicatedContext(vertx.getDelegate().getOrCreateContext());
+        VertxContextSafetyToggle.setContextSafe(context, true);
+        context.runOnContext(ignored -> Multi.createFrom().iterable(keys)
+            .onItem().transformToUniAndConcatenate(key -> {
+                HotPage stale = pages.getIfPresent(key);
+                if (stale == null) {
+                    return Uni.createFrom().voidItem();
+                }
+                EntityTag tag = eTags.catalogTag();
+                return Panache.withSession(() -> productService.getFilteredProducts(stale.filter()))
+                    .invoke(listing -> {
+                        if (tag.equals(eTags.catalogTag())) {
+                            pages.asMap().replace(key, serialize(stale.filter(), tag, listing, true));
+                        }
+                    })
+                    .replaceWithVoid()
+                    // One failing listing must not stop the others; the stale page just stays unused
+                    .onFailure().invoke(e -> LOG.warnf(e, "Failed to refresh hot listing %s", key))
+                    .onFailure().recoverWithNull();
+            })
+            .collect().last()
+            .subscribe().with(
+                done -> LOG.debugf("Refreshed %d hot listing pages", keys.size()),
+                e -> LOG.warn("Failed to refresh hot listing pages", e)));
+    }
+    
+    private HotPage serialize(ProductFilterDTO filter, EntityTag tag, PageDTO<ProductSummaryDTO> listing, boolean compress) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(listing);
+            return new HotPage(filter, tag, json, compress ? gzip(json) : null);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize product listing", e);
+        }
+    }
+    
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+    
+    // gzip is null for pages that were not hot when they were stored
+    public record HotPage(ProductFilterDTO filter, EntityTag tag, byte[] json, byte[] gzip) {
+        
+        HotPage withGzip(byte[] gzip) {
+            return new HotPage(filter, tag, json, gzip);
+        }
+    }
+}
@@ -10,7 +10,7 @@ import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 
-import java.io.InputStream;
+import java.io.File;
 import java.util.UUID;
 
 @ApplicationScoped
@@ -36,7 +36,7 @@ public class ImageStorageService {
             .build();
     }
     
-    public Uni<String> uploadImage(String fileName, InputStream inputStream, String contentType, long size) {
+    public Uni<String> uploadImage(String fileName, File file, String contentType) {
         return Uni.createFrom().item(() -> {
             try {
                 S3Client s3Client = getS3Client();
@@ -59,7 +59,7 @@ public class ImageStorageService {
                     .build();
                 
                 s3Client.putObject(putObjectRequest, 
-                    RequestBody.fromInputStream(inputStream, size));
+                    RequestBody.fromFile(file));
                 
                 // Return the URL
                 return String.format("https://%s.s3.%s.amazonaws.com/%s",
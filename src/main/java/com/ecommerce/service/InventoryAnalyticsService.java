@@ -1,10 +1,12 @@
 package com.ecommerce.service;
 
 import com.ecommerce.domain.model.*;
+import com.ecommerce.domain.repository.ProductRepository;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -16,7 +18,7 @@ public class InventoryAnalyticsService {
     ProductRepository productRepository;
     
     public Uni<Map<String, Object>> getProductAnalytics(Long productId, LocalDate startDate, LocalDate endDate) {
-        return InventoryAnalytics.find(
+        return InventoryAnalytics.<InventoryAnalytics>find(
                 "product.id = ?1 and date between ?2 and ?3",
                 productId, startDate, endDate)
             .list()
@@ -59,7 +61,7 @@ public class InventoryAnalyticsService {
     }
     
     public Uni<List<Map<String, Object>>> getTopSellingProducts(LocalDate startDate, LocalDate endDate, int limit) {
-        return InventoryAnalytics.find(
+        return InventoryAnalytics.<InventoryAnalytics>find(
                 "date between ?1 and ?2 group by product.id " +
                 "order by sum(salesCount) desc",
                 startDate, endDate)
@@ -78,7 +80,7 @@ public class InventoryAnalyticsService {
     }
     
     public Uni<List<Map<String, Object>>> getStockoutRisk() {
-        return Product.find("stockQuantity <= lowStockThreshold and active = true")
+        return Product.<Product>find("stockQuantity <= lowStockThreshold and active = true")
             .list()
             .map(products -> products.stream()
                 .map(p -> {
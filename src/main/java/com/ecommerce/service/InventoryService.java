@@ -1,6 +1,7 @@
 package com.ecommerce.service;
 
 import com.ecommerce.domain.model.*;
+import com.ecommerce.domain.repository.OutboxRepository;
 import com.ecommerce.domain.repository.ProductRepository;
 import com.ecommerce.exception.ResourceNotFoundException;
 import io.smallrye.mutiny.Uni;
@@ -17,14 +18,20 @@ public class InventoryService {
     ProductRepository productRepository;
     
     @Inject
-    EmailService emailService;
+    OutboxRepository outboxRepository;
+    
+    @Inject
+    ProductBatchLoader productLoader;
+    
+    @Inject
+    StockReservations stockReservations;
     
     @Transactional
     public Uni<InventoryTransaction> recordTransaction(Long productId, Integer quantity, TransactionType type, String reference) {
-        return productRepository.findById(productId)
+        return productLoader.load(productId)
             .onItem().ifNull().failWith(() -> 
                 new ResourceNotFoundException("Product not found"))
-            .chain(product -> {
+            .chain(product -> leasedStock(productId).chain(leased -> {
                 // Update product stock
                 int newStock = product.getStockQuantity();
                 switch (type) {
@@ -38,7 +45,8 @@ public class InventoryService {
                         newStock -= quantity;
                         break;
                     case ADJUSTMENT:
-                        newStock = quantity;
+                        // The count includes units leased for reservations, which are not in stock_quantity
+                        newStock = quantity - leased;
                         break;
                 }
                 
@@ -47,36 +55,48 @@ public class InventoryService {
                         new IllegalStateException("Insufficient stock"));
                 }
                 
-                product.setStockQuantity(newStock);
-                
-                // Create transaction record
-                InventoryTransaction transaction = new InventoryTransaction();
-                transaction.setProduct(product);
-                transaction.setQuantity(quantity);
-                transaction.setType(type);
-                transaction.setReference(reference);
-                
-                // Check for low stock
-                if (newStock <= product.getLowStockThreshold()) {
-                    notifyLowStock(product);
-                }
-                
-                return transaction.persist()
-                    .chain(t -> product.persist()
-                        .map(p -> t));
-            });
+                // The product is a snapshot; the write checks the version it was read at
+                int stock = newStock;
+                return productRepository.setStock(productId, product.getVersion(), stock)
+                    .chain(() -> productRepository.reference(productId))
+                    .chain(productRef -> {
+                        // Create transaction record
+                        InventoryTransaction transaction = new InventoryTransaction();
+                        transaction.setProduct(productRef);
+                        transaction.setQuantity(quantity);
+                        transaction.setType(type);
+                        transaction.setReference(reference);
+                        
+                        // Check for low stock
+                        Uni<Void> alerted = stock + leased <= product.getLowStockThreshold()
+                            ? notifyLowStock(productRef, product.getLowStockThreshold())
+                            : Uni.createFrom().voidItem();
+                        
+                        return alerted.chain(() -> transaction.<InventoryTransaction>persist());
+                    });
+            }))
+            // Feeds the sales signal of search ranking on every replica
+            .call(() -> type == TransactionType.SALE
+                ? productRepository.notifySignals(productId, quantity, 0)
+                : Uni.createFrom().voidItem());
     }
     
-    private void notifyLowStock(Product product) {
+    // Read after the product, whose version check fails the write if a lease moved units meanwhile
+    private Uni<Integer> leasedStock(Long productId) {
+        return stockReservations.isEnabled()
+            ? productRepository.findLeasedStock(productId)
+            : Uni.createFrom().item(0);
+    }
+    
+    // The alert and its email commit with the stock change instead of racing it
+    private Uni<Void> notifyLowStock(Product product, Integer threshold) {
         StockAlert alert = new StockAlert();
         alert.setProduct(product);
-        alert.setThreshold(product.getLowStockThreshold());
+        alert.setThreshold(threshold);
         alert.setActive(true);
         
-        alert.persist()
-            .subscribe().with(
-                savedAlert -> emailService.sendLowStockAlert(product)
-            );
+        return alert.persist()
+            .chain(() -> outboxRepository.enqueue(OutboxEventType.LOW_STOCK_ALERT, product.getId()));
     }
     
     public Uni<List<InventoryTransaction>> getProductTransactions(Long productId) {
@@ -85,8 +105,7 @@ public class InventoryService {
     }
     
     public Uni<List<Product>> getLowStockProducts() {
-        return Product.find("stockQuantity <= lowStockThreshold and active = true")
-            .list();
+        return productRepository.findLowStock();
     }
     
     @Transactional
@@ -1,27 +1,45 @@
 package com.ecommerce.service;
 
+import com.ecommerce.domain.dto.OrderSummaryDTO;
 import com.ecommerce.domain.model.*;
 import com.ecommerce.domain.repository.CartRepository;
 import com.ecommerce.domain.repository.OrderRepository;
+import com.ecommerce.domain.repository.ProductRepository;
 import com.ecommerce.exception.ResourceNotFoundException;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
+import org.hibernate.reactive.mutiny.Mutiny;
+import org.jboss.logging.Logger;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @ApplicationScoped
 public class OrderService {
     
+    private static final Logger LOG = Logger.getLogger(OrderService.class);
+    
     @Inject
     OrderRepository orderRepository;
     
+    @Inject
+    ProductRepository productRepository;
+    
     @Inject
     CartRepository cartRepository;
     
-    public Uni<List<Order>> getUserOrders(String userId) {
-        return orderRepository.findByUserId(userId);
+    @Inject
+    CartService cartService;
+    
+    @Inject
+    StockReservations stockReservations;
+    
+    public Uni<List<OrderSummaryDTO>> getUserOrders(String userId) {
+        return orderRepository.findSummariesByUserId(userId);
     }
     
     public Uni<Order> getOrder(Long orderId) {
@@ -32,7 +50,8 @@ public class OrderService {
     
     @Transactional
     public Uni<Order> createOrder(String userId, ShippingAddress shippingAddress) {
-        return cartRepository.findByUserId(userId)
+        return cartService.flush(userId)
+            .chain(() -> cartRepository.findByUserId(userId))
             .onItem().ifNull().failWith(() ->
                 new ResourceNotFoundException("Cart not found"))
             .chain(cart -> {
@@ -40,10 +59,12 @@ public class OrderService {
                 order.setUserId(userId);
                 order.setOrderDate(LocalDateTime.now());
                 order.setStatus(OrderStatus.PENDING);
-                order.setTotalAmount(cart.getTotalAmount());
                 order.setShippingAddress(shippingAddress);
                 
-                cart.getItems().forEach(cartItem -> {
+                // The total is summed in minor units from the lines actually ordered
+                long total = 0;
+                Map<Long, Integer> quantities = new HashMap<>();
+                for (CartItem cartItem : cart.getItems()) {
                     OrderItem orderItem = new OrderItem();
                     orderItem.setOrder(order);
                     orderItem.setProduct(cartItem.getProduct());
@@ -51,9 +72,14 @@ public class OrderService {
                     orderItem.setPrice(cartItem.getPrice());
                     orderItem.setSubtotal(cartItem.getSubtotal());
                     order.getItems().add(orderItem);
-                });
+                    total = Math.addExact(total, Money.toMinor(cartItem.getSubtotal()));
+                    quantities.merge(cartItem.getProduct().getId(), cartItem.getQuantity(), Integer::sum);
+                }
+                order.setTotalAmount(Money.toDecimal(total));
                 
-                return orderRepository.persist(order);
+                // Stock is held from here until payment; an order that cannot be covered fails
+                return orderRepository.persist(order)
+                    .call(saved -> stockReservations.reserve(saved.getId(), quantities));
             });
     }
     
@@ -63,8 +89,59 @@ public class OrderService {
             .onItem().ifNull().failWith(() ->
                 new ResourceNotFoundException("Order not found"))
             .chain(order -> {
+                boolean paid = status == OrderStatus.PAID && order.getStatus() != OrderStatus.PAID;
+                boolean cancelled = status == OrderStatus.CANCELLED && order.getStatus() != OrderStatus.CANCELLED;
                 order.setStatus(status);
-                return orderRepository.persist(order);
+                // A reservation held by another replica is released there
+                if (cancelled) {
+                    return orderRepository.persist(order)
+                        .call(saved -> stockReservations.release(saved.getId()) || !stockReservations.isEnabled()
+                            ? Uni.createFrom().voidItem()
+                            : orderRepository.notifyCancelled(saved.getId()));
+                }
+                if (!paid) {
+                    return orderRepository.persist(order);
+                }
+                // Every replica folds the basket into its "frequently bought together" matrix,
+                // and the replica holding the stock reservation confirms it
+                return orderRepository.persist(order)
+                    .call(saved -> Mutiny.fetch(saved.getItems())
+                        .call(items -> settleStock(saved.getId(), items))
+                        .chain(items -> orderRepository.notifyPaid(saved.getId(), items.stream()
+                            .filter(item -> item.getProduct() != null)
+                            .map(item -> item.getProduct().getId())
+                            .distinct()
+                            .limit(ProductCoOccurrence.MAX_PRODUCTS_PER_ORDER)
+                            .collect(Collectors.toList()))));
+            });
+    }
+    
+    // A reservation held here is confirmed at once and one held by another replica is confirmed
+    // there. An order paid after its reservation ended takes its stock straight off the products row.
+    private Uni<Void> settleStock(Long orderId, List<OrderItem> items) {
+        if (!stockReservations.isEnabled() || stockReservations.confirm(orderId)) {
+            return Uni.createFrom().voidItem();
+        }
+        return stockReservations.heldElsewhere(orderId)
+            .chain(held -> {
+                if (held) {
+                    return Uni.createFrom().voidItem();
+                }
+                Uni<Void> chain = Uni.createFrom().voidItem();
+                for (OrderItem item : items) {
+                    if (item.getProduct() == null) {
+                        continue;
+                    }
+                    Long productId = item.getProduct().getId();
+                    chain = chain.chain(() -> productRepository.adjustStock(productId, -item.getQuantity())
+                        .invoke(updated -> {
+                            if (updated == 0) {
+                                LOG.warnf("Order %d was paid without stock for product %d", orderId, productId);
+                            }
+                        })
+                        .replaceWithVoid());
+                }
+                return chain;
             });
     }
-}
\ No newline at end of file
+}
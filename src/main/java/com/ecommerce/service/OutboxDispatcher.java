@@ -0,0 +1,314 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.model.OutboxEventType;
+import com.ecommerce.domain.model.Product;
+import com.ecommerce.domain.model.User;
+import com.ecommerce.domain.repository.OrderRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.vertx.core.runtime.context.VertxContextSafetyToggle;
+import io.smallrye.common.vertx.VertxContext;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.vertx.core.Context;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Delivers the outbox: emails recorded in the same transaction as the order, user or stock
+// change behind them, so a request never waits on SendGrid and a crash loses nothing that
+// committed. Inserts wake the dispatcher through the outbox channel; a slow poll catches
+// anything a dropped connection missed.
+//
+// Messages are claimed in batches with SKIP LOCKED and a claim timeout, so replicas share the
+// work and a replica dying mid-send only delays its batch. Delivery is at least once: a
+// message whose send succeeded but whose mark failed is sent again.
+@ApplicationScoped
+public class OutboxDispatcher {
+    
+    private static final Logger LOG = Logger.getLogger(OutboxDispatcher.class);
+    
+    // Notified by a statement-level trigger on outbox inserts
+    private static final String CHANNEL = "outbox";
+    
+    private static final String CLAIM =
+        "UPDATE outbox o SET next_attempt_at = now() + make_interval(secs => $2) " +
+        "FROM (SELECT id FROM outbox WHERE delivered_at IS NULL AND dead_at IS NULL AND next_attempt_at <= now() " +
+        "ORDER BY id LIMIT $1 FOR UPDATE SKIP LOCKED) due " +
+        "WHERE o.id = due.id " +
+        "RETURNING o.id, o.type, o.aggregate_id, o.attempts, EXTRACT(EPOCH FROM now() - o.created_at) AS age";
+    private static final String DELIVERED =
+        "UPDATE outbox SET delivered_at = now(), attempts = attempts + 1, last_error = NULL WHERE id = ANY($1)";
+    private static final String FAILED =
+        "UPDATE outbox SET attempts = attempts + 1, last_error = $3, " +
+        "next_attempt_at = now() + make_interval(secs => $2), " +
+        "dead_at = CASE WHEN attempts + 1 >= $4 THEN now() END WHERE id = $1";
+    private static final String PURGE =
+        "DELETE FROM outbox WHERE id IN (SELECT id FROM outbox " +
+        "WHERE delivered_at < now() - make_interval(secs => $1) LIMIT $2)";
+    
+    @ConfigProperty(name = "outbox.batch-size", defaultValue = "50")
+    int batchSize;
+    
+    @ConfigProperty(name = "outbox.concurrency", defaultValue = "4")
+    int concurrency;
+    
+    @ConfigProperty(name = "outbox.poll-interval", defaultValue = "PT10S")
+    Duration pollInterval;
+    
+    @ConfigProperty(name = "outbox.claim-timeout", defaultValue = "PT2M")
+    Duration claimTimeout;
+    
+    @ConfigProperty(name = "outbox.backoff.initial", defaultValue = "PT10S")
+    Duration initialBackoff;
+    
+    @ConfigProperty(name = "outbox.backoff.max", defaultValue = "PT1H")
+    Duration maxBackoff;
+    
+    @ConfigProperty(name = "outbox.max-attempts", defaultValue = "10")
+    int maxAttempts;
+    
+    @ConfigProperty(name = "outbox.retention", defaultValue = "P7D")
+    Duration retention;
+    
+    @Inject
+    PgPool pool;
+    
+    @Inject
+    Vertx vertx;
+    
+    @Inject
+    OrderRepository orderRepository;
+    
+    @Inject
+    EmailService emailService;
+    
+    @Inject
+    MeterRegistry registry;
+    
+    @Inject
+    PgNotificationListener notifications;
+    
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean again = new AtomicBoolean();
+    
+    private Counter delivered;
+    private Counter failed;
+    private Counter dead;
+    private Timer lag;
+    
+    @PostConstruct
+    void init() {
+        delivered = Counter.builder("outbox.delivered")
+            .description("Outbox messages delivered")
+            .register(registry);
+        failed = Counter.builder("outbox.failed")
+            .description("Outbox delivery attempts that failed and were scheduled again")
+            .register(registry);
+        dead = Counter.builder("outbox.dead")
+            .description("Outbox messages given up on after the last attempt")
+            .register(registry);
+        lag = Timer.builder("outbox.lag")
+            .description("Time from an outbox message committing to it being claimed for delivery")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(registry);
+    }
+    
+    void onStart(@Observes StartupEvent ev) {
+        notifications.listen(CHANNEL, ignored -> wake(), this::wake);
+        vertx.setPeriodic(Math.max(1, pollInterval.toMillis()), id -> {
+            wake();
+            pool.preparedQuery(PURGE).execute(Tuple.of((double) retention.toSeconds(), 1000))
+                .subscribe().with(
+                    rows -> { },
+                    e -> LOG.warn("Failed to purge delivered outbox messages", e));
+        });
+        wake();
+    }
+    
+    // Called for every outbox notification. One pass runs at a time; a wake-up during a pass,
+    // or a full batch, means more may be waiting, so another pass follows.
+    public void wake() {
+        again.set(true);
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        again.set(false);
+        // Entities are loaded through Panache sessions, which need a safe duplicated context
+        Context context = VertxContext.createNewDuplicatedContext(vertx.getDelegate().getOrCreateContext());
+        VertxContextSafetyToggle.setContextSafe(context, true);
+        context.runOnContext(ignored -> pass()
+            .onFailure().invoke(e -> LOG.warn("Failed to dispatch outbox messages", e))
+            .onFailure().recoverWithItem(false)
+            .subscribe().with(more -> {
+                running.set(false);
+                if (more || again.get()) {
+                    wake();
+                }
+            }));
+    }
+    
+    private Uni<Boolean> pass() {
+        return pool.preparedQuery(CLAIM)
+            .execute(Tuple.of(batchSize, (double) claimTimeout.toSeconds()))
+            .chain(rows -> {
+                List<Claimed> claimed = new ArrayList<>(rows.size());
+                for (Row row : rows) {
+                    claimed.add(new Claimed(row.getLong("id"), OutboxEventType.valueOf(row.getString("type")),
+                        row.getLong("aggregate_id"), row.getInteger("attempts")));
+                    lag.record(Duration.ofMillis((long) (row.getDouble("age") * 1000)));
+                }
+                if (claimed.isEmpty()) {
+                    return Uni.createFrom().item(false);
+                }
+                Queue<Long> sent = new ConcurrentLinkedQueue<>();
+                Queue<Tuple> failures = new ConcurrentLinkedQueue<>();
+                return Panache.withSession(() -> loadAll(claimed, failures))
+                    .chain(deliveries -> Multi.createFrom().iterable(deliveries)
+                        .onItem().transformToUni(delivery -> Uni.createFrom().voidItem()
+                            .emitOn(Infrastructure.getDefaultWorkerPool())
+                            .invoke(delivery.send)
+                            .invoke(() -> sent.add(delivery.message.id))
+                            .onFailure().invoke(e -> failures.add(failure(delivery.message, e)))
+                            .onFailure().recoverWithNull())
+                        .merge(Math.max(1, concurrency))
+                        .collect().last())
+                    .chain(() -> record(sent, failures))
+                    .replaceWith(claimed.size() == batchSize);
+            });
+    }
+    
+    // A session must not be shared by concurrent operations, so every target of the batch is
+    // read one after another in one session; only the sends run in parallel. A message whose
+    // target cannot be read fails here and is not sent.
+    private Uni<List<Delivery>> loadAll(List<Claimed> claimed, Queue<Tuple> failures) {
+        return Multi.createFrom().iterable(claimed)
+            .onItem().transformToUniAndConcatenate(message -> load(message)
+                .map(send -> new Delivery(message, send))
+                .onFailure().invoke(e -> failures.add(failure(message, e)))
+                .onFailure().recoverWithNull())
+            .collect().asList();
+    }
+    
+    // The message content is read now, not when it was enqueued; the send it returns runs on a
+    // worker thread, because the provider SDKs block
+    private Uni<Runnable> load(Claimed message) {
+        switch (message.type) {
+            case ORDER_CONFIRMATION:
+                return orderRepository.findWithItems(message.aggregateId)
+                    .chain(order -> {
+                        if (order == null) {
+                            return Uni.createFrom().failure(new NoSuchElementException(
+                                "Order " + message.aggregateId + " not found"));
+                        }
+                        return User.<User>findById(Long.valueOf(order.getUserId()))
+                            .map(user -> {
+                                User customer = required(user, message);
+                                return () -> emailService.sendOrderConfirmation(order, customer);
+                            });
+                    });
+            case EMAIL_VERIFICATION:
+                return loadUser(message)
+                    .map(user -> () -> {
+                        if (!user.isEmailVerified()) {
+                            emailService.sendVerificationEmail(user);
+                        }
+                    });
+            case PASSWORD_RESET:
+                return loadUser(message)
+                    .map(user -> () -> emailService.sendPasswordResetEmail(user));
+            case LOW_STOCK_ALERT:
+                return Product.<Product>findById(message.aggregateId)
+                    .map(product -> {
+                        Product found = required(product, message);
+                        return () -> emailService.sendLowStockAlert(found);
+                    });
+            default:
+                return Uni.createFrom().failure(new IllegalStateException("Unknown outbox message " + message.type));
+        }
+    }
+    
+    private Uni<User> loadUser(Claimed message) {
+        return User.<User>findById(message.aggregateId)
+            .map(user -> required(user, message));
+    }
+    
+    private Uni<Void> record(Collection<Long> sent, Collection<Tuple> failures) {
+        Uni<Void> marks = Uni.createFrom().voidItem();
+        if (!sent.isEmpty()) {
+            marks = marks.chain(() -> pool.preparedQuery(DELIVERED)
+                .execute(Tuple.of((Object) sent.toArray(Long[]::new)))
+                .invoke(() -> delivered.increment(sent.size()))
+                .replaceWithVoid());
+        }
+        if (!failures.isEmpty()) {
+            marks = marks.chain(() -> pool.preparedQuery(FAILED)
+                .executeBatch(new ArrayList<>(failures))
+                .replaceWithVoid());
+        }
+        return marks;
+    }
+    
+    // Exponential backoff from the attempt count; the last attempt marks the message dead
+    private Tuple failure(Claimed message, Throwable e) {
+        int attempt = message.attempts + 1;
+        if (attempt >= maxAttempts) {
+            dead.increment();
+            LOG.errorf(e, "Giving up on outbox message %d (%s) after %d attempts", message.id, message.type, attempt);
+        } else {
+            failed.increment();
+            LOG.warnf(e, "Outbox message %d (%s) failed, attempt %d", message.id, message.type, attempt);
+        }
+        long backoff = Math.min(maxBackoff.toSeconds(),
+            initialBackoff.toSeconds() << Math.min(message.attempts, 20));
+        String error = String.valueOf(e.getMessage());
+        return Tuple.of(message.id, (double) backoff,
+            error.length() > 1000 ? error.substring(0, 1000) : error, maxAttempts);
+    }
+    
+    private static <T> T required(T entity, Claimed message) {
+        if (entity == null) {
+            throw new NoSuchElementException(message.type + " target " + message.aggregateId + " not found");
+        }
+        return entity;
+    }
+    
+    private static final class Delivery {
+        private final Claimed message;
+        private final Runnable send;
+        
+        private Delivery(Claimed message, Runnable send) {
+            this.message = message;
+            this.send = send;
+        }
+    }
+    
+    private static final class Claimed {
+        private final Long id;
+        private final OutboxEventType type;
+        private final Long aggregateId;
+        private final int attempts;
+        
+        private Claimed(Long id, OutboxEventType type, Long aggregateId, int attempts) {
+            this.id = id;
+            this.type = type;
+            this.aggregateId = aggregateId;
+            this.attempts = attempts;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.ecommerce.service;
 
+import com.ecommerce.domain.model.Money;
 import com.ecommerce.domain.model.Order;
 import com.stripe.exception.StripeException;
 import com.stripe.model.PaymentIntent;
@@ -8,6 +9,7 @@ import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 
 @ApplicationScoped
@@ -19,9 +21,11 @@ public class PaymentService {
     public Uni<PaymentIntent> createPaymentIntent(Order order) {
         return Uni.createFrom().item(() -> {
             try {
+                // Stripe takes the amount in minor units, which is exactly what Money holds
+                Money total = Money.of(order.getTotalAmount());
                 PaymentIntentCreateParams params = PaymentIntentCreateParams.builder()
-                    .setAmount(order.getTotalAmount().multiply(new java.math.BigDecimal(100)).longValue())
-                    .setCurrency("usd")
+                    .setAmount(total.minor())
+                    .setCurrency(total.currency().getCurrencyCode().toLowerCase(Locale.ROOT))
                     .setAutomaticPaymentMethods(
                         PaymentIntentCreateParams.AutomaticPaymentMethods.builder()
                             .setEnabled(true)
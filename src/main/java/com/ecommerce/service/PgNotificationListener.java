@@ -0,0 +1,84 @@
+package com.ecommerce.service;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.pgclient.pubsub.PgSubscriber;
+import io.vertx.pgclient.PgConnectOptions;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.interceptor.Interceptor;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+// One LISTEN connection per replica, shared by every service that reacts to PostgreSQL
+// notifications. Each service registers the channels it owns with its own handler; handlers
+// run on the subscriber's event loop and must not block.
+//
+// Notifications sent while the connection is down are lost. A channel can pass a callback that
+// runs whenever it is subscribed again after a reconnect, so its owner can catch up.
+@ApplicationScoped
+public class PgNotificationListener {
+    
+    private static final Logger LOG = Logger.getLogger(PgNotificationListener.class);
+    
+    private static final long MAX_RECONNECT_DELAY_MS = 30000;
+    
+    @ConfigProperty(name = "quarkus.datasource.reactive.url")
+    String databaseUrl;
+    
+    @ConfigProperty(name = "quarkus.datasource.username")
+    String username;
+    
+    @ConfigProperty(name = "quarkus.datasource.password")
+    String password;
+    
+    @Inject
+    Vertx vertx;
+    
+    private PgSubscriber subscriber;
+    
+    @PostConstruct
+    void init() {
+        PgConnectOptions options = PgConnectOptions.fromUri(databaseUrl.replaceFirst("^vertx-reactive:", ""))
+            .setUser(username)
+            .setPassword(password);
+        
+        subscriber = PgSubscriber.subscriber(vertx, options)
+            .reconnectPolicy(retries -> Math.min(1000L << Math.min(retries, 5), MAX_RECONNECT_DELAY_MS));
+        subscriber.closeHandler(() -> LOG.warn("Notification listener disconnected, reconnecting"));
+    }
+    
+    // Observed after the services' own startup observers, so their channels are registered
+    // before the first connect; a channel registered later is listened to straight away
+    void onStart(@Observes @Priority(Interceptor.Priority.PLATFORM_AFTER) StartupEvent ev) {
+        subscriber.connect().subscribe().with(
+            ignored -> LOG.info("Listening for database notifications"),
+            e -> LOG.error("Failed to start notification listener", e));
+    }
+    
+    void onStop(@Observes ShutdownEvent ev) {
+        subscriber.closeAndAwait();
+    }
+    
+    public void listen(String channel, Consumer<String> handler) {
+        listen(channel, handler, null);
+    }
+    
+    public void listen(String channel, Consumer<String> handler, Runnable onResubscribed) {
+        AtomicBoolean subscribed = new AtomicBoolean();
+        subscriber.channel(channel)
+            .subscribeHandler(() -> {
+                if (!subscribed.compareAndSet(false, true) && onResubscribed != null) {
+                    LOG.infof("Resubscribed to channel %s after a reconnect", channel);
+                    onResubscribed.run();
+                }
+            })
+            .handler(handler);
+    }
+}
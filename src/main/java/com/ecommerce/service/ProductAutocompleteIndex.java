@@ -0,0 +1,494 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.dto.SuggestionDTO;
+import com.ecommerce.domain.model.Product;
+import com.ecommerce.domain.repository.ProductRepository;
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.vertx.VertxContextSupport;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+// Prefix trie over product names, tags and category names. Every node keeps the top
+// suggestions of its subtree, so an exact prefix lookup is a walk of the query's length.
+// Each phrase is also indexed from every word, so "pro" finds "Apple iPhone Pro".
+// Nodes hold their children in sorted parallel arrays searched by binary search, so a node
+// costs a few small arrays rather than a hash map.
+@ApplicationScoped
+public class ProductAutocompleteIndex {
+    
+    private static final Logger LOG = Logger.getLogger(ProductAutocompleteIndex.class);
+    
+    private static final int REBUILD_BATCH_SIZE = 5000;
+    static final int TOP_K = 10;
+    private static final int MAX_INDEXED_WORDS = 6;
+    private static final int MIN_FUZZY_LENGTH = 3;
+    // Typo matches rank below any exact prefix match of similar popularity
+    private static final double FUZZY_PENALTY = 0.5;
+    
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    
+    @Inject
+    ProductRepository productRepository;
+    
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node(null, '\0');
+    private final Set<String> categoryKeys = new HashSet<>();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<Long, Set<String>> productTags = new HashMap<>();
+    private final Map<String, Integer> tagCounts = new HashMap<>();
+    
+    private volatile boolean ready;
+    
+    void onStart(@Observes StartupEvent ev) {
+        try {
+            int indexed = VertxContextSupport.subscribeAndAwait(
+                () -> Panache.withSession(this::rebuild));
+            LOG.infof("Product autocomplete index built with %d products", indexed);
+        } catch (Throwable e) {
+            LOG.error("Failed to build product autocomplete index", e);
+        }
+    }
+    
+    public boolean isReady() {
+        return ready;
+    }
+    
+    // Popularity (sales plus favorites) is only recomputed here; incremental updates keep
+    // the last known score of a product
+    public Uni<Integer> rebuild() {
+        ready = false;
+        lock.writeLock().lock();
+        try {
+            root.clear();
+            entries.clear();
+            categoryKeys.clear();
+            productTags.clear();
+            tagCounts.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return refreshCategories()
+            .chain(() -> rebuildFrom(0L, 0))
+            .invoke(() -> ready = true);
+    }
+    
+    // Renamed, added and removed categories, on a category change; the trie stays usable meanwhile
+    public Uni<Integer> refreshCategories() {
+        return productRepository.findCategorySuggestions()
+            .map(rows -> {
+                lock.writeLock().lock();
+                try {
+                    Set<String> current = new HashSet<>();
+                    for (Object[] row : rows) {
+                        String key = "category:" + row[0];
+                        current.add(key);
+                        put(new Entry(key, (String) row[1], SuggestionDTO.CATEGORY,
+                            ((Number) row[0]).longValue(), ((Number) row[2]).doubleValue()));
+                    }
+                    for (String key : categoryKeys) {
+                        Entry removed = current.contains(key) ? null : entries.remove(key);
+                        if (removed != null) {
+                            unlink(removed);
+                        }
+                    }
+                    categoryKeys.clear();
+                    categoryKeys.addAll(current);
+                    return current.size();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            });
+    }
+    
+    private Uni<Integer> rebuildFrom(long afterId, int indexed) {
+        return productRepository.findAutocompleteDocuments(afterId, REBUILD_BATCH_SIZE)
+            .chain(rows -> {
+                if (rows.isEmpty()) {
+                    return Uni.createFrom().item(indexed);
+                }
+                
+                List<Long> ids = new ArrayList<>(rows.size());
+                for (Object[] row : rows) {
+                    Long id = ((Number) row[0]).longValue();
+                    ids.add(id);
+                    put(new Entry("product:" + id, (String) row[1], SuggestionDTO.PRODUCT, id,
+                        ((Number) row[2]).doubleValue()));
+                }
+                
+                long lastId = ids.get(ids.size() - 1);
+                return productRepository.findTagNames(ids)
+                    .chain(tagRows -> {
+                        Map<Long, List<String>> tagsByProduct = new HashMap<>();
+                        for (Object[] row : tagRows) {
+                            tagsByProduct.computeIfAbsent(((Number) row[0]).longValue(),
+                                k -> new ArrayList<>()).add((String) row[1]);
+                        }
+                        tagsByProduct.forEach(this::indexTags);
+                        return rebuildFrom(lastId, indexed + rows.size());
+                    });
+            });
+    }
+    
+    // Inactive products are not suggested
+    public void index(Product product) {
+        if (!Boolean.TRUE.equals(product.getActive())) {
+            remove(product.getId());
+            return;
+        }
+        String key = "product:" + product.getId();
+        lock.writeLock().lock();
+        try {
+            Entry existing = entries.get(key);
+            double score = existing != null ? existing.score : 0;
+            if (existing == null || !existing.text.equals(product.getName())) {
+                put(new Entry(key, product.getName(), SuggestionDTO.PRODUCT, product.getId(), score));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void indexTags(Long productId, Collection<String> tags) {
+        Set<String> updated = new HashSet<>();
+        if (tags != null) {
+            tags.forEach(tag -> updated.add(tag.trim().toLowerCase(Locale.ROOT)));
+        }
+        
+        lock.writeLock().lock();
+        try {
+            Set<String> previous = productTags.getOrDefault(productId, Set.of());
+            for (String tag : previous) {
+                if (!updated.contains(tag)) {
+                    adjustTag(tag, -1);
+                }
+            }
+            for (String tag : updated) {
+                if (!previous.contains(tag)) {
+                    adjustTag(tag, 1);
+                }
+            }
+            if (updated.isEmpty()) {
+                productTags.remove(productId);
+            } else {
+                productTags.put(productId, updated);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void remove(Long productId) {
+        indexTags(productId, null);
+        lock.writeLock().lock();
+        try {
+            Entry existing = entries.remove("product:" + productId);
+            if (existing != null) {
+                unlink(existing);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Exact prefix matches first; typo-tolerant matches (one edit, two for long queries) fill the
+    // rest. Null when the index is not built yet.
+    public List<SuggestionDTO> suggest(String query, int limit) {
+        if (!ready) {
+            return null;
+        }
+        String prefix = normalize(query);
+        int max = Math.min(Math.max(limit, 1), TOP_K);
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+        
+        lock.readLock().lock();
+        try {
+            Map<String, Double> scores = new LinkedHashMap<>();
+            Map<String, Entry> found = new HashMap<>();
+            
+            Node node = find(prefix);
+            if (node != null) {
+                for (Entry entry : node.top) {
+                    found.put(entry.key, entry);
+                    scores.put(entry.key, entry.score);
+                }
+            }
+            
+            if (scores.size() < max && prefix.length() >= MIN_FUZZY_LENGTH) {
+                int maxEdits = prefix.length() >= 7 ? 2 : 1;
+                int[] firstRow = new int[prefix.length() + 1];
+                for (int i = 0; i < firstRow.length; i++) {
+                    firstRow[i] = i;
+                }
+                for (Node child : root.children) {
+                    fuzzy(child, prefix, firstRow, maxEdits, found, scores);
+                }
+            }
+            
+            return scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(max)
+                .map(entry -> found.get(entry.getKey()).toSuggestion())
+                .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Levenshtein distance of the query against each trie path, one DP row per node. A node whose
+    // path is within maxEdits of the whole query contributes its subtree's top entries.
+    private void fuzzy(Node node, String query, int[] previousRow, int maxEdits,
+            Map<String, Entry> found, Map<String, Double> scores) {
+        int[] row = new int[previousRow.length];
+        row[0] = previousRow[0] + 1;
+        int best = row[0];
+        for (int i = 1; i < row.length; i++) {
+            int cost = query.charAt(i - 1) == node.c ? 0 : 1;
+            row[i] = Math.min(Math.min(row[i - 1] + 1, previousRow[i] + 1), previousRow[i - 1] + cost);
+            best = Math.min(best, row[i]);
+        }
+        
+        if (row[row.length - 1] <= maxEdits) {
+            for (Entry entry : node.top) {
+                found.putIfAbsent(entry.key, entry);
+                scores.putIfAbsent(entry.key, entry.score * FUZZY_PENALTY);
+            }
+            return;
+        }
+        if (best > maxEdits) {
+            return;
+        }
+        for (Node child : node.children) {
+            fuzzy(child, query, row, maxEdits, found, scores);
+        }
+    }
+    
+    private void adjustTag(String tag, int delta) {
+        int count = tagCounts.merge(tag, delta, Integer::sum);
+        String key = "tag:" + tag;
+        Entry existing = entries.remove(key);
+        if (existing != null) {
+            unlink(existing);
+        }
+        if (count <= 0) {
+            tagCounts.remove(tag);
+            return;
+        }
+        Entry entry = new Entry(key, tag, SuggestionDTO.TAG, null, count);
+        entries.put(key, entry);
+        link(entry);
+    }
+    
+    private void put(Entry entry) {
+        lock.writeLock().lock();
+        try {
+            Entry existing = entries.put(entry.key, entry);
+            if (existing != null) {
+                unlink(existing);
+            }
+            link(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private void link(Entry entry) {
+        for (String term : terms(entry.text)) {
+            Node node = root;
+            for (int i = 0; i < term.length(); i++) {
+                node = node.addChild(term.charAt(i));
+            }
+            node.addEntry(entry);
+            refreshUpwards(node);
+        }
+    }
+    
+    private void unlink(Entry entry) {
+        for (String term : terms(entry.text)) {
+            Node node = find(term);
+            if (node == null) {
+                continue;
+            }
+            node.removeEntry(entry);
+            // Drop branches that no longer lead to any entry
+            while (node.parent != null && node.here.length == 0 && node.children.length == 0) {
+                node.parent.removeChild(node.c);
+                node = node.parent;
+            }
+            refreshUpwards(node);
+        }
+    }
+    
+    private void refreshUpwards(Node node) {
+        for (Node current = node; current != null; current = current.parent) {
+            current.top = topOf(current);
+        }
+    }
+    
+    private static Entry[] topOf(Node node) {
+        Map<String, Entry> candidates = new HashMap<>();
+        for (Entry entry : node.here) {
+            candidates.put(entry.key, entry);
+        }
+        for (Node child : node.children) {
+            for (Entry entry : child.top) {
+                candidates.putIfAbsent(entry.key, entry);
+            }
+        }
+        return candidates.values().stream()
+            .sorted(Comparator.comparingDouble((Entry entry) -> entry.score).reversed()
+                .thenComparing(entry -> entry.text))
+            .limit(TOP_K)
+            .toArray(Entry[]::new);
+    }
+    
+    private Node find(String term) {
+        Node node = root;
+        for (int i = 0; i < term.length() && node != null; i++) {
+            node = node.child(term.charAt(i));
+        }
+        return node;
+    }
+    
+    private static List<String> terms(String text) {
+        String normalized = normalize(text);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        List<String> terms = new ArrayList<>();
+        terms.add(normalized);
+        int words = 1;
+        for (int i = normalized.indexOf(' '); i >= 0 && words < MAX_INDEXED_WORDS; i = normalized.indexOf(' ', i + 1)) {
+            terms.add(normalized.substring(i + 1));
+            words++;
+        }
+        return terms;
+    }
+    
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String folded = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(folded.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+    
+    // keys[i] is the character leading to children[i]; both are kept sorted by character
+    private static final class Node {
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final Entry[] NO_ENTRIES = new Entry[0];
+        
+        private final Node parent;
+        private final char c;
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_CHILDREN;
+        private Entry[] here = NO_ENTRIES;
+        private Entry[] top = NO_ENTRIES;
+        
+        private Node(Node parent, char c) {
+            this.parent = parent;
+            this.c = c;
+        }
+        
+        private Node child(char key) {
+            int i = Arrays.binarySearch(keys, key);
+            return i >= 0 ? children[i] : null;
+        }
+        
+        private Node addChild(char key) {
+            int i = Arrays.binarySearch(keys, key);
+            if (i >= 0) {
+                return children[i];
+            }
+            int at = -i - 1;
+            char[] grownKeys = new char[keys.length + 1];
+            Node[] grownChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, grownKeys, 0, at);
+            System.arraycopy(children, 0, grownChildren, 0, at);
+            System.arraycopy(keys, at, grownKeys, at + 1, keys.length - at);
+            System.arraycopy(children, at, grownChildren, at + 1, children.length - at);
+            Node child = new Node(this, key);
+            grownKeys[at] = key;
+            grownChildren[at] = child;
+            keys = grownKeys;
+            children = grownChildren;
+            return child;
+        }
+        
+        private void removeChild(char key) {
+            int i = Arrays.binarySearch(keys, key);
+            if (i < 0) {
+                return;
+            }
+            if (keys.length == 1) {
+                keys = NO_KEYS;
+                children = NO_CHILDREN;
+                return;
+            }
+            char[] shrunkKeys = new char[keys.length - 1];
+            Node[] shrunkChildren = new Node[children.length - 1];
+            System.arraycopy(keys, 0, shrunkKeys, 0, i);
+            System.arraycopy(children, 0, shrunkChildren, 0, i);
+            System.arraycopy(keys, i + 1, shrunkKeys, i, keys.length - i - 1);
+            System.arraycopy(children, i + 1, shrunkChildren, i, children.length - i - 1);
+            keys = shrunkKeys;
+            children = shrunkChildren;
+        }
+        
+        private void addEntry(Entry entry) {
+            here = Arrays.copyOf(here, here.length + 1);
+            here[here.length - 1] = entry;
+        }
+        
+        private void removeEntry(Entry entry) {
+            for (int i = 0; i < here.length; i++) {
+                if (here[i] == entry) {
+                    Entry[] shrunk = new Entry[here.length - 1];
+                    System.arraycopy(here, 0, shrunk, 0, i);
+                    System.arraycopy(here, i + 1, shrunk, i, here.length - i - 1);
+                    here = shrunk.length == 0 ? NO_ENTRIES : shrunk;
+                    return;
+                }
+            }
+        }
+        
+        private void clear() {
+            keys = NO_KEYS;
+            children = NO_CHILDREN;
+            here = NO_ENTRIES;
+            top = NO_ENTRIES;
+        }
+    }
+    
+    private static final class Entry {
+        private final String key;
+        private final String text;
+        private final String type;
+        private final Long id;
+        private final double score;
+        
+        private Entry(String key, String text, String type, Long id, double score) {
+            this.key = key;
+            this.text = text;
+            this.type = type;
+            this.id = id;
+            this.score = score;
+        }
+        
+        private SuggestionDTO toSuggestion() {
+            return new SuggestionDTO(text, type, id);
+        }
+    }
+}
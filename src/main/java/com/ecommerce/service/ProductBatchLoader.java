@@ -0,0 +1,152 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.model.Product;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.vertx.core.runtime.context.VertxContextSafetyToggle;
+import io.smallrye.common.vertx.VertxContext;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.UniEmitter;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.hibernate.reactive.mutiny.Mutiny;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Collects the product ids requested on an event loop during one tick and loads them with a
+// single "id in (...)" query on the next tick, DataLoader style.
+//
+// The products returned are read-only snapshots from a stateless session and are not attached
+// to the caller's session: read values from them, and use ProductRepository.reference(id) to
+// link an entity to the product or an update query to change it.
+@ApplicationScoped
+public class ProductBatchLoader {
+    
+    private static final int MAX_IDS_PER_QUERY = 500;
+    
+    @Inject
+    Mutiny.SessionFactory sessionFactory;
+    
+    @Inject
+    MeterRegistry registry;
+    
+    // Pending batch per event loop; callers on duplicated contexts share their loop's batch
+    private final Map<Context, Batch> pending = new ConcurrentHashMap<>();
+    
+    private DistributionSummary batchSizes;
+    
+    @PostConstruct
+    void init() {
+        batchSizes = DistributionSummary.builder("product.loader.batch.size")
+            .description("Distinct product ids loaded per batched query")
+            .register(registry);
+    }
+    
+    public Uni<Product> load(Long productId) {
+        return Uni.createFrom().emitter(emitter -> {
+            Context caller = Vertx.currentContext();
+            if (caller == null) {
+                emitter.fail(new IllegalStateException("Batched product loads must run on a Vert.x context"));
+                return;
+            }
+            
+            Context eventLoop = VertxContext.getRootContext(caller);
+            boolean[] scheduled = {false};
+            pending.compute(eventLoop, (loop, batch) -> {
+                if (batch == null) {
+                    batch = new Batch();
+                    scheduled[0] = true;
+                }
+                batch.waiters.computeIfAbsent(productId, id -> new ArrayList<>())
+                    .add(new Waiter(caller, emitter));
+                return batch;
+            });
+            if (scheduled[0]) {
+                eventLoop.runOnContext(ignored -> flush(eventLoop));
+            }
+        });
+    }
+    
+    // Every id joins the same pending batch, so the whole set costs one query (per 500 ids).
+    // Products that do not exist are missing from the map.
+    public Uni<Map<Long, Product>> loadAll(Collection<Long> productIds) {
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(productIds));
+        if (ids.isEmpty()) {
+            return Uni.createFrom().item(Map.of());
+        }
+        List<Uni<Product>> loads = new ArrayList<>(ids.size());
+        ids.forEach(id -> loads.add(load(id)));
+        return Uni.join().all(loads).andFailFast()
+            .map(products -> {
+                Map<Long, Product> found = new HashMap<>();
+                for (int i = 0; i < ids.size(); i++) {
+                    if (products.get(i) != null) {
+                        found.put(ids.get(i), products.get(i));
+                    }
+                }
+                return found;
+            });
+    }
+    
+    private void flush(Context eventLoop) {
+        Batch batch = pending.remove(eventLoop);
+        if (batch == null) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(batch.waiters.keySet());
+        batchSizes.record(ids.size());
+        
+        // Hibernate Reactive only runs on a safe duplicated context
+        Context context = VertxContext.createNewDuplicatedContext(eventLoop);
+        VertxContextSafetyToggle.setContextSafe(context, true);
+        context.runOnContext(ignored -> sessionFactory
+            .withStatelessSession(session -> loadChunks(session, ids, 0, new HashMap<>()))
+            .subscribe().with(batch::complete, batch::fail));
+    }
+    
+    private Uni<Map<Long, Product>> loadChunks(
+            Mutiny.StatelessSession session, List<Long> ids, int from, Map<Long, Product> found) {
+        if (from >= ids.size()) {
+            return Uni.createFrom().item(found);
+        }
+        int to = Math.min(from + MAX_IDS_PER_QUERY, ids.size());
+        return session.createQuery("from Product where id in (:ids)", Product.class)
+            .setParameter("ids", ids.subList(from, to))
+            .getResultList()
+            .chain(products -> {
+                products.forEach(product -> found.put(product.getId(), product));
+                return loadChunks(session, ids, to, found);
+            });
+    }
+    
+    private static class Batch {
+        private final Map<Long, List<Waiter>> waiters = new HashMap<>();
+        
+        private void complete(Map<Long, Product> found) {
+            waiters.forEach((id, list) -> list.forEach(waiter -> waiter.complete(found.get(id))));
+        }
+        
+        private void fail(Throwable failure) {
+            waiters.values().forEach(list -> list.forEach(waiter -> waiter.fail(failure)));
+        }
+    }
+    
+    // Results go back on the caller's own context so it keeps using its own session
+    private record Waiter(Context context, UniEmitter<? super Product> emitter) {
+        void complete(Product product) {
+            context.runOnContext(ignored -> emitter.complete(product));
+        }
+        
+        void fail(Throwable failure) {
+            context.runOnContext(ignored -> emitter.fail(failure));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.dto.ProductDetailDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// Read-through cache for product detail. It holds immutable snapshots rather than entities, so
+// entries can be shared between requests. Entries are checked against the versions announced
+// by the products change notifications, so a load that raced with a commit is never cached.
+@ApplicationScoped
+public class ProductCache {
+
+    @ConfigProperty(name = "product-cache.maximum-size", defaultValue = "10000")
+    long maximumSize;
+
+    // Safety net for notifications lost while the listener was reconnecting
+    @ConfigProperty(name = "product-cache.expire-after-write", defaultValue = "PT10M")
+    Duration expireAfterWrite;
+
+    @Inject
+    MeterRegistry registry;
+
+    private Cache<Long, ProductDetailDTO> products;
+
+    // Latest version announced per product; a deleted product is announced as Long.MAX_VALUE
+    private Cache<Long, Long> announcedVersions;
+
+    private Counter staleLoads;
+    private Counter staleEntries;
+    private Timer notificationLag;
+
+    @PostConstruct
+    void init() {
+        products = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(expireAfterWrite)
+            .recordStats()
+            .build();
+        announcedVersions = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(expireAfterWrite)
+            .build();
+
+        CaffeineCacheMetrics.monitor(registry, products, "product-detail");
+        staleLoads = Counter.builder("product.cache.stale.loads")
+            .description("Loaded products discarded because a newer version was already announced")
+            .register(registry);
+        staleEntries = Counter.builder("product.cache.stale.entries")
+            .description("Cached products invalidated by a change notification")
+            .register(registry);
+        notificationLag = Timer.builder("product.cache.notification.lag")
+            .description("Time from the product row change to its invalidation on this replica")
+            .register(registry);
+    }
+
+    public ProductDetailDTO get(Long productId) {
+        return products.getIfPresent(productId);
+    }
+
+    public void put(ProductDetailDTO product) {
+        Long announced = announcedVersions.getIfPresent(product.getId());
+        if (announced != null && (product.getVersion() == null || product.getVersion() < announced)) {
+            staleLoads.increment();
+            return;
+        }
+        products.asMap().merge(product.getId(), product,
+            (current, loaded) -> isNewer(current, loaded) ? current : loaded);
+    }
+
+    public void onChange(Long productId, Long version, long changedAtMillis) {
+        long announced = version != null ? version : Long.MAX_VALUE;
+        announcedVersions.asMap().merge(productId, announced, Math::max);
+        products.asMap().computeIfPresent(productId, (id, cached) -> {
+            if (cached.getVersion() != null && cached.getVersion() >= announced) {
+                return cached;
+            }
+            staleEntries.increment();
+            return null;
+        });
+        if (changedAtMillis > 0) {
+            notificationLag.record(Math.max(0, System.currentTimeMillis() - changedAtMillis), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void onDelete(Long productId, long changedAtMillis) {
+        onChange(productId, null, changedAtMillis);
+    }
+
+    public void invalidateAll() {
+        products.invalidateAll();
+    }
+
+    private static boolean isNewer(ProductDetailDTO current, ProductDetailDTO loaded) {
+        return current.getVersion() != null
+            && (loaded.getVersion() == null || current.getVersion() > loaded.getVersion());
+    }
+}
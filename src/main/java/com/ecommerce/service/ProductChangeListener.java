@@ -0,0 +1,176 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.model.Tag;
+import com.ecommerce.domain.repository.ProductRepository;
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.vertx.core.runtime.context.VertxContextSafetyToggle;
+import io.smallrye.common.vertx.VertxContext;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Context;
+import io.vertx.core.json.JsonObject;
+import io.vertx.mutiny.core.Vertx;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.hibernate.reactive.mutiny.Mutiny;
+import org.jboss.logging.Logger;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+// Listens to the product_changes channel so every replica drops stale cache entries and
+// refreshes its search and facet indexes, whichever pod (or SQL script) changed the row.
+// Category changes arrive on their own channel and reload the category tree.
+@ApplicationScoped
+public class ProductChangeListener {
+
+    private static final Logger LOG = Logger.getLogger(ProductChangeListener.class);
+
+    private static final String CHANNEL = "product_changes";
+    private static final String CATEGORY_CHANNEL = "category_changes";
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    PgNotificationListener notifications;
+
+    @Inject
+    ProductRepository productRepository;
+
+    @Inject
+    ProductCache productCache;
+
+    @Inject
+    ProductSearchIndex searchIndex;
+
+    @Inject
+    ProductFacetIndex facetIndex;
+
+    @Inject
+    ProductAutocompleteIndex autocompleteIndex;
+
+    @Inject
+    CategoryTree categoryTree;
+
+    @Inject
+    Event<ProductChangedEvent> productChanged;
+
+    // Anything that changed while the connection was down was never announced, so after a
+    // reconnect local state starts over
+    void onStart(@Observes StartupEvent ev) {
+        notifications.listen(CHANNEL, this::onNotification, () -> {
+            LOG.info("Product changes may have been missed, discarding cached products and rebuilding indexes");
+            resync(null, false);
+        });
+        notifications.listen(CATEGORY_CHANNEL, this::onCategoryChange);
+    }
+
+    private void resync(Long revision, boolean pricesChanged) {
+        productCache.invalidateAll();
+        runOnSafeContext(() -> Panache.withSession(() -> categoryTree.reload()
+                .chain(() -> searchIndex.rebuild())
+                .chain(() -> facetIndex.rebuild())
+                .chain(() -> autocompleteIndex.rebuild()))
+            .invoke(() -> productChanged.fire(ProductChangedEvent.bulk(revision, pricesChanged))));
+    }
+
+    // Listings filtered by category now cover a different subtree, so cached pages are dropped too
+    private void onCategoryChange(String payload) {
+        Long revision = revisionOf(payload);
+        runOnSafeContext(() -> Panache.withSession(() -> categoryTree.reload()
+                .chain(() -> autocompleteIndex.refreshCategories()))
+            .invoke(() -> productChanged.fire(ProductChangedEvent.bulk(revision, false))));
+    }
+
+    private void onNotification(String payload) {
+        JsonObject change;
+        try {
+            change = new JsonObject(payload);
+        } catch (RuntimeException e) {
+            LOG.warnf("Ignoring malformed product change notification: %s", payload);
+            return;
+        }
+
+        // Bulk imports announce themselves once instead of per row, saying whether existing
+        // prices may have changed; an announcement that does not say is assumed to have
+        if ("BULK".equals(change.getString("op"))) {
+            LOG.info("Bulk product change announced, rebuilding indexes");
+            resync(change.getLong("revision"), change.getBoolean("prices", true));
+            return;
+        }
+
+        Long productId = change.getLong("id");
+        if ("SIGNALS".equals(change.getString("op"))) {
+            searchIndex.addSales(productId, change.getLong("sales", 0L));
+            searchIndex.addFavorites(productId, change.getLong("favorites", 0L));
+            return;
+        }
+
+        Long revision = change.getLong("revision");
+        long changedAt = change.getLong("at", 0L);
+        if ("DELETE".equals(change.getString("op"))) {
+            productCache.onDelete(productId, changedAt);
+            searchIndex.remove(productId);
+            facetIndex.remove(productId);
+            autocompleteIndex.remove(productId);
+            productChanged.fire(new ProductChangedEvent(productId, change.getLong("version"), true, revision, false, true));
+            return;
+        }
+
+        // Notifications from before the trigger reported price and listing changes are taken to
+        // carry both. The indexes only hold what listings show, so stock moving without
+        // crossing zero leaves them as they are.
+        Long version = change.getLong("version");
+        boolean pricesChanged = change.getBoolean("prices", true);
+        boolean listingChanged = change.getBoolean("listing", true);
+        productCache.onChange(productId, version, changedAt);
+        ProductChangedEvent event = new ProductChangedEvent(productId, version, false, revision, pricesChanged, listingChanged);
+        if (!listingChanged) {
+            productChanged.fire(event);
+            return;
+        }
+        runOnSafeContext(() -> refreshIndexes(productId).invoke(() -> productChanged.fire(event)));
+    }
+
+    // Category notifications carried no payload before they had a revision
+    private static Long revisionOf(String payload) {
+        try {
+            return new JsonObject(payload).getLong("revision");
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private Uni<Void> refreshIndexes(Long productId) {
+        return Panache.withSession(() -> productRepository.findById(productId)
+            .chain(product -> {
+                if (product == null) {
+                    return Uni.createFrom().voidItem();
+                }
+                return Mutiny.fetch(product.getTags())
+                    .invoke(tags -> {
+                        List<String> names = tags.stream().map(Tag::getName).collect(Collectors.toList());
+                        searchIndex.index(product.getId(), product.getName(), product.getDescription());
+                        searchIndex.updateRating(product.getId(), product.getAverageRating());
+                        searchIndex.indexTags(product.getId(), names);
+                        facetIndex.index(product);
+                        facetIndex.indexTags(product.getId(), names);
+                        autocompleteIndex.index(product);
+                        autocompleteIndex.indexTags(product.getId(), names);
+                    })
+                    .replaceWithVoid();
+            }));
+    }
+
+    // Hibernate Reactive refuses to run on the shared event loop context the subscriber calls back on
+    private void runOnSafeContext(Supplier<Uni<?>> work) {
+        Context context = VertxContext.createNewDuplicatedContext(vertx.getDelegate().getOrCreateContext());
+        VertxContextSafetyToggle.setContextSafe(context, true);
+        context.runOnContext(ignored -> work.get().subscribe().with(
+            done -> { },
+            e -> LOG.error("Failed to apply product change", e)));
+    }
+}
@@ -0,0 +1,21 @@
+package com.ecommerce.service;
+
+// Fired for every committed product change announced on the product_changes channel,
+// including changes made by other replicas. A bulk event (no product id) means any number
+// of products may have changed. The revision comes from the catalog_revision sequence and is
+// null when changes may have been missed, after a reconnect. pricesChanged comes from the
+// trigger, which compares the old and new price, so stock and rating writes leave it false.
+// Bulk events only report price changes when the bulk writer announced some; category edits
+// and resyncs never change prices. listingChanged is false for updates a listing cannot show,
+// such as stock moving without crossing zero; those carry no revision either.
+public record ProductChangedEvent(Long productId, Long version, boolean deleted, Long revision,
+                                  boolean pricesChanged, boolean listingChanged) {
+    
+    public static ProductChangedEvent bulk(Long revision, boolean pricesChanged) {
+        return new ProductChangedEvent(null, null, false, revision, pricesChanged, true);
+    }
+    
+    public boolean isBulk() {
+        return productId == null;
+    }
+}
\ No newline at end of file
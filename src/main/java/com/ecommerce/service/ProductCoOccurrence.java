@@ -0,0 +1,317 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.dto.RelatedProductDTO;
+import com.ecommerce.domain.repository.OrderRepository;
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import io.quarkus.vertx.VertxContextSupport;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// "Frequently bought together": for every product, how many paid orders also contained each
+// other product. Paid orders are folded in one at a time as they are announced; there is no
+// periodic self-join over order_items. Only the first start without a snapshot replays history.
+//
+// Each product keeps at most partners-per-product counters in parallel primitive arrays. When
+// they are full, a new partner takes over the smallest counter (Space-Saving), so the heavy
+// hitters survive with bounded memory.
+@ApplicationScoped
+public class ProductCoOccurrence {
+    
+    private static final Logger LOG = Logger.getLogger(ProductCoOccurrence.class);
+    
+    private static final int SNAPSHOT_MAGIC = 0x434F4F43;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int REPLAY_BATCH_SIZE = 1000;
+    // Pairs grow quadratically with the basket; huge orders add little signal
+    static final int MAX_PRODUCTS_PER_ORDER = 50;
+    
+    @ConfigProperty(name = "recommendations.partners-per-product", defaultValue = "100")
+    int partnersPerProduct;
+    
+    @ConfigProperty(name = "recommendations.snapshot-path", defaultValue = "data/co-occurrence.bin.gz")
+    String snapshotPath;
+    
+    @Inject
+    OrderRepository orderRepository;
+    
+    @Inject
+    PgNotificationListener notifications;
+    
+    private final Map<Long, Partners> partners = new ConcurrentHashMap<>();
+    
+    private volatile boolean dirty;
+    
+    void onStart(@Observes StartupEvent ev) {
+        try {
+            if (loadSnapshot()) {
+                return;
+            }
+            int orders = VertxContextSupport.subscribeAndAwait(
+                () -> Panache.withSession(() -> replayFrom(0L, 0)));
+            LOG.infof("Co-occurrence matrix built from %d paid orders", orders);
+            writeSnapshot();
+        } catch (Throwable e) {
+            LOG.error("Failed to build co-occurrence matrix", e);
+        }
+        // Orders paid while the connection is down are not replayed; the matrix is a popularity
+        // signal and a few missed baskets do not change its ranking noticeably
+        notifications.listen(OrderRepository.PAID_CHANNEL, this::onOrderPaid);
+    }
+    
+    void onStop(@Observes ShutdownEvent ev) {
+        writeSnapshot();
+    }
+    
+    @Scheduled(every = "${recommendations.snapshot-interval:5m}", delayed = "1m")
+    void snapshot() {
+        writeSnapshot();
+    }
+    
+    // Counts every pair of distinct products in the order once, in both directions
+    public void recordOrder(Collection<Long> productIds) {
+        long[] ids = productIds.stream()
+            .filter(Objects::nonNull)
+            .mapToLong(Long::longValue)
+            .distinct()
+            .limit(MAX_PRODUCTS_PER_ORDER)
+            .toArray();
+        if (ids.length < 2) {
+            return;
+        }
+        for (long id : ids) {
+            Partners row = partners.computeIfAbsent(id, k -> new Partners(partnersPerProduct));
+            for (long other : ids) {
+                if (other != id) {
+                    row.increment(other);
+                }
+            }
+        }
+        dirty = true;
+    }
+    
+    void onProductChanged(@Observes ProductChangedEvent event) {
+        if (event.deleted()) {
+            remove(event.productId());
+        }
+    }
+    
+    private void onOrderPaid(String payload) {
+        try {
+            JsonArray products = new JsonObject(payload).getJsonArray("products");
+            List<Long> productIds = new ArrayList<>(products.size());
+            for (int i = 0; i < products.size(); i++) {
+                productIds.add(products.getLong(i));
+            }
+            recordOrder(productIds);
+        } catch (RuntimeException e) {
+            LOG.warnf("Ignoring malformed paid order notification: %s", payload);
+        }
+    }
+    
+    public void remove(Long productId) {
+        if (partners.remove(productId) != null) {
+            dirty = true;
+        }
+    }
+    
+    // Served from the cached ranking of the product's row; partners deleted since are skipped
+    public List<RelatedProductDTO> related(Long productId, int limit) {
+        Partners row = partners.get(productId);
+        if (row == null) {
+            return List.of();
+        }
+        Ranking ranking = row.ranking();
+        List<RelatedProductDTO> related = new ArrayList<>(Math.min(limit, ranking.ids.length));
+        for (int i = 0; i < ranking.ids.length && related.size() < limit; i++) {
+            if (partners.containsKey(ranking.ids[i])) {
+                related.add(new RelatedProductDTO(ranking.ids[i], ranking.counts[i]));
+            }
+        }
+        return related;
+    }
+    
+    private Uni<Integer> replayFrom(long afterOrderId, int replayed) {
+        return orderRepository.findPaidOrderProducts(afterOrderId, REPLAY_BATCH_SIZE)
+            .chain(rows -> {
+                if (rows.isEmpty()) {
+                    return Uni.createFrom().item(replayed);
+                }
+                
+                // Rows come ordered by order id, so each order's products are contiguous
+                Map<Long, List<Long>> byOrder = new LinkedHashMap<>();
+                for (Object[] row : rows) {
+                    byOrder.computeIfAbsent(((Number) row[0]).longValue(), k -> new ArrayList<>())
+                        .add(((Number) row[1]).longValue());
+                }
+                byOrder.values().forEach(this::recordOrder);
+                
+                long lastOrderId = ((Number) rows.get(rows.size() - 1)[0]).longValue();
+                return replayFrom(lastOrderId, replayed + byOrder.size());
+            });
+    }
+    
+    // Written to a temp file and moved into place, so a crash never leaves a torn snapshot
+    private synchronized void writeSnapshot() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        Path target = Path.of(snapshotPath);
+        try {
+            Path directory = target.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, "co-occurrence", ".tmp");
+            int products = 0;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                List<Map.Entry<Long, Partners>> rows = new ArrayList<>(partners.entrySet());
+                out.writeInt(rows.size());
+                for (Map.Entry<Long, Partners> entry : rows) {
+                    out.writeLong(entry.getKey());
+                    entry.getValue().writeTo(out);
+                    products++;
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOG.debugf("Wrote co-occurrence snapshot with %d products to %s", products, target);
+        } catch (IOException e) {
+            dirty = true;
+            LOG.warnf(e, "Failed to write co-occurrence snapshot to %s", target);
+        }
+    }
+    
+    private boolean loadSnapshot() throws IOException {
+        Path source = Path.of(snapshotPath);
+        if (!Files.exists(source)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(source))))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                LOG.warnf("Ignoring co-occurrence snapshot %s with an unknown format", source);
+                return false;
+            }
+            int products = in.readInt();
+            for (int i = 0; i < products; i++) {
+                long productId = in.readLong();
+                partners.put(productId, Partners.readFrom(in, partnersPerProduct));
+            }
+            LOG.infof("Loaded co-occurrence snapshot with %d products from %s", products, source);
+            return true;
+        }
+    }
+    
+    // Counters for one product. Capacities are small, so a linear scan over the packed arrays
+    // beats hashing; readers get an immutable ranking that is rebuilt only after a change.
+    private static final class Partners {
+        private final long[] ids;
+        private final int[] counts;
+        private int size;
+        private volatile Ranking ranking;
+        
+        private Partners(int capacity) {
+            ids = new long[capacity];
+            counts = new int[capacity];
+        }
+        
+        private synchronized void increment(long partnerId) {
+            ranking = null;
+            int smallest = 0;
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == partnerId) {
+                    counts[i]++;
+                    return;
+                }
+                if (counts[i] < counts[smallest]) {
+                    smallest = i;
+                }
+            }
+            if (size < ids.length) {
+                ids[size] = partnerId;
+                counts[size++] = 1;
+                return;
+            }
+            // Space-Saving: the newcomer inherits the evicted count, which bounds its overestimate
+            ids[smallest] = partnerId;
+            counts[smallest]++;
+        }
+        
+        private Ranking ranking() {
+            Ranking current = ranking;
+            if (current != null) {
+                return current;
+            }
+            synchronized (this) {
+                if (ranking == null) {
+                    Integer[] order = new Integer[size];
+                    for (int i = 0; i < size; i++) {
+                        order[i] = i;
+                    }
+                    Arrays.sort(order, (a, b) -> counts[a] != counts[b]
+                        ? Integer.compare(counts[b], counts[a])
+                        : Long.compare(ids[a], ids[b]));
+                    long[] rankedIds = new long[size];
+                    int[] rankedCounts = new int[size];
+                    for (int i = 0; i < size; i++) {
+                        rankedIds[i] = ids[order[i]];
+                        rankedCounts[i] = counts[order[i]];
+                    }
+                    ranking = new Ranking(rankedIds, rankedCounts);
+                }
+                return ranking;
+            }
+        }
+        
+        private synchronized void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeLong(ids[i]);
+                out.writeInt(counts[i]);
+            }
+        }
+        
+        // A snapshot taken with a larger capacity keeps its strongest partners
+        private static Partners readFrom(DataInputStream in, int capacity) throws IOException {
+            Partners row = new Partners(capacity);
+            int stored = in.readInt();
+            long[] ids = new long[stored];
+            int[] counts = new int[stored];
+            for (int i = 0; i < stored; i++) {
+                ids[i] = in.readLong();
+                counts[i] = in.readInt();
+            }
+            Integer[] order = new Integer[stored];
+            for (int i = 0; i < stored; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Integer.compare(counts[b], counts[a]));
+            for (int i = 0; i < stored && row.size < capacity; i++) {
+                row.ids[row.size] = ids[order[i]];
+                row.counts[row.size++] = counts[order[i]];
+            }
+            return row;
+        }
+    }
+    
+    private record Ranking(long[] ids, int[] counts) {
+    }
+}
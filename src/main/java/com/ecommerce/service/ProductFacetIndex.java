@@ -0,0 +1,573 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.dto.ProductFacetsDTO;
+import com.ecommerce.domain.dto.ProductFilterDTO;
+import com.ecommerce.domain.model.Product;
+import com.ecommerce.domain.repository.ProductRepository;
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.vertx.VertxContextSupport;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+// Facet counts from Roaring bitmaps over the listing filter columns. Bitmaps hold dense doc
+// ids handed out as products are indexed, so product ids of any size fit and the bitmaps stay
+// compact whatever gaps the id sequence has. Until the index (or, for a search term, the search
+// index) is built, facets are counted with SQL instead.
+@ApplicationScoped
+public class ProductFacetIndex {
+
+    private static final Logger LOG = Logger.getLogger(ProductFacetIndex.class);
+
+    private static final int REBUILD_BATCH_SIZE = 5000;
+    private static final int MAX_TAG_FACETS = 20;
+
+    // Exclusive upper bounds of the price buckets, in cents
+    private static final long[] PRICE_BUCKET_BOUNDS = {2500, 5000, 10000, 25000, 50000};
+    private static final String[] PRICE_BUCKET_LABELS = {"0-25", "25-50", "50-100", "100-250", "250-500", "500+"};
+    private static final int[] RATING_BANDS = {4, 3, 2, 1};
+
+    @Inject
+    ProductRepository productRepository;
+
+    @Inject
+    ProductSearchIndex searchIndex;
+
+    @Inject
+    CategoryTree categoryTree;
+
+    // RoaringBitmap is not thread safe, so all access goes through the lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> docIds = new HashMap<>();
+    private long[] productIds = new long[1024];
+    private final Deque<Integer> freeDocIds = new ArrayDeque<>();
+    private int nextDocId;
+    private final RoaringBitmap all = new RoaringBitmap();
+    private final RoaringBitmap inStock = new RoaringBitmap();
+    private final Map<Long, RoaringBitmap> byCategory = new HashMap<>();
+    private final TreeMap<Long, RoaringBitmap> byPriceCents = new TreeMap<>();
+    private final RoaringBitmap[] priceBuckets = newBitmaps(PRICE_BUCKET_LABELS.length);
+    private final TreeMap<Double, RoaringBitmap> byRating = new TreeMap<>();
+    private final RoaringBitmap[] ratingFloors = newBitmaps(6);
+    private final Map<String, RoaringBitmap> byTag = new HashMap<>();
+    private final Map<Integer, FacetDoc> docs = new HashMap<>();
+
+    private volatile boolean ready;
+
+    void onStart(@Observes StartupEvent ev) {
+        try {
+            int indexed = VertxContextSupport.subscribeAndAwait(
+                () -> Panache.withSession(this::rebuild));
+            LOG.infof("Product facet index built with %d products", indexed);
+        } catch (Throwable e) {
+            LOG.error("Failed to build product facet index", e);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Uni<Integer> rebuild() {
+        ready = false;
+        lock.writeLock().lock();
+        try {
+            new ArrayList<>(docs.keySet()).forEach(docId -> removeDoc(docId, docs.remove(docId)));
+            docIds.clear();
+            freeDocIds.clear();
+            nextDocId = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return rebuildFrom(0L, 0)
+            .invoke(() -> ready = true);
+    }
+
+    private Uni<Integer> rebuildFrom(long afterId, int indexed) {
+        return productRepository.findFacetDocuments(afterId, REBUILD_BATCH_SIZE)
+            .chain(rows -> {
+                if (rows.isEmpty()) {
+                    return Uni.createFrom().item(indexed);
+                }
+
+                List<Long> ids = new ArrayList<>(rows.size());
+                for (Object[] row : rows) {
+                    Long id = (Long) row[0];
+                    ids.add(id);
+                    index(id, (Long) row[1], (BigDecimal) row[2], (Double) row[3], (Integer) row[4]);
+                }
+
+                long lastId = ids.get(ids.size() - 1);
+                return productRepository.findTagNames(ids)
+                    .chain(tagRows -> {
+                        Map<Long, List<String>> tagsByProduct = new HashMap<>();
+                        for (Object[] row : tagRows) {
+                            tagsByProduct.computeIfAbsent(((Number) row[0]).longValue(),
+                                k -> new ArrayList<>()).add((String) row[1]);
+                        }
+                        tagsByProduct.forEach(this::indexTags);
+                        return rebuildFrom(lastId, indexed + rows.size());
+                    });
+            });
+    }
+
+    public void index(Product product) {
+        index(product.getId(),
+            product.getCategory() != null ? product.getCategory().getId() : null,
+            product.getPrice(),
+            product.getAverageRating(),
+            product.getStockQuantity());
+    }
+
+    public void index(Long productId, Long categoryId, BigDecimal price, Double averageRating, Integer stockQuantity) {
+        lock.writeLock().lock();
+        try {
+            int docId = docIds.computeIfAbsent(productId, this::allocateDoc);
+            FacetDoc existing = docs.get(docId);
+            FacetDoc updated = new FacetDoc(categoryId, toCents(price, RoundingMode.HALF_UP),
+                averageRating, stockQuantity != null && stockQuantity > 0,
+                existing != null ? existing.tags() : Set.of());
+            replaceDoc(docId, existing, updated);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void indexTags(Long productId, Collection<String> tags) {
+        Set<String> normalized = tags == null ? Set.of() : tags.stream()
+            .map(tag -> tag.trim().toLowerCase(Locale.ROOT))
+            .filter(tag -> !tag.isEmpty())
+            .collect(Collectors.toSet());
+
+        lock.writeLock().lock();
+        try {
+            Integer docId = docIds.get(productId);
+            FacetDoc existing = docId != null ? docs.get(docId) : null;
+            if (existing != null) {
+                replaceDoc(docId, existing, new FacetDoc(existing.categoryId(), existing.priceCents(),
+                    existing.rating(), existing.inStock(), normalized));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            Integer docId = docIds.remove(productId);
+            if (docId == null) {
+                return;
+            }
+            FacetDoc existing = docs.remove(docId);
+            if (existing != null) {
+                removeDoc(docId, existing);
+            }
+            freeDocIds.push(docId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Sorted ids of the products carrying any (or all) of the given tags
+    public long[] productIdsWithTags(Collection<String> tags, boolean matchAll) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap matches = tagConstraint(tags, matchAll);
+            long[] ids = new long[matches.getCardinality()];
+            int i = 0;
+            for (int docId : matches) {
+                ids[i++] = productIds[docId];
+            }
+            Arrays.sort(ids);
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private RoaringBitmap tagConstraint(Collection<String> tags, boolean matchAll) {
+        List<RoaringBitmap> bitmaps = new ArrayList<>();
+        for (String tag : tags) {
+            RoaringBitmap bitmap = byTag.get(tag.trim().toLowerCase(Locale.ROOT));
+            if (bitmap == null) {
+                if (matchAll) {
+                    return new RoaringBitmap();
+                }
+            } else {
+                bitmaps.add(bitmap);
+            }
+        }
+        if (bitmaps.isEmpty()) {
+            return new RoaringBitmap();
+        }
+        return matchAll
+            ? FastAggregation.and(bitmaps.iterator())
+            : FastAggregation.or(bitmaps.iterator());
+    }
+
+    private RoaringBitmap categorySubtree(Long categoryId) {
+        List<RoaringBitmap> bitmaps = new ArrayList<>();
+        for (long id : categoryTree.subtree(categoryId)) {
+            RoaringBitmap bitmap = byCategory.get(id);
+            if (bitmap != null) {
+                bitmaps.add(bitmap);
+            }
+        }
+        return bitmaps.isEmpty() ? new RoaringBitmap() : FastAggregation.or(bitmaps.iterator());
+    }
+
+    // The candidates that also pass the category, price, rating, stock and tag filters, in the
+    // order given. Null when the index is not built yet.
+    public List<Long> retainMatching(Collection<Long> candidateIds, ProductFilterDTO filter) {
+        if (!ready) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            RoaringBitmap matches = intersect(categoryConstraint(filter),
+                priceRange(filter.getMinPrice(), filter.getMaxPrice()),
+                ratingConstraint(filter), stockConstraint(filter), tagConstraint(filter));
+            List<Long> retained = new ArrayList<>(Math.min(candidateIds.size(), matches.getCardinality()));
+            for (Long id : candidateIds) {
+                Integer docId = docIds.get(id);
+                if (docId != null && matches.contains(docId)) {
+                    retained.add(id);
+                }
+            }
+            return retained;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private RoaringBitmap categoryConstraint(ProductFilterDTO filter) {
+        return filter.getCategoryId() != null ? categorySubtree(filter.getCategoryId()) : null;
+    }
+
+    private RoaringBitmap ratingConstraint(ProductFilterDTO filter) {
+        return filter.getMinRating() != null
+            ? FastAggregation.or(byRating.tailMap(filter.getMinRating(), true).values().iterator())
+            : null;
+    }
+
+    private RoaringBitmap stockConstraint(ProductFilterDTO filter) {
+        return filter.getInStock() != null && filter.getInStock() ? inStock : null;
+    }
+
+    private RoaringBitmap tagConstraint(ProductFilterDTO filter) {
+        return filter.getTags() != null && !filter.getTags().isEmpty()
+            ? tagConstraint(filter.getTags(), "all".equalsIgnoreCase(filter.getTagMatch()))
+            : null;
+    }
+
+    // Each dimension is counted against every other active filter but not its own,
+    // so selecting a category still shows how many products the sibling categories hold
+    public Uni<ProductFacetsDTO> facets(ProductFilterDTO filter) {
+        boolean hasSearchTerm = filter.getSearchTerm() != null && !filter.getSearchTerm().isBlank();
+        if (!ready || (hasSearchTerm && !searchIndex.isReady())) {
+            return countWithQueries(filter);
+        }
+        Collection<Long> searchIds = hasSearchTerm ? searchIndex.search(filter.getSearchTerm()) : null;
+        return Uni.createFrom().item(() -> countInMemory(filter, searchIds));
+    }
+
+    private ProductFacetsDTO countInMemory(ProductFilterDTO filter, Collection<Long> searchIds) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap search = null;
+            if (searchIds != null) {
+                search = new RoaringBitmap();
+                for (Long id : searchIds) {
+                    Integer docId = docIds.get(id);
+                    if (docId != null) {
+                        search.add(docId);
+                    }
+                }
+            }
+            RoaringBitmap category = categoryConstraint(filter);
+            RoaringBitmap price = priceRange(filter.getMinPrice(), filter.getMaxPrice());
+            RoaringBitmap rating = ratingConstraint(filter);
+            RoaringBitmap stock = stockConstraint(filter);
+            RoaringBitmap tagged = tagConstraint(filter);
+
+            RoaringBitmap base = intersect(search, category, price, rating, stock, tagged);
+
+            ProductFacetsDTO facets = new ProductFacetsDTO();
+            facets.setTotal(base.getLongCardinality());
+
+            RoaringBitmap withoutCategory = intersect(search, price, rating, stock, tagged);
+            // A category counts the products of its whole subtree, matching what filtering on it returns
+            Map<Long, Long> categories = new LinkedHashMap<>();
+            byCategory.forEach((categoryId, bitmap) -> {
+                long count = RoaringBitmap.andCardinality(withoutCategory, bitmap);
+                if (count > 0) {
+                    for (long ancestorId : categoryTree.pathToRoot(categoryId)) {
+                        categories.merge(ancestorId, count, Long::sum);
+                    }
+                }
+            });
+            facets.setCategories(categories);
+
+            RoaringBitmap withoutPrice = intersect(search, category, rating, stock, tagged);
+            Map<String, Long> priceRanges = new LinkedHashMap<>();
+            for (int i = 0; i < priceBuckets.length; i++) {
+                priceRanges.put(PRICE_BUCKET_LABELS[i], (long) RoaringBitmap.andCardinality(withoutPrice, priceBuckets[i]));
+            }
+            facets.setPriceRanges(priceRanges);
+
+            RoaringBitmap withoutRating = intersect(search, category, price, stock, tagged);
+            Map<String, Long> ratings = new LinkedHashMap<>();
+            for (int band : RATING_BANDS) {
+                long count = 0;
+                for (int floor = band; floor < ratingFloors.length; floor++) {
+                    count += RoaringBitmap.andCardinality(withoutRating, ratingFloors[floor]);
+                }
+                ratings.put(band + "+", count);
+            }
+            facets.setRatings(ratings);
+
+            RoaringBitmap withoutStock = intersect(search, category, price, rating, tagged);
+            long available = RoaringBitmap.andCardinality(withoutStock, inStock);
+            facets.setInStock(available);
+            facets.setOutOfStock(withoutStock.getLongCardinality() - available);
+
+            RoaringBitmap withoutTags = intersect(search, category, price, rating, stock);
+            Map<String, Long> tags = byTag.entrySet().stream()
+                .map(entry -> Map.entry(entry.getKey(), (long) RoaringBitmap.andCardinality(withoutTags, entry.getValue())))
+                .filter(entry -> entry.getValue() > 0)
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(MAX_TAG_FACETS)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue,
+                    (a, b) -> a, LinkedHashMap::new));
+            facets.setTags(tags);
+
+            return facets;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The same counts with one query per dimension, each leaving out its own filter; a search
+    // term falls back to the SQL token match the listing uses without the search index
+    private Uni<ProductFacetsDTO> countWithQueries(ProductFilterDTO filter) {
+        ProductFacetsDTO facets = new ProductFacetsDTO();
+        ProductFilterDTO base = copyOf(filter);
+
+        ProductFilterDTO withoutCategory = copyOf(filter);
+        withoutCategory.setCategoryId(null);
+        withoutCategory.setCategoryIds(null);
+        ProductFilterDTO withoutPrice = copyOf(filter);
+        withoutPrice.setMinPrice(null);
+        withoutPrice.setMaxPrice(null);
+        ProductFilterDTO withoutRating = copyOf(filter);
+        withoutRating.setMinRating(null);
+        ProductFilterDTO withoutStock = copyOf(filter);
+        withoutStock.setInStock(null);
+        ProductFilterDTO withoutTags = copyOf(filter);
+        withoutTags.setTags(null);
+
+        return productRepository.countMatching(base, List.of("1 = 1"))
+            .invoke(counts -> facets.setTotal(counts.get(0)))
+            .chain(() -> productRepository.countByCategory(withoutCategory))
+            .invoke(counts -> {
+                Map<Long, Long> categories = new LinkedHashMap<>();
+                counts.forEach((categoryId, count) -> {
+                    for (long ancestorId : categoryTree.pathToRoot(categoryId)) {
+                        categories.merge(ancestorId, count, Long::sum);
+                    }
+                });
+                facets.setCategories(categories);
+            })
+            .chain(() -> productRepository.countMatching(withoutPrice, priceBucketConditions()))
+            .invoke(counts -> {
+                Map<String, Long> priceRanges = new LinkedHashMap<>();
+                for (int i = 0; i < PRICE_BUCKET_LABELS.length; i++) {
+                    priceRanges.put(PRICE_BUCKET_LABELS[i], counts.get(i));
+                }
+                facets.setPriceRanges(priceRanges);
+            })
+            .chain(() -> productRepository.countMatching(withoutRating, Arrays.stream(RATING_BANDS)
+                .mapToObj(band -> "averageRating >= " + band)
+                .collect(Collectors.toList())))
+            .invoke(counts -> {
+                Map<String, Long> ratings = new LinkedHashMap<>();
+                for (int i = 0; i < RATING_BANDS.length; i++) {
+                    ratings.put(RATING_BANDS[i] + "+", counts.get(i));
+                }
+                facets.setRatings(ratings);
+            })
+            .chain(() -> productRepository.countMatching(withoutStock, List.of("stockQuantity > 0", "1 = 1")))
+            .invoke(counts -> {
+                facets.setInStock(counts.get(0));
+                facets.setOutOfStock(counts.get(1) - counts.get(0));
+            })
+            .chain(() -> productRepository.countByTag(withoutTags, MAX_TAG_FACETS))
+            .map(rows -> {
+                Map<String, Long> tags = new LinkedHashMap<>();
+                for (Object[] row : rows) {
+                    tags.put((String) row[0], ((Number) row[1]).longValue());
+                }
+                facets.setTags(tags);
+                return facets;
+            });
+    }
+
+    private ProductFilterDTO copyOf(ProductFilterDTO filter) {
+        ProductFilterDTO copy = new ProductFilterDTO();
+        copy.setSearchTerm(filter.getSearchTerm() != null && !filter.getSearchTerm().isBlank()
+            ? filter.getSearchTerm() : null);
+        copy.setSearchTokens(copy.getSearchTerm() != null ? ProductSearchIndex.tokens(copy.getSearchTerm()) : null);
+        copy.setCategoryId(filter.getCategoryId());
+        copy.setCategoryIds(filter.getCategoryId() != null ? categoryTree.subtree(filter.getCategoryId()) : null);
+        copy.setMinPrice(filter.getMinPrice());
+        copy.setMaxPrice(filter.getMaxPrice());
+        copy.setMinRating(filter.getMinRating());
+        copy.setInStock(filter.getInStock());
+        copy.setTags(filter.getTags());
+        copy.setTagMatch(filter.getTagMatch());
+        return copy;
+    }
+
+    private static List<String> priceBucketConditions() {
+        List<String> conditions = new ArrayList<>();
+        for (int i = 0; i <= PRICE_BUCKET_BOUNDS.length; i++) {
+            List<String> bounds = new ArrayList<>();
+            if (i > 0) {
+                bounds.add("price >= " + BigDecimal.valueOf(PRICE_BUCKET_BOUNDS[i - 1], 2).toPlainString());
+            }
+            if (i < PRICE_BUCKET_BOUNDS.length) {
+                bounds.add("price < " + BigDecimal.valueOf(PRICE_BUCKET_BOUNDS[i], 2).toPlainString());
+            }
+            conditions.add(String.join(" and ", bounds));
+        }
+        return conditions;
+    }
+
+    private int allocateDoc(Long productId) {
+        int docId;
+        if (!freeDocIds.isEmpty()) {
+            docId = freeDocIds.pop();
+        } else {
+            docId = nextDocId++;
+            if (docId == productIds.length) {
+                productIds = Arrays.copyOf(productIds, productIds.length * 2);
+            }
+        }
+        productIds[docId] = productId;
+        return docId;
+    }
+
+    // Null constraints are skipped; no constraints at all means the whole catalog
+    private RoaringBitmap intersect(RoaringBitmap... constraints) {
+        RoaringBitmap result = all.clone();
+        for (RoaringBitmap constraint : constraints) {
+            if (constraint != null) {
+                result.and(constraint);
+            }
+        }
+        return result;
+    }
+
+    private RoaringBitmap priceRange(BigDecimal minPrice, BigDecimal maxPrice) {
+        if (minPrice == null && maxPrice == null) {
+            return null;
+        }
+        long from = minPrice != null ? toCents(minPrice, RoundingMode.CEILING) : Long.MIN_VALUE;
+        long to = maxPrice != null ? toCents(maxPrice, RoundingMode.FLOOR) : Long.MAX_VALUE;
+        if (from > to) {
+            return new RoaringBitmap();
+        }
+        return FastAggregation.or(byPriceCents.subMap(from, true, to, true).values().iterator());
+    }
+
+    private void replaceDoc(int docId, FacetDoc before, FacetDoc after) {
+        if (before != null) {
+            removeDoc(docId, before);
+        }
+        docs.put(docId, after);
+        all.add(docId);
+        if (after.inStock()) {
+            inStock.add(docId);
+        }
+        if (after.categoryId() != null) {
+            byCategory.computeIfAbsent(after.categoryId(), k -> new RoaringBitmap()).add(docId);
+        }
+        byPriceCents.computeIfAbsent(after.priceCents(), k -> new RoaringBitmap()).add(docId);
+        priceBuckets[priceBucket(after.priceCents())].add(docId);
+        if (after.rating() != null) {
+            byRating.computeIfAbsent(after.rating(), k -> new RoaringBitmap()).add(docId);
+            ratingFloors[ratingFloor(after.rating())].add(docId);
+        }
+        after.tags().forEach(tag -> byTag.computeIfAbsent(tag, k -> new RoaringBitmap()).add(docId));
+    }
+
+    private void removeDoc(int docId, FacetDoc doc) {
+        all.remove(docId);
+        inStock.remove(docId);
+        removeFrom(byCategory, doc.categoryId(), docId);
+        removeFrom(byPriceCents, doc.priceCents(), docId);
+        priceBuckets[priceBucket(doc.priceCents())].remove(docId);
+        if (doc.rating() != null) {
+            removeFrom(byRating, doc.rating(), docId);
+            ratingFloors[ratingFloor(doc.rating())].remove(docId);
+        }
+        doc.tags().forEach(tag -> removeFrom(byTag, tag, docId));
+    }
+
+    private static <K> void removeFrom(Map<K, RoaringBitmap> bitmaps, K key, int docId) {
+        if (key == null) {
+            return;
+        }
+        RoaringBitmap bitmap = bitmaps.get(key);
+        if (bitmap != null) {
+            bitmap.remove(docId);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove(key);
+            }
+        }
+    }
+
+    private static int priceBucket(long priceCents) {
+        for (int i = 0; i < PRICE_BUCKET_BOUNDS.length; i++) {
+            if (priceCents < PRICE_BUCKET_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return PRICE_BUCKET_BOUNDS.length;
+    }
+
+    private static int ratingFloor(double rating) {
+        return (int) Math.max(0, Math.min(5, Math.floor(rating)));
+    }
+
+    private static long toCents(BigDecimal amount, RoundingMode rounding) {
+        if (amount == null) {
+            return 0;
+        }
+        return amount.movePointRight(2).setScale(0, rounding).longValue();
+    }
+
+    private static RoaringBitmap[] newBitmaps(int count) {
+        RoaringBitmap[] bitmaps = new RoaringBitmap[count];
+        for (int i = 0; i < count; i++) {
+            bitmaps[i] = new RoaringBitmap();
+        }
+        return bitmaps;
+    }
+
+    private record FacetDoc(Long categoryId, long priceCents, Double rating, boolean inStock, Set<String> tags) {
+    }
+}
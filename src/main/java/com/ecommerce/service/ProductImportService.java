@@ -0,0 +1,526 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.dto.ImportJobDTO;
+import com.ecommerce.domain.dto.ProductDTO;
+import com.ecommerce.exception.InvalidRequestException;
+import com.ecommerce.exception.ResourceNotFoundException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.scheduler.Scheduled;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.RowSet;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+// Imports products from an uploaded NDJSON or CSV file. The upload is spooled to disk and
+// processed by a single background worker, which inserts valid rows in pipelined batches.
+// Job state lives in product_import_jobs, so any replica can answer a status poll. A job is
+// QUEUED until the worker reaches it; the spooled file is local, so a job whose replica dies
+// is failed rather than resumed.
+@ApplicationScoped
+public class ProductImportService {
+    
+    private static final Logger LOG = Logger.getLogger(ProductImportService.class);
+    
+    private static final int BATCH_SIZE = 1000;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final TypeReference<List<ImportJobDTO.RowError>> ROW_ERRORS = new TypeReference<>() { };
+    
+    private static final String INSERT_PRODUCT =
+        "INSERT INTO products (name, description, price, stock_quantity, category_id, active, " +
+        "version, created_at, updated_at) VALUES ($1, $2, $3, $4, $5, $6, 0, now(), now())";
+    private static final String INSERT_JOB =
+        "INSERT INTO product_import_jobs (id, format, status) VALUES ($1, $2, 'QUEUED')";
+    private static final String SELECT_JOB =
+        "SELECT id, format, status, rows_read, rows_imported, rows_failed, errors::text AS errors, failure, " +
+        "started_at, finished_at, EXTRACT(EPOCH FROM COALESCE(finished_at, now()) - started_at) AS seconds " +
+        "FROM product_import_jobs WHERE id = $1";
+    private static final String START_JOB =
+        "UPDATE product_import_jobs SET status = 'RUNNING', started_at = now(), heartbeat_at = now() WHERE id = $1";
+    private static final String COUNT_IMPORTED =
+        "UPDATE product_import_jobs SET rows_imported = rows_imported + $2, heartbeat_at = now() WHERE id = $1";
+    private static final String UPDATE_PROGRESS =
+        "UPDATE product_import_jobs SET rows_read = $2, rows_failed = $3, errors = $4::jsonb, heartbeat_at = now() " +
+        "WHERE id = $1";
+    private static final String FINISH_JOB =
+        "UPDATE product_import_jobs SET rows_read = $2, rows_failed = $3, errors = $4::jsonb, status = $5, " +
+        "failure = $6, finished_at = now() WHERE id = $1";
+    private static final String FAIL_ABANDONED =
+        "UPDATE product_import_jobs SET status = 'FAILED', failure = 'Import was interrupted', finished_at = now() " +
+        "WHERE status IN ('QUEUED', 'RUNNING') AND heartbeat_at < now() - make_interval(secs => $1) " +
+        "RETURNING id, rows_imported";
+    private static final String DELETE_EXPIRED =
+        "DELETE FROM product_import_jobs WHERE finished_at < now() - make_interval(secs => $1)";
+    
+    // Several missed heartbeats before another replica gives a job up
+    @ConfigProperty(name = "products.import.abandoned-after", defaultValue = "PT5M")
+    Duration abandonedAfter;
+    
+    @ConfigProperty(name = "products.import.retention", defaultValue = "P30D")
+    Duration retention;
+    
+    @Inject
+    PgPool pool;
+    
+    @Inject
+    Validator validator;
+    
+    @Inject
+    ObjectMapper objectMapper;
+    
+    // Jobs queued or running on this replica; everything else is read from the table
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+    
+    // One import at a time keeps a large onboarding from starving the request path of connections
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "product-import");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    @PreDestroy
+    void shutdown() {
+        worker.shutdownNow();
+    }
+    
+    public ImportJobDTO startImport(InputStream body, String contentType) {
+        Format format = Format.fromContentType(contentType);
+        Path file;
+        try {
+            file = Files.createTempFile("product-import-", format.extension);
+            Files.copy(body, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to receive import file", e);
+        }
+        
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), format);
+        pool.preparedQuery(INSERT_JOB)
+            .execute(Tuple.of(job.id, format.name()))
+            .await().indefinitely();
+        jobs.put(job.id, job);
+        worker.submit(() -> run(job, file));
+        return getJob(job.id);
+    }
+    
+    public ImportJobDTO getJob(String jobId) {
+        RowSet<Row> rows = pool.preparedQuery(SELECT_JOB)
+            .execute(Tuple.of(jobId))
+            .await().indefinitely();
+        if (rows.size() == 0) {
+            throw new ResourceNotFoundException("Import job not found");
+        }
+        return toDTO(rows.iterator().next());
+    }
+    
+    // Keeps this replica's jobs alive and publishes their progress between batches
+    @Scheduled(every = "${products.import.heartbeat-interval:30s}", delayed = "10s")
+    void heartbeat() {
+        if (jobs.isEmpty()) {
+            return;
+        }
+        for (ImportJob job : jobs.values()) {
+            try {
+                pool.preparedQuery(UPDATE_PROGRESS)
+                    .execute(job.progress(errorsJson(job)))
+                    .await().indefinitely();
+            } catch (RuntimeException e) {
+                LOG.warnf(e, "Could not record progress of product import %s", job.id);
+            }
+        }
+    }
+    
+    // A replica that died mid-import leaves its job behind with a stale heartbeat. The spooled
+    // file died with it, so the job is failed; rows it already committed were never announced.
+    @Scheduled(every = "${products.import.recovery-interval:1m}", delayed = "1m")
+    void recoverAbandoned() {
+        try {
+            RowSet<Row> abandoned = pool.preparedQuery(FAIL_ABANDONED)
+                .execute(Tuple.of((double) abandonedAfter.toSeconds()))
+                .await().indefinitely();
+            boolean imported = false;
+            for (Row row : abandoned) {
+                LOG.warnf("Product import %s was abandoned by its replica after %d rows",
+                    row.getString("id"), row.getLong("rows_imported"));
+                imported |= row.getLong("rows_imported") > 0;
+            }
+            if (imported) {
+                announceBulkChange();
+            }
+            pool.preparedQuery(DELETE_EXPIRED)
+                .execute(Tuple.of((double) retention.toSeconds()))
+                .await().indefinitely();
+        } catch (RuntimeException e) {
+            LOG.warn("Could not check for abandoned product imports", e);
+        }
+    }
+    
+    private void run(ImportJob job, Path file) {
+        String failure = null;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            pool.preparedQuery(START_JOB).execute(Tuple.of(job.id)).await().indefinitely();
+            List<ImportRow> batch = new ArrayList<>(BATCH_SIZE);
+            if (job.format == Format.CSV) {
+                readCsv(reader, job, batch);
+            } else {
+                readNdjson(reader, job, batch);
+            }
+            flush(job, batch);
+        } catch (Exception e) {
+            LOG.errorf(e, "Product import %s failed", job.id);
+            failure = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        } finally {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                LOG.warnf("Could not delete import file %s", file);
+            }
+        }
+        
+        if (job.rowsImported.get() > 0) {
+            announceBulkChange();
+        }
+        finish(job, failure);
+        LOG.infof("Product import %s finished: %d imported, %d rejected",
+            job.id, job.rowsImported.get(), job.rowsFailed.get());
+    }
+    
+    // If the result cannot be written the heartbeat stops and the job is later failed as abandoned
+    private void finish(ImportJob job, String failure) {
+        jobs.remove(job.id);
+        try {
+            pool.preparedQuery(FINISH_JOB)
+                .execute(job.progress(errorsJson(job))
+                    .addValue(failure == null ? "COMPLETED" : "FAILED")
+                    .addValue(failure))
+                .await().indefinitely();
+        } catch (RuntimeException e) {
+            LOG.errorf(e, "Could not record the result of product import %s", job.id);
+        }
+    }
+    
+    private void readNdjson(BufferedReader reader, ImportJob job, List<ImportRow> batch) throws IOException {
+        String text;
+        long line = 0;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (text.isBlank()) {
+                continue;
+            }
+            String json = text;
+            accept(job, batch, line, () -> {
+                try {
+                    return objectMapper.readValue(json, ProductDTO.class);
+                } catch (JsonProcessingException e) {
+                    throw new IllegalArgumentException(e.getOriginalMessage());
+                }
+            });
+        }
+    }
+    
+    private void readCsv(BufferedReader reader, ImportJob job, List<ImportRow> batch) throws IOException {
+        CsvReader csv = new CsvReader(reader);
+        List<String> header = csv.next();
+        if (header == null) {
+            return;
+        }
+        
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(normalizeColumn(header.get(i)), i);
+        }
+        if (!columns.containsKey("name") || !columns.containsKey("price") || !columns.containsKey("stockquantity")) {
+            throw new IllegalArgumentException("CSV header must contain name, price and stock_quantity");
+        }
+        
+        List<String> record;
+        while ((record = csv.next()) != null) {
+            List<String> fields = record;
+            accept(job, batch, csv.recordLine, () -> fromCsv(fields, columns));
+        }
+    }
+    
+    private void accept(ImportJob job, List<ImportRow> batch, long line, Supplier<ProductDTO> parser) {
+        job.rowsRead.incrementAndGet();
+        
+        ProductDTO product;
+        try {
+            product = parser.get();
+        } catch (RuntimeException e) {
+            job.reject(line, "Unreadable row: " + e.getMessage());
+            return;
+        }
+        
+        // Same constraints as POST /api/products
+        Set<ConstraintViolation<ProductDTO>> violations = validator.validate(product);
+        if (!violations.isEmpty()) {
+            job.reject(line, violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining("; ")));
+            return;
+        }
+        
+        batch.add(new ImportRow(line, product));
+        if (batch.size() >= BATCH_SIZE) {
+            flush(job, batch);
+        }
+    }
+    
+    private void flush(ImportJob job, List<ImportRow> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            insert(job, batch.stream().map(row -> toTuple(row.product())).collect(Collectors.toList()));
+            job.rowsImported.addAndGet(batch.size());
+        } catch (RuntimeException batchFailure) {
+            // One bad row (an unknown category id, say) fails its whole batch; retry row by row to find it
+            for (ImportRow row : batch) {
+                try {
+                    insert(job, List.of(toTuple(row.product())));
+                    job.rowsImported.incrementAndGet();
+                } catch (RuntimeException e) {
+                    job.reject(row.line(), e.getMessage());
+                }
+            }
+        }
+        batch.clear();
+    }
+    
+    // The batch is pipelined in one round trip; the per-row change notification is switched
+    // off for the transaction and replaced by one BULK notification at the end. The job's
+    // imported count commits with the rows, so recovery knows whether anything landed.
+    private void insert(ImportJob job, List<Tuple> rows) {
+        pool.withTransaction(connection -> connection.query("SET LOCAL ecommerce.bulk_import = 'on'").execute()
+                .chain(() -> connection.preparedQuery(INSERT_PRODUCT).executeBatch(rows))
+                .chain(() -> connection.preparedQuery(COUNT_IMPORTED).execute(Tuple.of(job.id, rows.size()))))
+            .await().indefinitely();
+    }
+    
+    private void announceBulkChange() {
+        try {
+            // Imports only insert new products, so no existing price changed
+            pool.preparedQuery("SELECT pg_notify('product_changes', json_build_object('op', 'BULK', " +
+                    "'at', $1::bigint, 'prices', false, 'revision', nextval('catalog_revision'))::text)")
+                .execute(Tuple.of(System.currentTimeMillis()))
+                .await().indefinitely();
+        } catch (RuntimeException e) {
+            LOG.error("Failed to announce imported products", e);
+        }
+    }
+    
+    private static Tuple toTuple(ProductDTO product) {
+        return Tuple.tuple()
+            .addValue(product.getName())
+            .addValue(product.getDescription())
+            .addValue(product.getPrice())
+            .addValue(product.getStockQuantity())
+            .addValue(product.getCategoryId())
+            .addValue(product.getActive() != null ? product.getActive() : true);
+    }
+    
+    private static ProductDTO fromCsv(List<String> fields, Map<String, Integer> columns) {
+        ProductDTO product = new ProductDTO();
+        product.setName(field(fields, columns, "name"));
+        product.setDescription(field(fields, columns, "description"));
+        
+        String price = field(fields, columns, "price");
+        product.setPrice(price != null ? new BigDecimal(price) : null);
+        String stock = field(fields, columns, "stockquantity");
+        product.setStockQuantity(stock != null ? Integer.valueOf(stock) : null);
+        String category = field(fields, columns, "categoryid");
+        product.setCategoryId(category != null ? Long.valueOf(category) : null);
+        String active = field(fields, columns, "active");
+        product.setActive(active != null ? Boolean.valueOf(active) : null);
+        return product;
+    }
+    
+    private static String field(List<String> fields, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+    
+    // stock_quantity, stockQuantity and "Stock Quantity" all name the same column
+    private static String normalizeColumn(String name) {
+        return name.trim().toLowerCase(Locale.ROOT).replace("_", "").replace(" ", "");
+    }
+    
+    private record ImportRow(long line, ProductDTO product) {
+    }
+    
+    private enum Format {
+        NDJSON(".ndjson"),
+        CSV(".csv");
+        
+        private final String extension;
+        
+        Format(String extension) {
+            this.extension = extension;
+        }
+        
+        static Format fromContentType(String contentType) {
+            if (contentType != null) {
+                String type = contentType.toLowerCase(Locale.ROOT);
+                if (type.startsWith("text/csv")) {
+                    return CSV;
+                }
+                if (type.startsWith("application/x-ndjson")) {
+                    return NDJSON;
+                }
+            }
+            throw new InvalidRequestException("Import body must be application/x-ndjson or text/csv");
+        }
+    }
+    
+    // RFC 4180 records; quoted fields may contain separators, escaped quotes and line breaks
+    private static class CsvReader {
+        private final BufferedReader reader;
+        private long line;
+        private long recordLine;
+        
+        CsvReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+        
+        List<String> next() throws IOException {
+            String text = reader.readLine();
+            line++;
+            while (text != null && text.isEmpty()) {
+                text = reader.readLine();
+                line++;
+            }
+            if (text == null) {
+                return null;
+            }
+            recordLine = line;
+            
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            int i = 0;
+            while (true) {
+                if (i == text.length()) {
+                    if (!quoted) {
+                        break;
+                    }
+                    text = reader.readLine();
+                    line++;
+                    if (text == null) {
+                        throw new IllegalArgumentException("Unterminated quoted field on line " + recordLine);
+                    }
+                    field.append('\n');
+                    i = 0;
+                    continue;
+                }
+                
+                char c = text.charAt(i++);
+                if (quoted) {
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i < text.length() && text.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+    
+    private String errorsJson(ImportJob job) {
+        try {
+            synchronized (job.errors) {
+                return objectMapper.writeValueAsString(job.errors);
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private ImportJobDTO toDTO(Row row) {
+        ImportJobDTO dto = new ImportJobDTO();
+        dto.setId(row.getString("id"));
+        dto.setFormat(row.getString("format"));
+        dto.setStatus(row.getString("status"));
+        dto.setRowsRead(row.getLong("rows_read"));
+        dto.setRowsImported(row.getLong("rows_imported"));
+        dto.setRowsFailed(row.getLong("rows_failed"));
+        BigDecimal seconds = row.getBigDecimal("seconds");
+        dto.setRowsPerSecond(seconds == null ? 0
+            : Math.round(row.getLong("rows_imported") / Math.max(seconds.doubleValue(), 1e-9)));
+        dto.setStartedAt(row.getLocalDateTime("started_at"));
+        dto.setFinishedAt(row.getLocalDateTime("finished_at"));
+        dto.setFailure(row.getString("failure"));
+        try {
+            dto.setErrors(objectMapper.readValue(row.getString("errors"), ROW_ERRORS));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        return dto;
+    }
+    
+    // Counters as the worker sees them; rows_imported is only ever advanced with the rows themselves
+    private static class ImportJob {
+        private final String id;
+        private final Format format;
+        private final AtomicLong rowsRead = new AtomicLong();
+        private final AtomicLong rowsImported = new AtomicLong();
+        private final AtomicLong rowsFailed = new AtomicLong();
+        private final List<ImportJobDTO.RowError> errors = Collections.synchronizedList(new ArrayList<>());
+        
+        ImportJob(String id, Format format) {
+            this.id = id;
+            this.format = format;
+        }
+        
+        void reject(long line, String message) {
+            rowsFailed.incrementAndGet();
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ImportJobDTO.RowError(line, message));
+            }
+        }
+        
+        Tuple progress(String errorsJson) {
+            return Tuple.of(id, rowsRead.get(), rowsFailed.get(), errorsJson);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.repository.ProductRepository;
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.vertx.VertxContextSupport;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.regex.Pattern;
+
+@ApplicationScoped
+public class ProductSearchIndex {
+
+    private static final Logger LOG = Logger.getLogger(ProductSearchIndex.class);
+
+    private static final int REBUILD_BATCH_SIZE = 5000;
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // BM25 parameters, with name and tag matches weighted above the description (BM25F style)
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double NAME_WEIGHT = 3.0;
+    private static final double TAG_WEIGHT = 2.0;
+    private static final double DESCRIPTION_WEIGHT = 1.0;
+    // A token that only matches as the prefix of a longer term counts for less than an exact hit
+    private static final double PREFIX_MATCH_WEIGHT = 0.7;
+
+    @ConfigProperty(name = "search.ranking.rating-weight", defaultValue = "0.2")
+    double ratingWeight;
+
+    @ConfigProperty(name = "search.ranking.sales-weight", defaultValue = "0.3")
+    double salesWeight;
+
+    @ConfigProperty(name = "search.ranking.favorites-weight", defaultValue = "0.1")
+    double favoritesWeight;
+
+    @Inject
+    ProductRepository productRepository;
+
+    // term -> ids of the products containing it, sorted so prefixes are a range scan
+    private final ConcurrentSkipListMap<String, Set<Long>> postings = new ConcurrentSkipListMap<>();
+
+    private final Map<Long, Document> documents = new ConcurrentHashMap<>();
+
+    // Popularity signals blended into relevance; kept apart so text updates do not reset them
+    private final Map<Long, Signals> signals = new ConcurrentHashMap<>();
+
+    private final DoubleAdder totalLength = new DoubleAdder();
+
+    private volatile boolean ready;
+
+    void onStart(@Observes StartupEvent ev) {
+        try {
+            int indexed = VertxContextSupport.subscribeAndAwait(
+                () -> Panache.withSession(this::rebuild));
+            LOG.infof("Product search index built with %d products", indexed);
+        } catch (Throwable e) {
+            LOG.error("Failed to build product search index, falling back to database search", e);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Uni<Integer> rebuild() {
+        ready = false;
+        postings.clear();
+        documents.clear();
+        signals.clear();
+        totalLength.reset();
+        return rebuildFrom(0L, 0)
+            .invoke(() -> ready = true);
+    }
+
+    private Uni<Integer> rebuildFrom(long afterId, int indexed) {
+        return productRepository.findSearchDocuments(afterId, REBUILD_BATCH_SIZE)
+            .chain(rows -> {
+                if (rows.isEmpty()) {
+                    return Uni.createFrom().item(indexed);
+                }
+
+                List<Long> ids = new ArrayList<>(rows.size());
+                for (Object[] row : rows) {
+                    Long id = ((Number) row[0]).longValue();
+                    ids.add(id);
+                    index(id, (String) row[1], (String) row[2]);
+                    signals.put(id, new Signals(
+                        row[3] != null ? ((Number) row[3]).doubleValue() : 0,
+                        ((Number) row[4]).longValue(),
+                        ((Number) row[5]).longValue()));
+                }
+
+                long lastId = ids.get(ids.size() - 1);
+                return productRepository.findTagNames(ids)
+                    .chain(tagRows -> {
+                        Map<Long, List<String>> tagsByProduct = new HashMap<>();
+                        for (Object[] row : tagRows) {
+                            tagsByProduct.computeIfAbsent(((Number) row[0]).longValue(),
+                                k -> new ArrayList<>()).add((String) row[1]);
+                        }
+                        tagsByProduct.forEach(this::indexTags);
+                        return rebuildFrom(lastId, indexed + rows.size());
+                    });
+            });
+    }
+
+    public void index(Long productId, String name, String description) {
+        Map<String, Integer> nameTerms = termFrequencies(name);
+        Map<String, Integer> descriptionTerms = termFrequencies(description);
+
+        documents.compute(productId, (id, existing) -> {
+            Document updated = new Document(nameTerms, descriptionTerms,
+                existing != null ? existing.tagTerms : Set.of());
+            applyDiff(id, existing, updated);
+            return updated;
+        });
+    }
+
+    public void indexTags(Long productId, Collection<String> tags) {
+        Set<String> tagTerms = new HashSet<>();
+        if (tags != null) {
+            tags.forEach(tag -> tokenize(tag, tagTerms));
+        }
+
+        documents.compute(productId, (id, existing) -> {
+            Document updated = existing != null
+                ? new Document(existing.nameTerms, existing.descriptionTerms, tagTerms)
+                : new Document(Map.of(), Map.of(), tagTerms);
+            applyDiff(id, existing, updated);
+            return updated;
+        });
+    }
+
+    public void remove(Long productId) {
+        documents.computeIfPresent(productId, (id, existing) -> {
+            applyDiff(id, existing, null);
+            return null;
+        });
+        signals.remove(productId);
+    }
+
+    // Sales and favorites arrive from ProductChangeListener, for changes made on any replica
+    public void updateRating(Long productId, Double averageRating) {
+        double rating = averageRating != null ? averageRating : 0;
+        signals.compute(productId, (id, existing) -> existing != null
+            ? new Signals(rating, existing.sales, existing.favorites)
+            : new Signals(rating, 0, 0));
+    }
+
+    public void addSales(Long productId, long quantity) {
+        signals.computeIfPresent(productId, (id, existing) ->
+            new Signals(existing.rating, Math.max(0, existing.sales + quantity), existing.favorites));
+    }
+
+    public void addFavorites(Long productId, long delta) {
+        signals.computeIfPresent(productId, (id, existing) ->
+            new Signals(existing.rating, existing.sales, Math.max(0, existing.favorites + delta)));
+    }
+
+    // Every query token must match; a token matches any indexed term it is a prefix of
+    public Set<Long> search(String query) {
+        Set<String> tokens = new LinkedHashSet<>();
+        tokenize(query, tokens);
+        if (tokens.isEmpty()) {
+            return Set.of();
+        }
+
+        List<Set<Long>> matchesPerToken = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            Set<Long> matches = new HashSet<>();
+            postings.subMap(token, true, token + Character.MAX_VALUE, true)
+                .values()
+                .forEach(matches::addAll);
+            if (matches.isEmpty()) {
+                return Set.of();
+            }
+            matchesPerToken.add(matches);
+        }
+
+        matchesPerToken.sort(Comparator.comparingInt(Set::size));
+        Set<Long> result = matchesPerToken.get(0);
+        for (int i = 1; i < matchesPerToken.size() && !result.isEmpty(); i++) {
+            result.retainAll(matchesPerToken.get(i));
+        }
+        return result;
+    }
+
+    // Orders the candidates by BM25 over name, description and tags, multiplied by a popularity
+    // boost from rating, sales and favorites. Everything is in memory; no query is issued.
+    public List<Long> rank(String query, Collection<Long> candidates) {
+        Set<String> tokens = new LinkedHashSet<>();
+        tokenize(query, tokens);
+        int documentCount = Math.max(documents.size(), 1);
+        double averageLength = Math.max(totalLength.sum() / documentCount, 1);
+
+        // Sales and favorites are normalized against the best seller among the candidates
+        long maxSales = 0;
+        long maxFavorites = 0;
+        for (Long id : candidates) {
+            Signals popularity = signals.get(id);
+            if (popularity != null) {
+                maxSales = Math.max(maxSales, popularity.sales);
+                maxFavorites = Math.max(maxFavorites, popularity.favorites);
+            }
+        }
+
+        Map<String, Double> idfCache = new HashMap<>();
+        Map<Long, Double> scores = new HashMap<>(candidates.size() * 2);
+        for (Long id : candidates) {
+            Document document = documents.get(id);
+            double relevance = 0;
+            if (document != null) {
+                double lengthNorm = K1 * (1 - B + B * document.length() / averageLength);
+                for (String token : tokens) {
+                    relevance += tokenScore(document, token, lengthNorm, documentCount, idfCache);
+                }
+            }
+            scores.put(id, relevance * (1 + popularityBoost(signals.get(id), maxSales, maxFavorites)));
+        }
+
+        List<Long> ranked = new ArrayList<>(candidates);
+        ranked.sort((a, b) -> {
+            int byScore = Double.compare(scores.get(b), scores.get(a));
+            return byScore != 0 ? byScore : Long.compare(a, b);
+        });
+        return ranked;
+    }
+
+    // Best scoring term of the document the token matches, exactly or as a prefix
+    private double tokenScore(Document document, String token, double lengthNorm,
+            int documentCount, Map<String, Double> idfCache) {
+        double best = 0;
+        // A term present in several fields scores the same each time, so duplicates are harmless
+        for (Collection<String> field : List.of(document.nameTerms.keySet(),
+                document.descriptionTerms.keySet(), document.tagTerms)) {
+            for (String term : field) {
+                if (term.startsWith(token)) {
+                    best = Math.max(best, termScore(document, term, token, lengthNorm, documentCount, idfCache));
+                }
+            }
+        }
+        return best;
+    }
+
+    private double termScore(Document document, String term, String token, double lengthNorm,
+            int documentCount, Map<String, Double> idfCache) {
+        double frequency = NAME_WEIGHT * document.nameTerms.getOrDefault(term, 0)
+            + DESCRIPTION_WEIGHT * document.descriptionTerms.getOrDefault(term, 0)
+            + (document.tagTerms.contains(term) ? TAG_WEIGHT : 0);
+        double idf = idfCache.computeIfAbsent(term, t -> {
+            Set<Long> ids = postings.get(t);
+            int df = ids != null ? ids.size() : 0;
+            return Math.log(1 + (documentCount - df + 0.5) / (df + 0.5));
+        });
+        double score = idf * frequency * (K1 + 1) / (frequency + lengthNorm);
+        return term.equals(token) ? score : score * PREFIX_MATCH_WEIGHT;
+    }
+
+    private double popularityBoost(Signals popularity, long maxSales, long maxFavorites) {
+        if (popularity == null) {
+            return 0;
+        }
+        double boost = ratingWeight * Math.min(popularity.rating, 5) / 5;
+        if (maxSales > 0) {
+            boost += salesWeight * Math.log1p(popularity.sales) / Math.log1p(maxSales);
+        }
+        if (maxFavorites > 0) {
+            boost += favoritesWeight * Math.log1p(popularity.favorites) / Math.log1p(maxFavorites);
+        }
+        return boost;
+    }
+
+    private void applyDiff(Long productId, Document before, Document after) {
+        totalLength.add((after != null ? after.length() : 0) - (before != null ? before.length() : 0));
+        Set<String> oldTerms = before != null ? before.terms() : Set.of();
+        Set<String> newTerms = after != null ? after.terms() : Set.of();
+
+        for (String term : oldTerms) {
+            if (!newTerms.contains(term)) {
+                postings.computeIfPresent(term, (t, ids) -> {
+                    ids.remove(productId);
+                    return ids.isEmpty() ? null : ids;
+                });
+            }
+        }
+        for (String term : newTerms) {
+            if (!oldTerms.contains(term)) {
+                postings.computeIfAbsent(term, t -> ConcurrentHashMap.newKeySet())
+                    .add(productId);
+            }
+        }
+    }
+
+    public static List<String> tokens(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        tokenize(text, tokens);
+        return List.copyOf(tokens);
+    }
+
+    static void tokenize(String text, Set<String> into) {
+        if (text == null || text.isBlank()) {
+            return;
+        }
+        for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                into.add(token);
+            }
+        }
+    }
+
+    private static Map<String, Integer> termFrequencies(String text) {
+        if (text == null || text.isBlank()) {
+            return Map.of();
+        }
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                frequencies.merge(token, 1, Integer::sum);
+            }
+        }
+        return frequencies;
+    }
+
+    private record Document(Map<String, Integer> nameTerms, Map<String, Integer> descriptionTerms,
+            Set<String> tagTerms) {
+        Set<String> terms() {
+            Set<String> all = new HashSet<>(nameTerms.keySet());
+            all.addAll(descriptionTerms.keySet());
+            all.addAll(tagTerms);
+            return all;
+        }
+
+        // Field-weighted length, matching the weights applied to term frequencies
+        double length() {
+            double length = TAG_WEIGHT * tagTerms.size();
+            for (int count : nameTerms.values()) {
+                length += NAME_WEIGHT * count;
+            }
+            for (int count : descriptionTerms.values()) {
+                length += DESCRIPTION_WEIGHT * count;
+            }
+            return length;
+        }
+    }
+
+    private record Signals(double rating, long sales, long favorites) {
+    }
+}
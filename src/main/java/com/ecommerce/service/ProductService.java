@@ -1,18 +1,38 @@
 package com.ecommerce.service;
 
 import com.ecommerce.domain.dto.PageDTO;
+import com.ecommerce.domain.dto.ProductCursor;
 import com.ecommerce.domain.dto.ProductDTO;
+import com.ecommerce.domain.dto.ProductDetailDTO;
+import com.ecommerce.domain.dto.ProductFacetsDTO;
 import com.ecommerce.domain.dto.ProductFilterDTO;
+import com.ecommerce.domain.dto.ProductSummaryDTO;
+import com.ecommerce.domain.dto.SuggestionDTO;
 import com.ecommerce.domain.model.Product;
 import com.ecommerce.domain.model.ProductImage;
+import com.ecommerce.domain.model.Tag;
+import com.ecommerce.domain.repository.CategoryRepository;
 import com.ecommerce.domain.repository.ProductRepository;
+import com.ecommerce.domain.repository.TagRepository;
 import com.ecommerce.exception.ResourceNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
+import org.hibernate.reactive.mutiny.Mutiny;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @ApplicationScoped
 public class ProductService {
@@ -20,10 +40,309 @@ public class ProductService {
     @Inject
     ProductRepository productRepository;
     
+    @Inject
+    CategoryRepository categoryRepository;
+    
+    @Inject
+    TagRepository tagRepository;
+    
     @Inject
     ImageStorageService imageStorageService;
     
-    // Previous methods remain unchanged
+    @Inject
+    ProductSearchIndex searchIndex;
+    
+    @Inject
+    ProductFacetIndex facetIndex;
+    
+    @Inject
+    ProductAutocompleteIndex autocompleteIndex;
+    
+    @Inject
+    CategoryTree categoryTree;
+    
+    @Inject
+    ProductCache productCache;
+    
+    @Inject
+    MeterRegistry registry;
+    
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    
+    // Larger match sets are left to the SQL token match rather than sent as an IN list
+    private static final int MAX_INDEXED_IDS_IN_QUERY = 5000;
+    
+    // Scoring cost grows with the match count; past this a broad query is left in id order
+    private static final int MAX_RANKED_CANDIDATES = 50000;
+    
+    // Identical concurrent reads share one query during traffic bursts
+    private SingleFlight<Long, ProductDetailDTO> productFlights;
+    private SingleFlight<ProductFilterDTO, PageDTO<ProductSummaryDTO>> listingFlights;
+    
+    @PostConstruct
+    void initFlights() {
+        productFlights = new SingleFlight<>("product-detail", registry);
+        listingFlights = new SingleFlight<>("product-listing", registry);
+    }
+    
+    // A flight started before the change committed must not be joined by later readers
+    void onProductChanged(@Observes ProductChangedEvent event) {
+        if (event.isBulk()) {
+            productFlights.forgetAll();
+        } else {
+            productFlights.forget(event.productId());
+        }
+        listingFlights.forgetAll();
+    }
+    
+    public Uni<PageDTO<ProductSummaryDTO>> getFilteredProducts(ProductFilterDTO filter) {
+        int page = filter.getPage() != null ? filter.getPage() : 0;
+        int size = filter.getSize() != null ? filter.getSize() : DEFAULT_PAGE_SIZE;
+        filter.setPage(page);
+        filter.setSize(size);
+        if (filter.getCategoryId() != null) {
+            filter.setCategoryIds(categoryTree.subtree(filter.getCategoryId()));
+        }
+        if (filter.getSearchTerm() != null && !filter.getSearchTerm().isBlank()) {
+            filter.setSearchTokens(ProductSearchIndex.tokens(filter.getSearchTerm()));
+        }
+        
+        return listingFlights.execute(filter, () -> loadFilteredProducts(filter, page, size));
+    }
+    
+    private Uni<PageDTO<ProductSummaryDTO>> loadFilteredProducts(ProductFilterDTO filter, int page, int size) {
+        boolean hasSearchTerm = filter.getSearchTerm() != null && !filter.getSearchTerm().isBlank();
+        boolean hasTags = filter.getTags() != null && !filter.getTags().isEmpty();
+        
+        // Resolve the search term and tags in memory first; the SQL only sees the surviving ids
+        Collection<Long> candidateIds = null;
+        boolean coversSearch = false;
+        boolean coversTags = false;
+        
+        if (hasSearchTerm && searchIndex.isReady()) {
+            candidateIds = searchIndex.search(filter.getSearchTerm());
+            coversSearch = true;
+        }
+        
+        if (hasTags && facetIndex.isReady()) {
+            long[] tagged = facetIndex.productIdsWithTags(filter.getTags(), "all".equalsIgnoreCase(filter.getTagMatch()));
+            candidateIds = intersect(candidateIds, tagged);
+            coversTags = true;
+        }
+        
+        ProductRepository.Candidates candidates = null;
+        if (candidateIds != null) {
+            if (candidateIds.isEmpty()) {
+                return Uni.createFrom().item(filter.getCursor() != null
+                    ? new PageDTO<>(List.of(), size, null, !filter.getCursor().isEmpty())
+                    : new PageDTO<>(List.of(), 0, page, size));
+            }
+            
+            // Search results default to relevance order, scored in memory over the matches
+            boolean byRelevance = coversSearch && filter.getCursor() == null
+                && (filter.getSortBy() == null || "relevance".equalsIgnoreCase(filter.getSortBy()))
+                && candidateIds.size() <= MAX_RANKED_CANDIDATES;
+            if (byRelevance) {
+                Collection<Long> matching = hasStructuredFilters(filter) || (hasTags && !coversTags)
+                    ? facetIndex.retainMatching(candidateIds, filter)
+                    : candidateIds;
+                if (matching != null) {
+                    return findPage(searchIndex.rank(filter.getSearchTerm(), matching), page, size);
+                }
+            }
+            
+            boolean fullyResolved = (!hasSearchTerm || coversSearch) && (!hasTags || coversTags)
+                && !hasStructuredFilters(filter);
+            if (fullyResolved && filter.getCursor() == null && filter.getSortBy() == null) {
+                return findIndexedPage(candidateIds, page, size);
+            }
+            
+            if (candidateIds.size() <= MAX_INDEXED_IDS_IN_QUERY) {
+                candidates = new ProductRepository.Candidates(candidateIds, coversSearch, coversTags);
+            }
+        }
+        
+        if (filter.getCursor() != null) {
+            return findKeysetPage(filter, candidates, size);
+        }
+        
+        boolean withTotal = filter.getIncludeTotal() == null || filter.getIncludeTotal();
+        return productRepository.findFilteredPage(filter, candidates, withTotal)
+            .map(result -> withTotal
+                ? new PageDTO<>(result.products(), result.total(), page, size)
+                : new PageDTO<>(result.products(), page, size, result.hasNext()));
+    }
+    
+    private static Collection<Long> intersect(Collection<Long> ids, long[] sortedIds) {
+        List<Long> result = new ArrayList<>();
+        for (long id : sortedIds) {
+            if (ids == null || ids.contains(id)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+    
+    private Uni<PageDTO<ProductSummaryDTO>> findKeysetPage(
+            ProductFilterDTO filter, ProductRepository.Candidates candidates, int size) {
+        ProductCursor after = ProductCursor.decode(
+            filter.getCursor(), filter.getSortBy(), filter.getSortDirection());
+        
+        // One extra row tells us whether there is a next page without counting
+        return productRepository.findFilteredAfter(filter, candidates, after, size + 1)
+            .map(products -> {
+                if (products.size() <= size) {
+                    return new PageDTO<>(products, size, null, after != null);
+                }
+                List<ProductSummaryDTO> content = products.subList(0, size);
+                String nextCursor = ProductCursor.after(
+                    content.get(size - 1), filter.getSortBy(), filter.getSortDirection()).encode();
+                return new PageDTO<>(content, size, nextCursor, after != null);
+            });
+    }
+    
+    // Pages over the sorted matches in memory and only loads the rows on the requested page
+    private Uni<PageDTO<ProductSummaryDTO>> findIndexedPage(Collection<Long> matchingIds, int page, int size) {
+        List<Long> sortedIds = new ArrayList<>(matchingIds);
+        sortedIds.sort(null);
+        return findPage(sortedIds, page, size);
+    }
+    
+    private Uni<PageDTO<ProductSummaryDTO>> findPage(List<Long> sortedIds, int page, int size) {
+        int from = Math.min(page * size, sortedIds.size());
+        int to = Math.min(from + size, sortedIds.size());
+        List<Long> pageIds = sortedIds.subList(from, to);
+        if (pageIds.isEmpty()) {
+            return Uni.createFrom().item(new PageDTO<>(List.of(), sortedIds.size(), page, size));
+        }
+        
+        return productRepository.findSummariesByIds(pageIds)
+            .map(products -> {
+                Map<Long, ProductSummaryDTO> byId = products.stream()
+                    .collect(Collectors.toMap(ProductSummaryDTO::getId, Function.identity()));
+                List<ProductSummaryDTO> ordered = pageIds.stream()
+                    .map(byId::get)
+                    .filter(product -> product != null)
+                    .collect(Collectors.toList());
+                return new PageDTO<>(ordered, sortedIds.size(), page, size);
+            });
+    }
+    
+    private boolean hasStructuredFilters(ProductFilterDTO filter) {
+        return filter.getCategoryId() != null
+            || filter.getMinPrice() != null
+            || filter.getMaxPrice() != null
+            || filter.getMinRating() != null
+            || (filter.getInStock() != null && filter.getInStock());
+    }
+    
+    public Uni<ProductFacetsDTO> getFacets(ProductFilterDTO filter) {
+        return facetIndex.facets(filter);
+    }
+    
+    // Until the index is built, product names starting with the query stand in
+    public Uni<List<SuggestionDTO>> getSuggestions(String query, int limit) {
+        List<SuggestionDTO> suggestions = autocompleteIndex.suggest(query, limit);
+        if (suggestions != null) {
+            return Uni.createFrom().item(suggestions);
+        }
+        String prefix = query == null ? "" : query.trim();
+        if (prefix.isEmpty()) {
+            return Uni.createFrom().item(List.of());
+        }
+        return productRepository.findNamesStartingWith(prefix, Math.min(Math.max(limit, 1), ProductAutocompleteIndex.TOP_K))
+            .map(rows -> rows.stream()
+                .map(row -> new SuggestionDTO((String) row[1], SuggestionDTO.PRODUCT, (Long) row[0]))
+                .collect(Collectors.toList()));
+    }
+    
+    // Cached and shared between concurrent requests, so it is an immutable copy, not the entity
+    public Uni<ProductDetailDTO> getProductById(Long id) {
+        ProductDetailDTO cached = productCache.get(id);
+        if (cached != null) {
+            return Uni.createFrom().item(cached);
+        }
+        return productFlights.execute(id, () -> productRepository.findDetail(id)
+            .onItem().ifNull().failWith(() -> 
+                new ResourceNotFoundException("Product not found"))
+            .map(ProductDetailDTO::new)
+            .invoke(productCache::put));
+    }
+    
+    // The in-memory indexes are updated by ProductChangeListener once the change commits, on
+    // this replica as on every other; updating them here would expose uncommitted or rolled
+    // back changes
+    @Transactional
+    public Uni<Product> createProduct(ProductDTO productDTO) {
+        Product product = new Product();
+        return updateProductFromDto(product, productDTO)
+            .chain(p -> productRepository.persist(p));
+    }
+    
+    @Transactional
+    public Uni<Product> updateProduct(Long id, ProductDTO productDTO) {
+        return productRepository.findById(id)
+            .onItem().ifNull().failWith(() -> 
+                new ResourceNotFoundException("Product not found"))
+            .chain(product -> updateProductFromDto(product, productDTO))
+            .chain(product -> productRepository.persist(product));
+    }
+    
+    @Transactional
+    public Uni<Boolean> deleteProduct(Long id) {
+        return productRepository.deleteById(id);
+    }
+    
+    private Uni<Product> updateProductFromDto(Product product, ProductDTO dto) {
+        product.setName(dto.getName());
+        product.setDescription(dto.getDescription());
+        product.setPrice(dto.getPrice());
+        product.setStockQuantity(dto.getStockQuantity());
+        product.setActive(dto.getActive() != null ? dto.getActive() : true);
+        
+        if (dto.getCategoryId() == null) {
+            product.setCategory(null);
+            return Uni.createFrom().item(product);
+        }
+        return categoryRepository.findById(dto.getCategoryId())
+            .onItem().ifNull().failWith(() -> 
+                new ResourceNotFoundException("Category not found"))
+            .map(category -> {
+                product.setCategory(category);
+                return product;
+            });
+    }
+    
+    public Uni<Set<String>> getProductTags(Long productId) {
+        return productRepository.findById(productId)
+            .onItem().ifNull().failWith(() -> 
+                new ResourceNotFoundException("Product not found"))
+            .chain(product -> Mutiny.fetch(product.getTags()))
+            .map(tags -> tags.stream()
+                .map(Tag::getName)
+                .collect(Collectors.toCollection(TreeSet::new)));
+    }
+    
+    // Replacing the tag set bumps the product's version, so the row update announces the change
+    @Transactional
+    public Uni<Set<String>> updateProductTags(Long productId, Set<String> tagNames) {
+        Set<String> names = tagNames == null ? Set.of() : tagNames.stream()
+            .map(name -> name.trim().toLowerCase(Locale.ROOT))
+            .filter(name -> !name.isEmpty())
+            .collect(Collectors.toCollection(TreeSet::new));
+        
+        return productRepository.findById(productId)
+            .onItem().ifNull().failWith(() -> 
+                new ResourceNotFoundException("Product not found"))
+            .chain(product -> Mutiny.fetch(product.getTags())
+                .chain(() -> tagRepository.findOrCreate(names))
+                .chain(tags -> {
+                    product.getTags().clear();
+                    product.getTags().addAll(tags);
+                    return productRepository.persist(product);
+                }))
+            .replaceWith(names);
+    }
     
     @Transactional
     public Uni<ProductImage> addProductImage(Long productId, String imageUrl, Boolean isCover) {
@@ -21,6 +21,9 @@ public class ReviewService {
     @Inject
     ProductRepository productRepository;
     
+    @Inject
+    ProductBatchLoader productLoader;
+    
     public Uni<List<Review>> getProductReviews(Long productId) {
         return reviewRepository.findByProduct(productId);
     }
@@ -31,12 +34,12 @@ public class ReviewService {
     
     @Transactional
     public Uni<Review> createReview(Long productId, String userId, ReviewDTO reviewDTO) {
-        return productRepository.findById(productId)
+        return productLoader.load(productId)
             .onItem().ifNull().failWith(() -> 
                 new ResourceNotFoundException("Product not found"))
-            .chain(product -> {
+            .chain(product -> productRepository.reference(productId).chain(productRef -> {
                 Review review = new Review();
-                review.setProduct(product);
+                review.setProduct(productRef);
                 review.setUserId(userId);
                 review.setRating(reviewDTO.getRating());
                 review.setComment(reviewDTO.getComment());
@@ -50,14 +53,12 @@ public class ReviewService {
                     });
                 }
                 
+                // The product is a snapshot; the write checks the version it was read at
                 return reviewRepository.persist(review)
                     .chain(savedReview -> reviewRepository.getAverageRating(productId)
-                        .chain(avgRating -> {
-                            product.setAverageRating(avgRating);
-                            return productRepository.persist(product)
-                                .map(p -> savedReview);
-                        }));
-            });
+                        .chain(avgRating -> productRepository.setAverageRating(productId, product.getVersion(), avgRating))
+                        .replaceWith(savedReview));
+            }));
     }
     
     @Transactional
@@ -113,7 +114,7 @@ public class ReviewService {
                             product.setAverageRating(avgRating);
                             return productRepository.persist(product);
                         }))
-                    .replaceWith(null);
+                    .replaceWithVoid();
             });
     }
     
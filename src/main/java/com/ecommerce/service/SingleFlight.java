@@ -0,0 +1,72 @@
+package com.ecommerce.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+// Concurrent callers asking for the same key share one in-flight Uni instead of each running
+// the query. The entry is dropped as soon as the Uni terminates, so results are never reused
+// by a caller that arrives afterwards.
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, Uni<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter followers;
+
+    public SingleFlight(String name, MeterRegistry registry) {
+        leaders = Counter.builder("singleflight.requests")
+            .tag("flight", name)
+            .tag("role", "leader")
+            .register(registry);
+        followers = Counter.builder("singleflight.requests")
+            .tag("flight", name)
+            .tag("role", "follower")
+            .register(registry);
+    }
+
+    public Uni<V> execute(K key, Supplier<Uni<V>> loader) {
+        return Uni.createFrom().deferred(() -> {
+            Uni<V> existing = inFlight.get(key);
+            if (existing != null) {
+                return follow(existing);
+            }
+
+            AtomicReference<Uni<V>> self = new AtomicReference<>();
+            Uni<V> flight = Uni.createFrom().deferred(() -> loader.get())
+                .onTermination().invoke(() -> inFlight.remove(key, self.get()))
+                .memoize().indefinitely();
+            self.set(flight);
+
+            Uni<V> winner = inFlight.putIfAbsent(key, flight);
+            if (winner != null) {
+                return follow(winner);
+            }
+            leaders.increment();
+            return flight;
+        });
+    }
+
+    // Later callers start a new flight; callers already waiting still get the running one
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    public void forgetAll() {
+        inFlight.clear();
+    }
+
+    // The leader completes on its own event loop; hand the result back on the follower's context
+    private Uni<V> follow(Uni<V> flight) {
+        followers.increment();
+        Context context = Vertx.currentContext();
+        if (context == null) {
+            return flight;
+        }
+        return flight.emitOn(command -> context.runOnContext(ignored -> command.run()));
+    }
+}
@@ -0,0 +1,590 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.model.OrderStatus;
+import com.ecommerce.domain.repository.OrderRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.json.JsonObject;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.SqlConnection;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Reserves stock for orders without touching the products row per checkout. Each replica
+// leases stock in chunks: one statement moves units out of products.stock_quantity into the
+// replica's row in stock_allotments, and the units are then handed out from striped in-memory
+// counters with compare-and-set. A hot SKU costs one database round trip per chunk rather than
+// one contended row update per order, and a replica can never hand out units it has not leased,
+// so the fleet cannot oversell.
+//
+// Reservations are keyed by order and expire after a TTL. Every reservation, confirmation and
+// release is appended to the stock_reservations journal; reserving waits for its journal rows
+// to commit, and rows from concurrent checkouts share one batched insert. Confirmed units leave
+// the lease in the same transaction as their journal rows, and spare units go back to
+// stock_quantity on the periodic reconciliation. A replica that stops renewing its leases has
+// them returned to stock_quantity by its peers.
+//
+// While units are leased, stock_quantity shows only the stock no replica holds.
+@ApplicationScoped
+public class StockReservations {
+    
+    private static final Logger LOG = Logger.getLogger(StockReservations.class);
+    
+    private static final int MAX_LEASE_ATTEMPTS = 3;
+    private static final int JOURNAL_BATCH_SIZE = 1000;
+    
+    private static final String LEASE =
+        "WITH available AS (SELECT id, LEAST(stock_quantity, $2) AS taken FROM products WHERE id = $1 FOR UPDATE) " +
+        "UPDATE products p SET stock_quantity = p.stock_quantity - a.taken, version = p.version + 1 " +
+        "FROM available a WHERE p.id = a.id AND a.taken > 0 RETURNING a.taken";
+    private static final String HOLD =
+        "INSERT INTO stock_allotments (owner, product_id, quantity, renewed_at) VALUES ($1, $2, $3, now()) " +
+        "ON CONFLICT (owner, product_id) DO UPDATE SET quantity = stock_allotments.quantity + EXCLUDED.quantity, " +
+        "renewed_at = now()";
+    private static final String UNHOLD =
+        "UPDATE stock_allotments SET quantity = quantity - $3 WHERE owner = $1 AND product_id = $2";
+    private static final String RETURN_STOCK =
+        "UPDATE products SET stock_quantity = stock_quantity + $2, version = version + 1 WHERE id = $1";
+    private static final String RENEW =
+        "UPDATE stock_allotments SET renewed_at = now() WHERE owner = $1 RETURNING product_id";
+    private static final String RECLAIM =
+        "WITH stale AS (DELETE FROM stock_allotments WHERE renewed_at < now() - make_interval(secs => $1) " +
+        "RETURNING product_id, quantity) " +
+        "UPDATE products p SET stock_quantity = p.stock_quantity + s.quantity, version = p.version + 1 " +
+        "FROM (SELECT product_id, SUM(quantity) AS quantity FROM stale GROUP BY product_id) s " +
+        "WHERE p.id = s.product_id AND s.quantity > 0";
+    private static final String JOURNAL =
+        "INSERT INTO stock_reservations (order_id, product_id, quantity, event, owner, created_at) " +
+        "VALUES ($1, $2, $3, $4, $5, now())";
+    // The last journal row of an order, and whether the replica that wrote it still renews its leases
+    private static final String LAST_EVENT =
+        "SELECT r.event, EXISTS (SELECT 1 FROM stock_allotments a WHERE a.owner = r.owner " +
+        "AND a.renewed_at >= now() - make_interval(secs => $2)) AS owner_live " +
+        "FROM stock_reservations r WHERE r.order_id = $1 ORDER BY r.id DESC LIMIT 1";
+    private static final String ORDER_STATUS =
+        "SELECT id, status FROM orders WHERE id = ANY($1)";
+    
+    public enum Event { RESERVED, CONFIRMED, RELEASED, EXPIRED }
+    
+    @ConfigProperty(name = "inventory.reservations.enabled", defaultValue = "false")
+    boolean enabled;
+    
+    @ConfigProperty(name = "inventory.reservations.stripes", defaultValue = "8")
+    int stripeCount;
+    
+    @ConfigProperty(name = "inventory.reservations.lease-size", defaultValue = "50")
+    int leaseSize;
+    
+    @ConfigProperty(name = "inventory.reservations.ttl", defaultValue = "PT15M")
+    Duration ttl;
+    
+    @ConfigProperty(name = "inventory.reservations.reconcile-interval", defaultValue = "PT1S")
+    Duration reconcileInterval;
+    
+    @ConfigProperty(name = "inventory.reservations.journal-linger", defaultValue = "PT0.005S")
+    Duration journalLinger;
+    
+    @ConfigProperty(name = "inventory.reservations.stale-after", defaultValue = "PT1M")
+    Duration staleAfter;
+    
+    @Inject
+    PgPool pool;
+    
+    @Inject
+    Vertx vertx;
+    
+    @Inject
+    MeterRegistry registry;
+    
+    @Inject
+    PgNotificationListener notifications;
+    
+    // Identifies this process's leases; a restart leases afresh and the old rows go stale
+    private final String owner = UUID.randomUUID().toString();
+    private final Map<Long, Stock> stocks = new ConcurrentHashMap<>();
+    private final Map<Long, Reservation> reservations = new ConcurrentHashMap<>();
+    private final Deque<JournalEntry> journal = new ConcurrentLinkedDeque<>();
+    private final AtomicBoolean journalScheduled = new AtomicBoolean();
+    private final AtomicBoolean journalFlushing = new AtomicBoolean();
+    private final AtomicBoolean reconciling = new AtomicBoolean();
+    private SingleFlight<Long, Integer> leases;
+    
+    private Counter reserved;
+    private Counter rejected;
+    private Counter confirmed;
+    private Counter released;
+    private Counter expired;
+    private Timer leaseTimer;
+    private Timer journalTimer;
+    
+    @PostConstruct
+    void init() {
+        leases = new SingleFlight<>("stock-lease", registry);
+        reserved = outcome("reserved");
+        rejected = outcome("rejected");
+        confirmed = outcome("confirmed");
+        released = outcome("released");
+        expired = outcome("expired");
+        Gauge.builder("inventory.reservations.free", this, StockReservations::freeUnits)
+            .description("Leased units not reserved by any order")
+            .register(registry);
+        Gauge.builder("inventory.reservations.pending", reservations, Map::size)
+            .description("Orders holding a reservation")
+            .register(registry);
+        leaseTimer = Timer.builder("inventory.reservations.lease")
+            .description("Time to lease a chunk of stock from the products row")
+            .register(registry);
+        journalTimer = Timer.builder("inventory.reservations.journal")
+            .description("Time to write one batch of reservation journal rows")
+            .register(registry);
+    }
+    
+    void onStart(@Observes StartupEvent ev) {
+        if (enabled) {
+            vertx.setPeriodic(Math.max(1, reconcileInterval.toMillis()), id -> reconcile().subscribe().with(
+                done -> { },
+                e -> LOG.warn("Failed to reconcile stock reservations", e)));
+            // A payment or cancellation handled by another replica confirms or releases the
+            // reservation here, if it is held here
+            notifications.listen(OrderRepository.PAID_CHANNEL, this::onOrderPaid);
+            notifications.listen(OrderRepository.CANCELLED_CHANNEL, this::onOrderCancelled);
+            LOG.infof("Stock reservations enabled, leasing %d units at a time as %s", leaseSize, owner);
+        }
+    }
+    
+    // Spare units go back now; units of pending orders go back when peers find the lease stale
+    void onStop(@Observes ShutdownEvent ev) {
+        if (enabled) {
+            try {
+                returnSpare(0).chain(this::flushJournal).await().atMost(Duration.ofSeconds(30));
+            } catch (RuntimeException e) {
+                LOG.error("Failed to return leased stock on shutdown", e);
+            }
+        }
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    // All or nothing: a product that cannot be covered gives back what was taken for the others
+    public Uni<Void> reserve(Long orderId, Map<Long, Integer> quantities) {
+        if (!enabled || quantities.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        Map<Long, Integer> taken = new ConcurrentHashMap<>();
+        return Multi.createFrom().iterable(new TreeMap<>(quantities).entrySet())
+            .onItem().transformToUniAndConcatenate(line -> acquire(line.getKey(), line.getValue(), 0)
+                .invoke(() -> taken.put(line.getKey(), line.getValue())))
+            .collect().last()
+            .onFailure().invoke(e -> {
+                rejected.increment();
+                taken.forEach((productId, quantity) -> stock(productId).put(quantity));
+            })
+            .chain(() -> {
+                reservations.put(orderId, new Reservation(Map.copyOf(quantities),
+                    System.currentTimeMillis() + ttl.toMillis()));
+                reserved.increment();
+                return append(orderId, quantities, Event.RESERVED)
+                    .onFailure().call(e -> {
+                        release(orderId);
+                        return Uni.createFrom().voidItem();
+                    });
+            });
+    }
+    
+    // The reservation becomes a sale; false when this replica does not hold it
+    public boolean confirm(Long orderId) {
+        Reservation reservation = reservations.remove(orderId);
+        if (reservation == null) {
+            return false;
+        }
+        confirmed.increment();
+        append(orderId, reservation.quantities, Event.CONFIRMED).subscribe().with(
+            done -> { },
+            e -> LOG.warnf(e, "Confirmation of order %d is queued for the next journal write", orderId));
+        return true;
+    }
+    
+    public boolean release(Long orderId) {
+        return end(orderId, Event.RELEASED);
+    }
+    
+    // For an order paid without its reservation held here: true when another replica still holds
+    // it and will confirm it, false when the stock has to be taken from the products row
+    public Uni<Boolean> heldElsewhere(Long orderId) {
+        if (!enabled) {
+            return Uni.createFrom().item(false);
+        }
+        return pool.preparedQuery(LAST_EVENT).execute(Tuple.of(orderId, (double) staleAfter.toSeconds()))
+            .map(rows -> {
+                if (rows.size() == 0) {
+                    return false;
+                }
+                Row row = rows.iterator().next();
+                return stillHeld(row.getString("event"), row.getBoolean("owner_live"));
+            });
+    }
+    
+    // A reservation is only still held while its replica keeps its leases fresh. Once peers have
+    // reclaimed them the reserved units are back in stock_quantity and nobody will confirm the
+    // order, so the sale has to come out of the products row.
+    static boolean stillHeld(String lastEvent, boolean ownerLive) {
+        return Event.RESERVED.name().equals(lastEvent) && ownerLive;
+    }
+    
+    private void onOrderPaid(String payload) {
+        try {
+            confirm(new JsonObject(payload).getLong("order"));
+        } catch (RuntimeException e) {
+            LOG.warnf("Ignoring malformed paid order notification: %s", payload);
+        }
+    }
+    
+    private void onOrderCancelled(String payload) {
+        try {
+            release(new JsonObject(payload).getLong("order"));
+        } catch (RuntimeException e) {
+            LOG.warnf("Ignoring malformed cancelled order notification: %s", payload);
+        }
+    }
+    
+    private boolean end(Long orderId, Event event) {
+        Reservation reservation = reservations.remove(orderId);
+        if (reservation == null) {
+            return false;
+        }
+        (event == Event.EXPIRED ? expired : released).increment();
+        reservation.quantities.forEach((productId, quantity) -> stock(productId).put(quantity));
+        append(orderId, reservation.quantities, event).subscribe().with(
+            done -> { },
+            e -> LOG.warnf(e, "Release of order %d is queued for the next journal write", orderId));
+        return true;
+    }
+    
+    private Uni<Void> acquire(Long productId, int quantity, int attempt) {
+        Stock stock = stock(productId);
+        int got = stock.take(quantity);
+        if (got == quantity) {
+            return Uni.createFrom().voidItem();
+        }
+        stock.put(got);
+        if (attempt == MAX_LEASE_ATTEMPTS) {
+            return Uni.createFrom().failure(new IllegalStateException(
+                "Insufficient stock for product " + productId));
+        }
+        return lease(productId, Math.max(leaseSize, quantity))
+            .chain(granted -> granted > 0
+                ? acquire(productId, quantity, attempt + 1)
+                : Uni.createFrom().failure(new IllegalStateException(
+                    "Insufficient stock for product " + productId)));
+    }
+    
+    // Concurrent shortfalls on one product share a single lease; the units are added once,
+    // inside the flight, and every waiter competes for them again
+    private Uni<Integer> lease(Long productId, int wanted) {
+        return leases.execute(productId, () -> {
+            long started = System.nanoTime();
+            stock(productId).leasedAt = started;
+            return pool.withTransaction(connection -> connection.preparedQuery(LEASE)
+                    .execute(Tuple.of(productId, wanted))
+                    .chain(rows -> {
+                        int taken = rows.size() > 0 ? rows.iterator().next().getInteger("taken") : 0;
+                        if (taken == 0) {
+                            return Uni.createFrom().item(0);
+                        }
+                        return connection.preparedQuery(HOLD)
+                            .execute(Tuple.of(owner, productId, taken))
+                            .replaceWith(taken);
+                    }))
+                .invoke(taken -> {
+                    stock(productId).put(taken);
+                    leaseTimer.record(Duration.ofNanos(System.nanoTime() - started));
+                });
+        });
+    }
+    
+    private Stock stock(Long productId) {
+        return stocks.computeIfAbsent(productId, id -> new Stock(stripeCount));
+    }
+    
+    // Group commit: entries wait a moment for company, then go out in one transaction
+    private Uni<Void> append(Long orderId, Map<Long, Integer> quantities, Event event) {
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        quantities.forEach((productId, quantity) ->
+            journal.add(new JournalEntry(orderId, productId, quantity, event, written)));
+        if (journalScheduled.compareAndSet(false, true)) {
+            vertx.setTimer(Math.max(1, journalLinger.toMillis()), id -> {
+                journalScheduled.set(false);
+                flushJournal().subscribe().with(done -> { }, e -> { });
+            });
+        }
+        return Uni.createFrom().completionStage(written);
+    }
+    
+    // Confirmed units leave the lease in the same transaction as their journal rows. A failed
+    // batch goes back to the front of the queue and its waiters are failed, so a reservation
+    // never counts as made before its row is durable.
+    private Uni<Void> flushJournal() {
+        if (journal.isEmpty() || !journalFlushing.compareAndSet(false, true)) {
+            return Uni.createFrom().voidItem();
+        }
+        List<JournalEntry> batch = new ArrayList<>();
+        for (JournalEntry entry; batch.size() < JOURNAL_BATCH_SIZE && (entry = journal.poll()) != null; ) {
+            batch.add(entry);
+        }
+        List<Tuple> rows = new ArrayList<>(batch.size());
+        Map<Long, Integer> sold = new HashMap<>();
+        for (JournalEntry entry : batch) {
+            rows.add(Tuple.of(entry.orderId, entry.productId, entry.quantity, entry.event.name(), owner));
+            if (entry.event == Event.CONFIRMED) {
+                sold.merge(entry.productId, entry.quantity, Integer::sum);
+            }
+        }
+        long started = System.nanoTime();
+        return pool.withTransaction(connection -> connection.preparedQuery(JOURNAL).executeBatch(rows)
+                .chain(() -> unhold(connection, sold)))
+            .invoke(() -> {
+                journalTimer.record(Duration.ofNanos(System.nanoTime() - started));
+                batch.forEach(entry -> entry.written.complete(null));
+            })
+            .onFailure().invoke(e -> {
+                LOG.warnf(e, "Failed to write %d reservation journal rows, retrying", batch.size());
+                for (int i = batch.size() - 1; i >= 0; i--) {
+                    journal.addFirst(batch.get(i).retry());
+                }
+                batch.forEach(entry -> entry.written.completeExceptionally(e));
+            })
+            .eventually(() -> {
+                journalFlushing.set(false);
+                if (!journal.isEmpty() && journalScheduled.compareAndSet(false, true)) {
+                    vertx.setTimer(Math.max(1, journalLinger.toMillis()), id -> {
+                        journalScheduled.set(false);
+                        flushJournal().subscribe().with(done -> { }, e -> { });
+                    });
+                }
+            });
+    }
+    
+    private Uni<Void> unhold(SqlConnection connection, Map<Long, Integer> units) {
+        if (units.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        List<Tuple> updates = new ArrayList<>(units.size());
+        units.forEach((productId, quantity) -> updates.add(Tuple.of(owner, productId, quantity)));
+        return connection.preparedQuery(UNHOLD).executeBatch(updates).replaceWithVoid();
+    }
+    
+    // Expires reservations, returns spare units beyond one lease, renews this replica's leases
+    // and hands back the leases of replicas that stopped renewing theirs
+    private Uni<Void> reconcile() {
+        if (!reconciling.compareAndSet(false, true)) {
+            return Uni.createFrom().voidItem();
+        }
+        return expire()
+            .chain(() -> returnSpare(leaseSize))
+            .chain(this::renew)
+            .chain(() -> pool.preparedQuery(RECLAIM)
+                .execute(Tuple.of((double) staleAfter.toSeconds()))
+                .invoke(rows -> {
+                    if (rows.rowCount() > 0) {
+                        LOG.infof("Returned stale stock leases of %d products", rows.rowCount());
+                    }
+                })
+                .replaceWithVoid())
+            .eventually(() -> reconciling.set(false));
+    }
+    
+    // A reservation past its TTL is checked against its order first: a payment whose
+    // notification was missed still confirms it instead of putting the units back on sale
+    private Uni<Void> expire() {
+        long now = System.currentTimeMillis();
+        List<Long> due = new ArrayList<>();
+        reservations.forEach((orderId, reservation) -> {
+            if (reservation.expiresAt < now) {
+                due.add(orderId);
+            }
+        });
+        if (due.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        return pool.preparedQuery(ORDER_STATUS).execute(Tuple.of((Object) due.toArray(Long[]::new)))
+            .invoke(rows -> {
+                Map<Long, OrderStatus> statuses = new HashMap<>();
+                for (Row row : rows) {
+                    statuses.put(row.getLong("id"), OrderStatus.valueOf(row.getString("status")));
+                }
+                for (Long orderId : due) {
+                    OrderStatus status = statuses.get(orderId);
+                    if (status == null || status == OrderStatus.PENDING || status == OrderStatus.CANCELLED) {
+                        end(orderId, Event.EXPIRED);
+                    } else {
+                        confirm(orderId);
+                    }
+                }
+            })
+            .replaceWithVoid();
+    }
+    
+    private Uni<Void> returnSpare(int keep) {
+        Map<Long, Integer> spare = new HashMap<>();
+        stocks.forEach((productId, stock) -> {
+            int units = stock.take(Math.max(0, stock.free() - keep));
+            if (units > 0) {
+                spare.put(productId, units);
+            }
+        });
+        if (spare.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        List<Tuple> returns = new ArrayList<>(spare.size());
+        spare.forEach((productId, units) -> returns.add(Tuple.of(productId, units)));
+        return pool.withTransaction(connection -> connection.preparedQuery(RETURN_STOCK).executeBatch(returns)
+                .chain(() -> unhold(connection, spare)))
+            .onFailure().invoke(e -> {
+                LOG.warn("Failed to return spare stock, keeping it leased", e);
+                spare.forEach((productId, units) -> stock(productId).put(units));
+            })
+            .onFailure().recoverWithNull()
+            .replaceWithVoid();
+    }
+    
+    // Leases missing from the renewal were reclaimed by a peer while this replica could not reach
+    // the database; those units are back in stock_quantity, so the local copies are dropped.
+    // A lease that started during the renewal may not be visible to it and is left alone.
+    private Uni<Void> renew() {
+        long started = System.nanoTime();
+        return pool.preparedQuery(RENEW).execute(Tuple.of(owner))
+            .invoke(rows -> {
+                Set<Long> held = new HashSet<>();
+                for (Row row : rows) {
+                    held.add(row.getLong("product_id"));
+                }
+                stocks.forEach((productId, stock) -> {
+                    if (!held.contains(productId) && stock.leasedAt - started < 0) {
+                        int lost = stock.take(stock.free());
+                        if (lost > 0) {
+                            LOG.warnf("Lease of product %d was reclaimed, dropping %d local units", productId, lost);
+                        }
+                    }
+                });
+            })
+            .replaceWithVoid();
+    }
+    
+    private long freeUnits() {
+        long free = 0;
+        for (Stock stock : stocks.values()) {
+            free += stock.free();
+        }
+        return free;
+    }
+    
+    private Counter outcome(String outcome) {
+        return Counter.builder("inventory.reservations")
+            .description("Stock reservations by outcome")
+            .tag("outcome", outcome)
+            .register(registry);
+    }
+    
+    // Free units of one product, spread over stripes so concurrent checkouts on different event
+    // loops mostly compare-and-set different counters
+    static final class Stock {
+        private final AtomicInteger[] stripes;
+        private volatile long leasedAt = Long.MIN_VALUE;
+        
+        Stock(int count) {
+            stripes = new AtomicInteger[Math.max(1, count)];
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i] = new AtomicInteger();
+            }
+        }
+        
+        // Starts at the caller's own stripe and moves on until satisfied; returns what it got
+        int take(int wanted) {
+            int got = 0;
+            int home = home();
+            for (int i = 0; i < stripes.length && got < wanted; i++) {
+                AtomicInteger stripe = stripes[(home + i) % stripes.length];
+                int current;
+                int share;
+                do {
+                    current = stripe.get();
+                    share = Math.min(current, wanted - got);
+                } while (share > 0 && !stripe.compareAndSet(current, current - share));
+                got += Math.max(share, 0);
+            }
+            return got;
+        }
+        
+        void put(int units) {
+            if (units > 0) {
+                stripes[home()].addAndGet(units);
+            }
+        }
+        
+        int free() {
+            int free = 0;
+            for (AtomicInteger stripe : stripes) {
+                free += stripe.get();
+            }
+            return free;
+        }
+        
+        private int home() {
+            return (int) (Thread.currentThread().getId() % stripes.length);
+        }
+    }
+    
+    private static final class Reservation {
+        private final Map<Long, Integer> quantities;
+        private final long expiresAt;
+        
+        private Reservation(Map<Long, Integer> quantities, long expiresAt) {
+            this.quantities = quantities;
+            this.expiresAt = expiresAt;
+        }
+    }
+    
+    private static final class JournalEntry {
+        private final Long orderId;
+        private final Long productId;
+        private final int quantity;
+        private final Event event;
+        private final CompletableFuture<Void> written;
+        
+        private JournalEntry(Long orderId, Long productId, int quantity, Event event,
+                CompletableFuture<Void> written) {
+            this.orderId = orderId;
+            this.productId = productId;
+            this.quantity = quantity;
+            this.event = event;
+            this.written = written;
+        }
+        
+        // The original waiter has been failed; the row itself is still owed to the journal
+        private JournalEntry retry() {
+            return new JournalEntry(orderId, productId, quantity, event, new CompletableFuture<>());
+        }
+    }
+}
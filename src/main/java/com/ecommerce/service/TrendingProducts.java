@@ -0,0 +1,246 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.dto.TrendingProductDTO;
+import com.ecommerce.domain.dto.TrendingSketchDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import java.time.Duration;
+import java.util.*;
+
+// "Trending now": weighted product views, add-to-carts and favorites over a sliding window.
+// The window is a ring of time buckets. Each bucket holds a Count-Min sketch for the counts
+// and a Space-Saving list for the candidate heavy hitters. A bucket that falls out of the window
+// is cleared and reused, so memory stays fixed however much traffic arrives.
+//
+// Recording happens on every product view, so the ring is striped: each thread records into the
+// ring of its stripe, and only threads sharing a stripe contend for a bucket's monitor. Counts
+// of all stripes add up cell by cell when a snapshot is taken.
+//
+// Sketch dimensions and hash seeds are the same on every replica, so sketches add up cell by
+// cell. Any replica can therefore rank the trending products of the whole fleet from the
+// sketches of its peers.
+@ApplicationScoped
+public class TrendingProducts {
+    
+    public enum Signal { VIEW, CART, FAVORITE }
+    
+    // Fixed so that sketches from every replica hash alike
+    private static final long[] SEEDS = {
+        0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+        0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x27D4EB2F165667C5L, 0x94D049BB133111EBL
+    };
+    private static final int MAX_STRIPES = 16;
+    // A merge request is assembled by an aggregator from one sketch per replica
+    private static final int MAX_MERGED_SKETCHES = 64;
+    
+    @ConfigProperty(name = "trending.window", defaultValue = "PT1H")
+    Duration window;
+    
+    @ConfigProperty(name = "trending.buckets", defaultValue = "12")
+    int bucketCount;
+    
+    @ConfigProperty(name = "trending.sketch-depth", defaultValue = "4")
+    int depth;
+    
+    @ConfigProperty(name = "trending.sketch-width", defaultValue = "2048")
+    int width;
+    
+    @ConfigProperty(name = "trending.candidates-per-bucket", defaultValue = "200")
+    int candidatesPerBucket;
+    
+    // 0 means one per available processor, up to 16
+    @ConfigProperty(name = "trending.stripes", defaultValue = "0")
+    int stripeCount;
+    
+    @ConfigProperty(name = "trending.weights.view", defaultValue = "1")
+    int viewWeight;
+    
+    @ConfigProperty(name = "trending.weights.cart", defaultValue = "5")
+    int cartWeight;
+    
+    @ConfigProperty(name = "trending.weights.favorite", defaultValue = "3")
+    int favoriteWeight;
+    
+    private long bucketMillis;
+    private int maxCandidates;
+    // stripes[s][b] is bucket b of the ring of stripe s
+    private Bucket[][] stripes;
+    
+    @PostConstruct
+    void init() {
+        if (depth > SEEDS.length) {
+            throw new IllegalStateException("trending.sketch-depth must not exceed " + SEEDS.length);
+        }
+        bucketMillis = Math.max(1, window.toMillis() / bucketCount);
+        maxCandidates = bucketCount * candidatesPerBucket;
+        int count = stripeCount > 0 ? stripeCount
+            : Math.min(MAX_STRIPES, Runtime.getRuntime().availableProcessors());
+        stripes = new Bucket[count][bucketCount];
+        for (Bucket[] ring : stripes) {
+            for (int i = 0; i < bucketCount; i++) {
+                ring[i] = new Bucket(depth * width, candidatesPerBucket);
+            }
+        }
+    }
+    
+    public void record(Long productId, Signal signal) {
+        if (productId == null) {
+            return;
+        }
+        int weight;
+        switch (signal) {
+            case CART:
+                weight = cartWeight;
+                break;
+            case FAVORITE:
+                weight = favoriteWeight;
+                break;
+            default:
+                weight = viewWeight;
+        }
+        long epoch = System.currentTimeMillis() / bucketMillis;
+        Bucket[] ring = stripes[(int) Math.floorMod(Thread.currentThread().getId(), (long) stripes.length)];
+        Bucket bucket = ring[(int) (epoch % bucketCount)];
+        synchronized (bucket) {
+            bucket.rotateTo(epoch);
+            for (int row = 0; row < depth; row++) {
+                bucket.counts[cell(row, productId)] += weight;
+            }
+            bucket.offer(productId, weight);
+        }
+    }
+    
+    // The whole window folded into one sketch, for a peer to merge. Only the heaviest candidates
+    // are kept, as many as one stripe could hold, so the sketch size does not grow with stripes.
+    public TrendingSketchDTO snapshot() {
+        long now = System.currentTimeMillis() / bucketMillis;
+        long[] counts = new long[depth * width];
+        Set<Long> candidates = new HashSet<>();
+        for (Bucket[] ring : stripes) {
+            for (Bucket bucket : ring) {
+                synchronized (bucket) {
+                    if (bucket.epoch <= now - bucketCount || bucket.epoch > now) {
+                        continue;
+                    }
+                    for (int i = 0; i < counts.length; i++) {
+                        counts[i] += bucket.counts[i];
+                    }
+                    for (int i = 0; i < bucket.size; i++) {
+                        candidates.add(bucket.ids[i]);
+                    }
+                }
+            }
+        }
+        List<Long> heaviest = rank(counts, candidates, maxCandidates).stream()
+            .map(TrendingProductDTO::getProductId)
+            .toList();
+        return new TrendingSketchDTO((now + 1) * bucketMillis, window.toMillis(), depth, width,
+            counts, new ArrayList<>(heaviest));
+    }
+    
+    // Sketches built with other dimensions (a replica running another configuration) cannot be
+    // added cell by cell and are rejected rather than silently skewing the ranking. Candidate
+    // lists are capped at what a snapshot produces, since each one is scored.
+    public List<TrendingProductDTO> merge(List<TrendingSketchDTO> sketches, int limit) {
+        if (sketches == null || sketches.isEmpty()) {
+            throw new IllegalArgumentException("At least one trending sketch is required");
+        }
+        if (sketches.size() > MAX_MERGED_SKETCHES) {
+            throw new IllegalArgumentException("At most " + MAX_MERGED_SKETCHES + " trending sketches can be merged");
+        }
+        long[] counts = new long[depth * width];
+        Set<Long> candidates = new HashSet<>();
+        for (TrendingSketchDTO sketch : sketches) {
+            if (sketch.getDepth() != depth || sketch.getWidth() != width
+                    || sketch.getCounts() == null || sketch.getCounts().length != counts.length) {
+                throw new IllegalArgumentException("Trending sketch dimensions do not match "
+                    + depth + "x" + width);
+            }
+            if (sketch.getCandidates() != null && sketch.getCandidates().size() > maxCandidates) {
+                throw new IllegalArgumentException("A trending sketch carries at most " + maxCandidates + " candidates");
+            }
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += sketch.getCounts()[i];
+            }
+            if (sketch.getCandidates() != null) {
+                sketch.getCandidates().stream().filter(Objects::nonNull).forEach(candidates::add);
+            }
+        }
+        return rank(counts, candidates, limit);
+    }
+    
+    public List<TrendingProductDTO> trending(int limit) {
+        TrendingSketchDTO sketch = snapshot();
+        return rank(sketch.getCounts(), sketch.getCandidates(), limit);
+    }
+    
+    // Candidates are scored with the Count-Min estimate, the smallest of their cells, which
+    // overestimates only by collisions and never misses weight recorded in another bucket
+    private List<TrendingProductDTO> rank(long[] counts, Collection<Long> candidates, int limit) {
+        List<TrendingProductDTO> ranked = new ArrayList<>(candidates.size());
+        for (Long productId : candidates) {
+            long estimate = Long.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                estimate = Math.min(estimate, counts[cell(row, productId)]);
+            }
+            if (estimate > 0) {
+                ranked.add(new TrendingProductDTO(productId, estimate));
+            }
+        }
+        ranked.sort(Comparator.comparingLong(TrendingProductDTO::getScore).reversed()
+            .thenComparing(TrendingProductDTO::getProductId));
+        return ranked.size() > limit ? new ArrayList<>(ranked.subList(0, limit)) : ranked;
+    }
+    
+    private int cell(int row, long productId) {
+        long h = productId ^ SEEDS[row];
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return row * width + (int) Math.floorMod(h, (long) width);
+    }
+    
+    private static final class Bucket {
+        private final long[] counts;
+        // Space-Saving candidates; a newcomer replaces the lightest entry and inherits its weight
+        private final long[] ids;
+        private final long[] weights;
+        private int size;
+        private long epoch = Long.MIN_VALUE;
+        
+        private Bucket(int cells, int candidates) {
+            counts = new long[cells];
+            ids = new long[candidates];
+            weights = new long[candidates];
+        }
+        
+        private void rotateTo(long current) {
+            if (epoch != current) {
+                Arrays.fill(counts, 0);
+                size = 0;
+                epoch = current;
+            }
+        }
+        
+        private void offer(long productId, int weight) {
+            int lightest = 0;
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == productId) {
+                    weights[i] += weight;
+                    return;
+                }
+                if (weights[i] < weights[lightest]) {
+                    lightest = i;
+                }
+            }
+            if (size < ids.length) {
+                ids[size] = productId;
+                weights[size++] = weight;
+                return;
+            }
+            ids[lightest] = productId;
+            weights[lightest] += weight;
+        }
+    }
+}
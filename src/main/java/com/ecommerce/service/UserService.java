@@ -2,8 +2,10 @@ package com.ecommerce.service;
 
 import com.ecommerce.domain.dto.LoginDTO;
 import com.ecommerce.domain.dto.UserRegistrationDTO;
+import com.ecommerce.domain.model.OutboxEventType;
 import com.ecommerce.domain.model.User;
 import com.ecommerce.domain.model.UserProfile;
+import com.ecommerce.domain.repository.OutboxRepository;
 import com.ecommerce.exception.ResourceNotFoundException;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
@@ -15,8 +17,9 @@ import java.util.UUID;
 @ApplicationScoped
 public class UserService {
     
+    // Emails go out through the outbox, committed with the user change that triggers them
     @Inject
-    EmailService emailService;
+    OutboxRepository outboxRepository;
     
     @Inject
     JwtService jwtService;
@@ -46,10 +49,8 @@ public class UserService {
                         return profile.<UserProfile>persist()
                             .map(p -> savedUser);
                     })
-                    .chain(savedUser -> {
-                        emailService.sendVerificationEmail(savedUser);
-                        return Uni.createFrom().item(savedUser);
-                    });
+                    .call(savedUser -> outboxRepository.enqueue(
+                        OutboxEventType.EMAIL_VERIFICATION, savedUser.getId()));
             });
     }
     
@@ -105,11 +106,9 @@ public class UserService {
                 user.setResetToken(UUID.randomUUID().toString());
                 user.setResetTokenExpiry(LocalDateTime.now().plusHours(1));
                 
-                return user.persist()
-                    .chain(savedUser -> {
-                        emailService.sendPasswordResetEmail(savedUser);
-                        return Uni.createFrom().item(savedUser);
-                    });
+                return user.<User>persist()
+                    .call(savedUser -> outboxRepository.enqueue(
+                        OutboxEventType.PASSWORD_RESET, savedUser.getId()));
             });
     }
     
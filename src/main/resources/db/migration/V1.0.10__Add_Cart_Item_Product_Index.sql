@@ -0,0 +1,2 @@
+-- Reverse lookup from a repriced product to the cart lines holding it
+CREATE INDEX idx_cart_items_product ON cart_items(product_id);
@@ -0,0 +1,14 @@
+-- When the owner last changed the cart. Unlike updated_at, which the audit trigger bumps on
+-- any write, repricing and other system updates leave it alone, so cart expiry measures
+-- idleness from it.
+ALTER TABLE carts ADD COLUMN active_at TIMESTAMP;
+
+ALTER TABLE carts DISABLE TRIGGER update_cart_updated_at;
+UPDATE carts SET active_at = updated_at;
+ALTER TABLE carts ENABLE TRIGGER update_cart_updated_at;
+
+ALTER TABLE carts ALTER COLUMN active_at SET DEFAULT CURRENT_TIMESTAMP;
+ALTER TABLE carts ALTER COLUMN active_at SET NOT NULL;
+
+-- Range scan for the cart compaction job over carts past their TTL
+CREATE INDEX idx_carts_active ON carts(active_at);
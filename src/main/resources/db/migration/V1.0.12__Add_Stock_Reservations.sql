@@ -0,0 +1,22 @@
+-- Stock leased by each replica's reservation engine, renewed while the replica is alive
+CREATE TABLE stock_allotments (
+    owner VARCHAR(64) NOT NULL,
+    product_id BIGINT NOT NULL REFERENCES products(id),
+    quantity INTEGER NOT NULL,
+    renewed_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (owner, product_id)
+);
+
+-- Append-only journal of reservations and how each one ended
+CREATE TABLE stock_reservations (
+    id BIGSERIAL PRIMARY KEY,
+    order_id BIGINT NOT NULL,
+    product_id BIGINT NOT NULL REFERENCES products(id),
+    quantity INTEGER NOT NULL,
+    event VARCHAR(20) NOT NULL,
+    owner VARCHAR(64) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_stock_allotments_renewed ON stock_allotments(renewed_at);
+CREATE INDEX idx_stock_reservations_order ON stock_reservations(order_id);
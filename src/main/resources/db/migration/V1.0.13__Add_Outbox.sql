@@ -0,0 +1,30 @@
+-- Side effects (emails) recorded in the same transaction as the change that causes them
+CREATE TABLE outbox (
+    id BIGSERIAL PRIMARY KEY,
+    type VARCHAR(50) NOT NULL,
+    aggregate_id BIGINT NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    last_error TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    delivered_at TIMESTAMP,
+    dead_at TIMESTAMP
+);
+
+-- Only undelivered messages are ever scanned for dispatch
+CREATE INDEX idx_outbox_due ON outbox(next_attempt_at) WHERE delivered_at IS NULL AND dead_at IS NULL;
+CREATE INDEX idx_outbox_delivered ON outbox(delivered_at) WHERE delivered_at IS NOT NULL;
+
+-- Wakes the dispatchers once per inserting statement; delivered on commit, so never early
+CREATE OR REPLACE FUNCTION notify_outbox()
+RETURNS TRIGGER AS $$
+BEGIN
+    PERFORM pg_notify('outbox', '');
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER outbox_notify
+    AFTER INSERT ON outbox
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION notify_outbox();
@@ -0,0 +1,60 @@
+-- Every announced catalog change carries a revision from one shared sequence, so replicas
+-- can derive the same listing ETag from the notifications they receive. Updates also say
+-- whether the price moved, so stock and rating writes do not reprice carts, and which columns
+-- changed. Listings only show whether a product is in stock, so an update that moves nothing
+-- else a listing shows takes no revision and leaves the listing ETag where it was.
+CREATE SEQUENCE catalog_revision;
+
+CREATE OR REPLACE FUNCTION notify_product_change()
+RETURNS TRIGGER AS $$
+DECLARE
+    changed RECORD;
+    price_changed BOOLEAN := false;
+    changed_columns TEXT[];
+    listing_changed BOOLEAN := true;
+BEGIN
+    IF current_setting('ecommerce.bulk_import', true) = 'on' THEN
+        RETURN NULL;
+    END IF;
+    
+    IF TG_OP = 'DELETE' THEN
+        changed := OLD;
+    ELSE
+        changed := NEW;
+    END IF;
+    IF TG_OP = 'UPDATE' THEN
+        price_changed := OLD.price IS DISTINCT FROM NEW.price;
+        -- version and updated_at move with every write
+        SELECT coalesce(array_agg(n.key ORDER BY n.key), '{}') INTO changed_columns
+        FROM jsonb_each(to_jsonb(NEW)) AS n
+        WHERE n.value IS DISTINCT FROM to_jsonb(OLD) -> n.key
+          AND n.key NOT IN ('version', 'updated_at');
+        listing_changed := NOT changed_columns <@ ARRAY['stock_quantity', 'low_stock_threshold']
+            OR (OLD.stock_quantity > 0) IS DISTINCT FROM (NEW.stock_quantity > 0);
+    END IF;
+    
+    PERFORM pg_notify('product_changes', json_build_object(
+        'id', changed.id,
+        'version', changed.version,
+        'op', TG_OP,
+        'at', (EXTRACT(EPOCH FROM clock_timestamp()) * 1000)::BIGINT,
+        'revision', CASE WHEN listing_changed THEN nextval('catalog_revision') END,
+        'prices', price_changed,
+        'listing', listing_changed,
+        'changed', changed_columns
+    )::text);
+    
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION notify_category_change()
+RETURNS TRIGGER AS $$
+BEGIN
+    PERFORM pg_notify('category_changes', json_build_object(
+        'op', TG_OP,
+        'revision', nextval('catalog_revision')
+    )::text);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
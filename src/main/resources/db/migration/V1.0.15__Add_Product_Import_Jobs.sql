@@ -0,0 +1,21 @@
+-- Import job progress, readable from any replica. The replica running a job refreshes
+-- heartbeat_at; a job whose heartbeat stops is failed by whichever replica notices first.
+CREATE TABLE product_import_jobs (
+    id VARCHAR(36) PRIMARY KEY,
+    format VARCHAR(10) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    rows_read BIGINT NOT NULL DEFAULT 0,
+    rows_imported BIGINT NOT NULL DEFAULT 0,
+    rows_failed BIGINT NOT NULL DEFAULT 0,
+    errors JSONB NOT NULL DEFAULT '[]',
+    failure TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    started_at TIMESTAMP,
+    finished_at TIMESTAMP,
+    heartbeat_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_product_import_jobs_active ON product_import_jobs(heartbeat_at)
+    WHERE status IN ('QUEUED', 'RUNNING');
+CREATE INDEX idx_product_import_jobs_finished ON product_import_jobs(finished_at)
+    WHERE finished_at IS NOT NULL;
@@ -0,0 +1,3 @@
+-- Units sold per product, summed when the search and autocomplete indexes are built
+CREATE INDEX idx_inventory_transactions_sales ON inventory_transactions(product_id) INCLUDE (quantity)
+    WHERE type = 'SALE';
@@ -0,0 +1,5 @@
+-- Composite indexes backing keyset pagination on each listing sort order
+CREATE INDEX idx_products_price_id ON products(price, id);
+CREATE INDEX idx_products_name_id ON products(name, id);
+CREATE INDEX idx_products_rating_id ON products((COALESCE(average_rating, 0.0)), id);
+CREATE INDEX idx_products_created_id ON products(created_at, id);
@@ -0,0 +1,28 @@
+-- Publish every product change so each replica can drop its cached copy.
+-- NOTIFY is delivered on commit, so listeners never see uncommitted versions.
+CREATE OR REPLACE FUNCTION notify_product_change()
+RETURNS TRIGGER AS $$
+DECLARE
+    changed RECORD;
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        changed := OLD;
+    ELSE
+        changed := NEW;
+    END IF;
+    
+    PERFORM pg_notify('product_changes', json_build_object(
+        'id', changed.id,
+        'version', changed.version,
+        'op', TG_OP,
+        'at', (EXTRACT(EPOCH FROM clock_timestamp()) * 1000)::BIGINT
+    )::text);
+    
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER product_change_notify
+    AFTER INSERT OR UPDATE OR DELETE ON products
+    FOR EACH ROW
+    EXECUTE FUNCTION notify_product_change();
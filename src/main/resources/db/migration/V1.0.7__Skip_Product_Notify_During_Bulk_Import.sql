@@ -0,0 +1,27 @@
+-- Bulk imports set ecommerce.bulk_import for their transaction and announce the whole
+-- import with a single BULK notification instead of one per inserted row
+CREATE OR REPLACE FUNCTION notify_product_change()
+RETURNS TRIGGER AS $$
+DECLARE
+    changed RECORD;
+BEGIN
+    IF current_setting('ecommerce.bulk_import', true) = 'on' THEN
+        RETURN NULL;
+    END IF;
+    
+    IF TG_OP = 'DELETE' THEN
+        changed := OLD;
+    ELSE
+        changed := NEW;
+    END IF;
+    
+    PERFORM pg_notify('product_changes', json_build_object(
+        'id', changed.id,
+        'version', changed.version,
+        'op', TG_OP,
+        'at', (EXTRACT(EPOCH FROM clock_timestamp()) * 1000)::BIGINT
+    )::text);
+    
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
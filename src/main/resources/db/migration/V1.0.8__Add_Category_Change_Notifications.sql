@@ -0,0 +1,14 @@
+-- Categories change rarely and replicas reload the whole tree, so one
+-- notification per statement is enough and carries no payload.
+CREATE OR REPLACE FUNCTION notify_category_change()
+RETURNS TRIGGER AS $$
+BEGIN
+    PERFORM pg_notify('category_changes', TG_OP);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER category_change_notify
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON categories
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION notify_category_change();
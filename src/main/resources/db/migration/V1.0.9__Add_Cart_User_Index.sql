@@ -0,0 +1,2 @@
+-- Carts are looked up by owner on every load into the write-behind store and at checkout
+CREATE INDEX idx_carts_user ON carts(user_id);
@@ -0,0 +1,98 @@
+package com.ecommerce.domain.dto;
+
+import com.ecommerce.exception.InvalidRequestException;
+import org.junit.jupiter.api.Test;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductCursorTest {
+    
+    private static final LocalDateTime CREATED = LocalDateTime.of(2024, 3, 1, 12, 30, 15);
+    
+    private static ProductSummaryDTO product() {
+        return new ProductSummaryDTO(42L, "Desk lamp", new BigDecimal("19.90"), null, 4.5, 3, CREATED);
+    }
+    
+    @Test
+    void encodedCursorDecodesToTheSamePosition() {
+        ProductCursor cursor = ProductCursor.after(product(), "price", "desc");
+        
+        ProductCursor decoded = ProductCursor.decode(cursor.encode(), "price", "DESC");
+        
+        assertEquals(cursor, decoded);
+        assertEquals(new BigDecimal("19.90"), decoded.typedValue());
+        assertEquals(42L, decoded.getId());
+    }
+    
+    @Test
+    void typedValueFollowsTheSortKey() {
+        assertEquals(4.5, ProductCursor.after(product(), "rating", "asc").typedValue());
+        assertEquals(CREATED, ProductCursor.after(product(), "created", "asc").typedValue());
+        assertEquals("Desk lamp", ProductCursor.after(product(), "name", "asc").typedValue());
+    }
+    
+    @Test
+    void nameContainingSeparatorCharactersSurvivesTheRoundTrip() {
+        ProductSummaryDTO product = product();
+        product.setName("a/b+c=d");
+        
+        ProductCursor decoded = ProductCursor.decode(
+            ProductCursor.after(product, "name", "asc").encode(), "name", "asc");
+        
+        assertEquals("a/b+c=d", decoded.typedValue());
+    }
+    
+    @Test
+    void unknownSortKeysFallBackToId() {
+        assertEquals("id", ProductCursor.normalizeSortBy(null));
+        assertEquals("id", ProductCursor.normalizeSortBy("stock; drop table products"));
+        assertEquals("price", ProductCursor.normalizeSortBy("PRICE"));
+    }
+    
+    @Test
+    void emptyTokenStartsFromTheFirstRow() {
+        assertNull(ProductCursor.decode(null, "price", "asc"));
+        assertNull(ProductCursor.decode("", "price", "asc"));
+    }
+    
+    @Test
+    void cursorOfAnotherSortOrderIsRejected() {
+        String token = ProductCursor.after(product(), "price", "asc").encode();
+        
+        assertThrows(InvalidRequestException.class, () -> ProductCursor.decode(token, "name", "asc"));
+        assertThrows(InvalidRequestException.class, () -> ProductCursor.decode(token, "price", "desc"));
+    }
+    
+    @Test
+    void malformedTokenIsRejected() {
+        InvalidRequestException e = assertThrows(InvalidRequestException.class,
+            () -> ProductCursor.decode("not base64!", "id", "asc"));
+        assertTrue(e.getMessage().contains("Invalid cursor"));
+        assertThrows(InvalidRequestException.class, () -> ProductCursor.decode("aWQ", "id", "asc"));
+    }
+    
+    @Test
+    void tamperedSortValueIsRejectedWhenDecoded() {
+        assertThrows(InvalidRequestException.class,
+            () -> ProductCursor.decode(new ProductCursor("created", false, "yesterday", 1L).encode(), "created", "asc"));
+        assertThrows(InvalidRequestException.class,
+            () -> ProductCursor.decode(new ProductCursor("price", false, "cheap", 1L).encode(), "price", "asc"));
+        assertThrows(InvalidRequestException.class,
+            () -> ProductCursor.decode(new ProductCursor("rating", false, "", 1L).encode(), "rating", "asc"));
+    }
+    
+    @Test
+    void nonNumericIdIsRejected() {
+        String token = Base64.getUrlEncoder().withoutPadding()
+            .encodeToString("id\u001Fa\u001F\u001Fx".getBytes(StandardCharsets.UTF_8));
+        
+        assertThrows(InvalidRequestException.class, () -> ProductCursor.decode(token, "id", "asc"));
+    }
+}
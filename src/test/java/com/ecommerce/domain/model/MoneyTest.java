@@ -0,0 +1,88 @@
+package com.ecommerce.domain.model;
+
+import org.junit.jupiter.api.Test;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MoneyTest {
+    
+    private static final Currency EUR = Currency.getInstance("EUR");
+    private static final Currency JPY = Currency.getInstance("JPY");
+    
+    @Test
+    void decimalAmountsConvertToMinorUnitsAndBack() {
+        assertEquals(1999, Money.toMinor(new BigDecimal("19.99")));
+        assertEquals(new BigDecimal("19.99"), Money.toDecimal(1999));
+        assertEquals(1500, Money.toMinor(new BigDecimal("1500"), JPY, RoundingMode.UNNECESSARY));
+        assertEquals(new BigDecimal("1500"), Money.toDecimal(1500, JPY));
+    }
+    
+    @Test
+    void extraDecimalsRoundHalfEvenByDefault() {
+        assertEquals(2, Money.toMinor(new BigDecimal("0.025")));
+        assertEquals(4, Money.toMinor(new BigDecimal("0.035")));
+        assertThrows(ArithmeticException.class,
+            () -> Money.toMinor(new BigDecimal("0.025"), Money.DEFAULT_CURRENCY, RoundingMode.UNNECESSARY));
+    }
+    
+    @Test
+    void percentageRoundsLikeBigDecimal() {
+        long[] amounts = { 1, 5, 15, 25, 999, 1001, -15, -25, 123_457 };
+        long[] basisPoints = { 1250, 5000, 3333, 10_000, 1 };
+        RoundingMode[] modes = { RoundingMode.UP, RoundingMode.DOWN, RoundingMode.CEILING, RoundingMode.FLOOR,
+            RoundingMode.HALF_UP, RoundingMode.HALF_DOWN, RoundingMode.HALF_EVEN };
+        for (long amount : amounts) {
+            for (long bp : basisPoints) {
+                for (RoundingMode mode : modes) {
+                    long expected = BigDecimal.valueOf(amount * bp)
+                        .divide(BigDecimal.valueOf(10_000), 0, mode).longValueExact();
+                    assertEquals(expected, Money.percentage(amount, bp, mode), amount + " * " + bp + " " + mode);
+                }
+            }
+        }
+    }
+    
+    @Test
+    void inexactPercentageRequiresARoundingMode() {
+        assertThrows(ArithmeticException.class, () -> Money.percentage(15, 5000, RoundingMode.UNNECESSARY));
+        assertEquals(5, Money.percentage(10, 5000, RoundingMode.UNNECESSARY));
+    }
+    
+    @Test
+    void percentIsConvertedToBasisPoints() {
+        assertEquals(1250, Money.toBasisPoints(new BigDecimal("12.5")));
+        assertEquals(10_000, Money.toBasisPoints(new BigDecimal("100")));
+    }
+    
+    @Test
+    void arithmeticStaysInOneCurrency() {
+        Money price = Money.ofMinor(1250);
+        
+        assertEquals(Money.ofMinor(3750), price.times(3));
+        assertEquals(Money.ofMinor(1000), price.minus(Money.ofMinor(250)));
+        assertEquals(Money.ofMinor(156), price.percentage(1250, RoundingMode.HALF_EVEN));
+        assertTrue(price.minus(Money.ofMinor(2000)).isNegative());
+        assertEquals(price, price.max(Money.zero()));
+        assertThrows(IllegalArgumentException.class, () -> price.plus(Money.ofMinor(100, EUR)));
+        assertThrows(IllegalArgumentException.class, () -> price.compareTo(Money.ofMinor(100, EUR)));
+    }
+    
+    @Test
+    void overflowIsAnError() {
+        assertThrows(ArithmeticException.class, () -> Money.ofMinor(Long.MAX_VALUE).plus(Money.ofMinor(1)));
+        assertThrows(ArithmeticException.class, () -> Money.ofMinor(Long.MAX_VALUE / 2).times(3));
+    }
+    
+    @Test
+    void equalityIncludesTheCurrency() {
+        assertEquals(Money.ofMinor(100), Money.of(new BigDecimal("1.00")));
+        assertNotEquals(Money.ofMinor(100), Money.ofMinor(100, EUR));
+        assertEquals("1.00 USD", Money.ofMinor(100).toString());
+    }
+}
@@ -0,0 +1,38 @@
+package com.ecommerce.resource;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductResourceTest {
+    
+    @Test
+    void gzipIsAcceptedWhenListedWithPositiveQuality() {
+        assertTrue(ProductResource.acceptsGzip("gzip, deflate, br"));
+        assertTrue(ProductResource.acceptsGzip("br;q=1.0, GZIP;q=0.5"));
+        assertTrue(ProductResource.acceptsGzip("x-gzip"));
+    }
+    
+    @Test
+    void zeroQualityRefusesGzip() {
+        assertFalse(ProductResource.acceptsGzip("gzip;q=0"));
+        assertFalse(ProductResource.acceptsGzip("br, gzip ; q=0.000"));
+        assertFalse(ProductResource.acceptsGzip("gzip;q=oops"));
+    }
+    
+    @Test
+    void wildcardOnlyAppliesWhenGzipIsNotListed() {
+        assertTrue(ProductResource.acceptsGzip("*"));
+        assertFalse(ProductResource.acceptsGzip("*;q=0"));
+        assertFalse(ProductResource.acceptsGzip("*, gzip;q=0"));
+    }
+    
+    @Test
+    void missingOrUnrelatedHeaderMeansIdentity() {
+        assertFalse(ProductResource.acceptsGzip(null));
+        assertFalse(ProductResource.acceptsGzip(""));
+        assertFalse(ProductResource.acceptsGzip("deflate, br"));
+        assertFalse(ProductResource.acceptsGzip("gzipped"));
+    }
+}
@@ -0,0 +1,105 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.dto.CartDTO;
+import org.junit.jupiter.api.Test;
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CartStateTest {
+    
+    private static CartState loaded() {
+        return CartState.loaded("user-1", 7L, List.of(
+            new CartState.Line(1L, 2, 1000, 2000),
+            new CartState.Line(2L, 1, 550, 550)));
+    }
+    
+    @Test
+    void loadedCartIsCleanAndTotalled() {
+        CartState cart = loaded();
+        
+        assertEquals(2550, cart.total());
+        assertFalse(cart.dirty());
+    }
+    
+    @Test
+    void addingRepricesTheLineAtTheCurrentPrice() {
+        CartState cart = loaded().add(1L, 1, 900);
+        
+        assertEquals(3, cart.lines().get(1L).quantity());
+        assertEquals(2700, cart.lines().get(1L).subtotal());
+        assertEquals(3250, cart.total());
+        assertTrue(cart.dirty());
+    }
+    
+    @Test
+    void zeroQuantityRemovesTheLine() {
+        CartState cart = loaded().withQuantity(2L, 0, 550);
+        
+        assertFalse(cart.lines().containsKey(2L));
+        assertEquals(2000, cart.total());
+    }
+    
+    @Test
+    void mutationsLeaveTheOriginalUntouched() {
+        CartState original = loaded();
+        
+        original.add(3L, 4, 100);
+        
+        assertEquals(2, original.lines().size());
+        assertEquals(2550, original.total());
+        assertThrows(UnsupportedOperationException.class, () -> original.lines().remove(1L));
+    }
+    
+    @Test
+    void bulkQuantitiesRecomputeTheTotal() {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        quantities.put(1L, 0);
+        quantities.put(3L, 2);
+        
+        CartState cart = loaded().withQuantities(quantities, Map.of(3L, 125L));
+        
+        assertEquals(List.of(2L, 3L), List.copyOf(cart.lines().keySet()));
+        assertEquals(800, cart.total());
+    }
+    
+    @Test
+    void repricingWithoutChangesReturnsTheSameInstance() {
+        CartState cart = loaded();
+        
+        assertSame(cart, cart.reprice(Map.of(1L, 1000L, 9L, 1L)));
+        
+        CartState repriced = cart.reprice(Map.of(2L, 600L));
+        assertEquals(2600, repriced.total());
+        assertTrue(repriced.dirty());
+    }
+    
+    @Test
+    void flushingKeepsTheLinesAndClearsDirty() {
+        CartState flushed = CartState.empty("user-1").add(1L, 1, 100).flushed(11L);
+        
+        assertEquals(11L, flushed.cartId());
+        assertFalse(flushed.dirty());
+        assertEquals(100, flushed.total());
+    }
+    
+    @Test
+    void overflowingTotalIsAnError() {
+        assertThrows(ArithmeticException.class, () -> CartState.empty("user-1").add(1L, 2, Long.MAX_VALUE / 2 + 1));
+    }
+    
+    @Test
+    void dtoCarriesDecimalAmounts() {
+        CartDTO dto = loaded().toDTO();
+        
+        assertEquals(new BigDecimal("25.50"), dto.getTotalAmount());
+        assertEquals(new BigDecimal("20.00"), dto.getItems().get(0).getSubtotal());
+    }
+}
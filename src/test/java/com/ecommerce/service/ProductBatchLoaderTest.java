@@ -0,0 +1,159 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.model.Product;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.common.vertx.VertxContext;
+import io.smallrye.mutiny.CompositeException;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import org.hibernate.reactive.mutiny.Mutiny;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProductBatchLoaderTest {
+    
+    private static final Long MISSING_ID = 99L;
+    
+    private Vertx vertx;
+    private SimpleMeterRegistry registry;
+    private ProductBatchLoader loader;
+    // The ids of each "id in (...)" query, in the order they ran
+    private final List<List<Long>> queries = new CopyOnWriteArrayList<>();
+    private volatile RuntimeException queryFailure;
+    
+    @BeforeEach
+    void setUp() {
+        vertx = Vertx.vertx();
+        registry = new SimpleMeterRegistry();
+        loader = new ProductBatchLoader();
+        loader.sessionFactory = sessionFactory();
+        loader.registry = registry;
+        loader.init();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        vertx.close().toCompletionStage().toCompletableFuture().join();
+    }
+    
+    @Test
+    void loadsRequestedInOneTickShareOneQuery() throws Exception {
+        List<Product> products = onEventLoop(() -> Uni.join()
+            .all(loader.load(1L), loader.load(2L), loader.load(1L), loader.load(MISSING_ID))
+            .andFailFast());
+        
+        assertEquals(1, queries.size());
+        assertEquals(List.of(1L, 2L, 99L), sorted(queries.get(0)));
+        assertEquals(1L, products.get(0).getId());
+        assertEquals(2L, products.get(1).getId());
+        assertEquals(1L, products.get(2).getId());
+        // Products that do not exist complete with null
+        assertNull(products.get(3));
+        assertEquals(3.0, registry.get("product.loader.batch.size").summary().totalAmount());
+    }
+    
+    @Test
+    void largeBatchesAreSplitIntoChunks() throws Exception {
+        List<Long> ids = LongStream.rangeClosed(101, 1300).boxed().collect(Collectors.toList());
+        
+        Map<Long, Product> products = onEventLoop(() -> loader.loadAll(ids));
+        
+        assertEquals(1200, products.size());
+        assertEquals(List.of(500, 500, 200), queries.stream().map(List::size).collect(Collectors.toList()));
+    }
+    
+    @Test
+    void failedQueryFailsEveryWaiter() {
+        queryFailure = new IllegalStateException("connection lost");
+        
+        ExecutionException failure = assertThrows(ExecutionException.class,
+            () -> onEventLoop(() -> Uni.join().all(loader.load(1L), loader.load(2L)).andCollectFailures()));
+        
+        CompositeException failures = assertInstanceOf(CompositeException.class, failure.getCause());
+        assertEquals(2, failures.getCauses().size());
+        failures.getCauses().forEach(cause -> assertEquals("connection lost", cause.getMessage()));
+        assertEquals(1, queries.size());
+    }
+    
+    @Test
+    void loadsOffTheEventLoopAreRefused() {
+        Throwable failure = assertThrows(RuntimeException.class, () -> loader.load(1L).await().indefinitely());
+        
+        assertInstanceOf(IllegalStateException.class, failure);
+    }
+    
+    // Subscribes on a duplicated context, like a request, and waits for the result
+    private <T> T onEventLoop(Supplier<Uni<T>> work) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Context request = VertxContext.createNewDuplicatedContext(vertx.getOrCreateContext());
+        request.runOnContext(ignored -> work.get().subscribe().with(result::complete, result::completeExceptionally));
+        return result.get(10, TimeUnit.SECONDS);
+    }
+    
+    private static List<Long> sorted(Collection<Long> ids) {
+        return ids.stream().sorted().collect(Collectors.toList());
+    }
+    
+    // Only what the loader calls: withStatelessSession, createQuery, setParameter and getResultList
+    @SuppressWarnings("unchecked")
+    private Mutiny.SessionFactory sessionFactory() {
+        Mutiny.StatelessSession session = proxy(Mutiny.StatelessSession.class, (method, args) -> {
+            List<Long> ids = new ArrayList<>();
+            Object[] query = new Object[1];
+            query[0] = proxy(Mutiny.SelectionQuery.class, (queryMethod, queryArgs) -> {
+                if (queryMethod.equals("setParameter")) {
+                    ids.addAll((Collection<Long>) queryArgs[1]);
+                    return query[0];
+                }
+                queries.add(List.copyOf(ids));
+                if (queryFailure != null) {
+                    return Uni.createFrom().failure(queryFailure);
+                }
+                return Uni.createFrom().item(ids.stream()
+                    .filter(id -> !id.equals(MISSING_ID))
+                    .map(ProductBatchLoaderTest::product)
+                    .collect(Collectors.toList()));
+            });
+            return query[0];
+        });
+        return proxy(Mutiny.SessionFactory.class, (method, args) ->
+            ((Function<Mutiny.StatelessSession, Uni<?>>) args[args.length - 1]).apply(session));
+    }
+    
+    private static Product product(Long id) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName("Product " + id);
+        return product;
+    }
+    
+    private interface Call {
+        Object invoke(String method, Object[] args);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Call call) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+            (self, method, args) -> call.invoke(method.getName(), args));
+    }
+}
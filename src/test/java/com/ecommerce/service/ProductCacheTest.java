@@ -0,0 +1,81 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.dto.ProductDetailDTO;
+import com.ecommerce.domain.model.Product;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ProductCacheTest {
+    
+    private SimpleMeterRegistry registry;
+    private ProductCache cache;
+    
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        cache = new ProductCache();
+        cache.maximumSize = 100;
+        cache.expireAfterWrite = Duration.ofMinutes(10);
+        cache.registry = registry;
+        cache.init();
+    }
+    
+    @Test
+    void newerAnnouncementInvalidatesTheEntry() {
+        cache.put(snapshot(1L, 3L));
+        
+        cache.onChange(1L, 3L, 0);
+        assertEquals(3L, cache.get(1L).getVersion());
+        
+        cache.onChange(1L, 4L, 0);
+        assertNull(cache.get(1L));
+        assertEquals(1.0, registry.get("product.cache.stale.entries").counter().count());
+    }
+    
+    @Test
+    void loadOlderThanTheAnnouncedVersionIsNotCached() {
+        // The notification overtook a read that started before the commit
+        cache.onChange(1L, 5L, 0);
+        cache.put(snapshot(1L, 4L));
+        
+        assertNull(cache.get(1L));
+        assertEquals(1.0, registry.get("product.cache.stale.loads").counter().count());
+        
+        cache.put(snapshot(1L, 5L));
+        assertEquals(5L, cache.get(1L).getVersion());
+    }
+    
+    @Test
+    void slowerLoadOfAnOlderVersionDoesNotReplaceANewerEntry() {
+        ProductDetailDTO newer = snapshot(1L, 7L);
+        cache.put(newer);
+        cache.put(snapshot(1L, 6L));
+        
+        assertSame(newer, cache.get(1L));
+    }
+    
+    @Test
+    void deletedProductStaysUncached() {
+        cache.put(snapshot(1L, 2L));
+        
+        cache.onDelete(1L, System.currentTimeMillis());
+        cache.put(snapshot(1L, 2L));
+        
+        assertNull(cache.get(1L));
+        assertEquals(1, registry.get("product.cache.notification.lag").timer().count());
+    }
+    
+    private static ProductDetailDTO snapshot(Long id, Long version) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName("Product " + id);
+        product.setVersion(version);
+        return new ProductDetailDTO(product);
+    }
+}
@@ -0,0 +1,83 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.dto.RelatedProductDTO;
+import org.junit.jupiter.api.Test;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductCoOccurrenceTest {
+    
+    private static ProductCoOccurrence coOccurrence(int partnersPerProduct) {
+        ProductCoOccurrence coOccurrence = new ProductCoOccurrence();
+        coOccurrence.partnersPerProduct = partnersPerProduct;
+        return coOccurrence;
+    }
+    
+    private static List<Long> ids(List<RelatedProductDTO> related) {
+        return related.stream().map(RelatedProductDTO::getProductId).toList();
+    }
+    
+    @Test
+    void pairsAreCountedOncePerOrderInBothDirections() {
+        ProductCoOccurrence coOccurrence = coOccurrence(10);
+        coOccurrence.recordOrder(Arrays.asList(1L, 2L, 2L, null));
+        coOccurrence.recordOrder(List.of(1L, 2L, 3L));
+        
+        List<RelatedProductDTO> related = coOccurrence.related(1L, 10);
+        
+        assertEquals(List.of(2L, 3L), ids(related));
+        assertEquals(2, related.get(0).getOrders());
+        assertEquals(1, related.get(1).getOrders());
+        assertEquals(List.of(1L, 3L), ids(coOccurrence.related(2L, 10)));
+    }
+    
+    @Test
+    void singleProductOrdersAreIgnored() {
+        ProductCoOccurrence coOccurrence = coOccurrence(10);
+        coOccurrence.recordOrder(List.of(1L, 1L));
+        
+        assertTrue(coOccurrence.related(1L, 10).isEmpty());
+    }
+    
+    @Test
+    void fullRowKeepsTheStrongestPartners() {
+        ProductCoOccurrence coOccurrence = coOccurrence(3);
+        // The newcomers all churn through the one remaining counter, which never exceeds 20
+        for (int i = 0; i < 30; i++) {
+            coOccurrence.recordOrder(List.of(1L, 2L));
+            coOccurrence.recordOrder(List.of(1L, 3L));
+        }
+        for (long partner = 10; partner < 30; partner++) {
+            coOccurrence.recordOrder(List.of(1L, partner));
+        }
+        
+        List<Long> related = ids(coOccurrence.related(1L, 3));
+        
+        assertEquals(3, related.size());
+        assertTrue(related.containsAll(List.of(2L, 3L)));
+    }
+    
+    @Test
+    void hugeOrdersOnlyPairTheFirstProducts() {
+        ProductCoOccurrence coOccurrence = coOccurrence(200);
+        coOccurrence.recordOrder(LongStream.rangeClosed(1, 80).boxed().toList());
+        
+        assertEquals(ProductCoOccurrence.MAX_PRODUCTS_PER_ORDER - 1, coOccurrence.related(1L, 200).size());
+        assertTrue(coOccurrence.related(80L, 10).isEmpty());
+    }
+    
+    @Test
+    void removedProductsDropOutOfRankings() {
+        ProductCoOccurrence coOccurrence = coOccurrence(10);
+        coOccurrence.recordOrder(List.of(1L, 2L, 3L));
+        
+        coOccurrence.remove(2L);
+        
+        assertEquals(List.of(3L), ids(coOccurrence.related(1L, 10)));
+        assertTrue(coOccurrence.related(2L, 10).isEmpty());
+    }
+}
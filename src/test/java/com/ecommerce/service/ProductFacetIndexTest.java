@@ -0,0 +1,150 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.dto.ProductFacetsDTO;
+import com.ecommerce.domain.dto.ProductFilterDTO;
+import com.ecommerce.domain.repository.ProductRepository;
+import io.smallrye.mutiny.Uni;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ProductFacetIndexTest {
+    
+    // id, category id, price, average rating, stock quantity
+    private static final List<Object[]> PRODUCTS = List.of(
+        new Object[] { 1L, 10L, new BigDecimal("19.99"), 4.5, 5 },
+        new Object[] { 2L, 10L, new BigDecimal("45.00"), 3.2, 0 },
+        new Object[] { 3L, 20L, new BigDecimal("120.00"), null, 2 },
+        new Object[] { 4L, 20L, new BigDecimal("600.00"), 4.0, 1 });
+    private static final List<Object[]> TAGS = List.of(
+        new Object[] { 1L, "Sale" },
+        new Object[] { 1L, "summer" },
+        new Object[] { 2L, "sale" },
+        new Object[] { 3L, "winter" });
+    
+    private ProductFacetIndex index;
+    
+    @BeforeEach
+    void setUp() {
+        index = new ProductFacetIndex();
+        index.categoryTree = new CategoryTree();
+        index.searchIndex = new ProductSearchIndex();
+        index.productRepository = new ProductRepository() {
+            @Override
+            public Uni<List<Object[]>> findFacetDocuments(long afterId, int limit) {
+                return Uni.createFrom().item(afterId == 0 ? PRODUCTS : List.of());
+            }
+            
+            @Override
+            public Uni<List<Object[]>> findTagNames(Collection<Long> productIds) {
+                return Uni.createFrom().item(TAGS);
+            }
+        };
+        assertEquals(4, index.rebuild().await().indefinitely());
+    }
+    
+    @Test
+    void nothingIsAnsweredBeforeTheFirstBuild() {
+        assertNull(new ProductFacetIndex().retainMatching(List.of(1L), new ProductFilterDTO()));
+    }
+    
+    @Test
+    void tagsMatchAnyOrAllCaseInsensitively() {
+        assertArrayEquals(new long[] { 1, 2 }, index.productIdsWithTags(List.of("sale"), false));
+        assertArrayEquals(new long[] { 1, 2, 3 }, index.productIdsWithTags(List.of("SALE", " winter"), false));
+        assertArrayEquals(new long[] { 1 }, index.productIdsWithTags(List.of("sale", "summer"), true));
+        assertArrayEquals(new long[0], index.productIdsWithTags(List.of("sale", "unknown"), true));
+    }
+    
+    @Test
+    void retaggingReplacesTheProductsTags() {
+        index.indexTags(1L, List.of("Winter", " clearance "));
+        
+        assertArrayEquals(new long[] { 2 }, index.productIdsWithTags(List.of("sale"), false));
+        assertArrayEquals(new long[0], index.productIdsWithTags(List.of("summer"), false));
+        assertArrayEquals(new long[] { 1, 3 }, index.productIdsWithTags(List.of("winter"), false));
+        assertArrayEquals(new long[] { 1 }, index.productIdsWithTags(List.of("winter", "clearance"), true));
+        
+        index.indexTags(1L, List.of());
+        assertArrayEquals(new long[] { 3 }, index.productIdsWithTags(List.of("winter", "clearance"), false));
+    }
+    
+    @Test
+    void tagFiltersApplyToRetainedCandidates() {
+        ProductFilterDTO anyTag = new ProductFilterDTO();
+        anyTag.setTags(Set.of("summer", "winter"));
+        assertEquals(List.of(3L, 1L), index.retainMatching(List.of(4L, 3L, 2L, 1L), anyTag));
+        
+        ProductFilterDTO allTags = new ProductFilterDTO();
+        allTags.setTags(Set.of("sale", "summer"));
+        allTags.setTagMatch("all");
+        assertEquals(List.of(1L), index.retainMatching(List.of(4L, 3L, 2L, 1L), allTags));
+    }
+    
+    @Test
+    void retainedCandidatesKeepTheirOrder() {
+        ProductFilterDTO byCategory = new ProductFilterDTO();
+        byCategory.setCategoryId(10L);
+        assertEquals(List.of(2L, 1L), index.retainMatching(List.of(4L, 3L, 2L, 1L), byCategory));
+        
+        ProductFilterDTO byPrice = new ProductFilterDTO();
+        byPrice.setMinPrice(new BigDecimal("45"));
+        byPrice.setMaxPrice(new BigDecimal("120"));
+        assertEquals(List.of(3L, 2L), index.retainMatching(List.of(4L, 3L, 2L, 1L, 99L), byPrice));
+        
+        ProductFilterDTO byRating = new ProductFilterDTO();
+        byRating.setMinRating(4.0);
+        byRating.setInStock(true);
+        assertEquals(List.of(4L, 1L), index.retainMatching(List.of(4L, 3L, 2L, 1L), byRating));
+    }
+    
+    @Test
+    void eachFacetIgnoresItsOwnFilter() {
+        ProductFilterDTO filter = new ProductFilterDTO();
+        filter.setCategoryId(10L);
+        
+        ProductFacetsDTO facets = index.facets(filter).await().indefinitely();
+        
+        assertEquals(2, facets.getTotal());
+        assertEquals(Map.of(10L, 2L, 20L, 2L), facets.getCategories());
+        assertEquals(1L, facets.getPriceRanges().get("0-25"));
+        assertEquals(1L, facets.getPriceRanges().get("25-50"));
+        assertEquals(0L, facets.getPriceRanges().get("500+"));
+        assertEquals(1L, facets.getRatings().get("4+"));
+        assertEquals(2L, facets.getRatings().get("3+"));
+        assertEquals(1, facets.getInStock());
+        assertEquals(1, facets.getOutOfStock());
+        assertEquals(Map.of("sale", 2L, "summer", 1L), facets.getTags());
+    }
+    
+    @Test
+    void removedDocIdsAreReused() {
+        index.remove(2L);
+        index.index(5L, 30L, new BigDecimal("5.00"), null, 1);
+        index.indexTags(5L, Set.of("sale"));
+        
+        assertArrayEquals(new long[] { 1, 5 }, index.productIdsWithTags(List.of("sale"), false));
+        ProductFacetsDTO facets = index.facets(new ProductFilterDTO()).await().indefinitely();
+        assertEquals(4, facets.getTotal());
+        assertEquals(2L, facets.getPriceRanges().get("0-25"));
+    }
+    
+    @Test
+    void reindexingMovesTheProductBetweenFacets() {
+        index.index(1L, 20L, new BigDecimal("19.99"), 4.5, 0);
+        
+        ProductFilterDTO filter = new ProductFilterDTO();
+        filter.setCategoryId(20L);
+        assertEquals(List.of(1L, 3L, 4L), index.retainMatching(List.of(1L, 2L, 3L, 4L), filter));
+        // Tags are kept when only the product row changes
+        assertArrayEquals(new long[] { 1 }, index.productIdsWithTags(List.of("summer"), false));
+    }
+}
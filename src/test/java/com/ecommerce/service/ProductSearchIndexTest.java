@@ -0,0 +1,100 @@
+package com.ecommerce.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductSearchIndexTest {
+    
+    private ProductSearchIndex index;
+    
+    @BeforeEach
+    void setUp() {
+        index = new ProductSearchIndex();
+        index.ratingWeight = 0.2;
+        index.salesWeight = 0.3;
+        index.favoritesWeight = 0.1;
+        index.index(1L, "Red running shoes", "Lightweight shoes for road running");
+        index.index(2L, "Blue rain jacket", "Keeps you dry on a run");
+        index.index(3L, "Running socks", "Pack of three");
+        index.indexTags(3L, List.of("Running", "Outdoor"));
+    }
+    
+    @Test
+    void everyTokenMustMatchAsPrefix() {
+        assertEquals(Set.of(1L, 3L), index.search("runn"));
+        assertEquals(Set.of(1L), index.search("RED run"));
+        assertEquals(Set.of(2L), index.search("run jacket"));
+        assertEquals(Set.of(), index.search("red jacket"));
+        assertEquals(Set.of(), index.search("  --  "));
+    }
+    
+    @Test
+    void tagsAreSearchable() {
+        assertEquals(Set.of(3L), index.search("outdoor"));
+    }
+    
+    @Test
+    void reindexingReplacesTheOldTerms() {
+        index.index(1L, "Green hiking boots", null);
+        
+        assertEquals(Set.of(), index.search("red"));
+        assertEquals(Set.of(1L), index.search("hiking"));
+        // Tags survive a text update
+        index.indexTags(1L, List.of("trail"));
+        index.index(1L, "Green hiking boots", "Waterproof");
+        assertEquals(Set.of(1L), index.search("trail"));
+    }
+    
+    @Test
+    void removedProductsNoLongerMatch() {
+        index.remove(3L);
+        
+        assertEquals(Set.of(1L), index.search("running"));
+        assertEquals(Set.of(), index.search("outdoor"));
+    }
+    
+    @Test
+    void queryTokensAreTheIndexedTermsInQueryOrder() {
+        // The SQL fallback matches these same tokens, so both paths agree on a term
+        assertEquals(List.of("t", "shirt", "blue"), ProductSearchIndex.tokens("T-Shirt  BLUE shirt"));
+        assertEquals(List.of("café", "50cl"), ProductSearchIndex.tokens("Café (50cl)"));
+        assertTrue(ProductSearchIndex.tokens(" -- ").isEmpty());
+        assertTrue(ProductSearchIndex.tokens(null).isEmpty());
+    }
+    
+    @Test
+    void wholeWordMatchOutranksPrefixMatches() {
+        List<Long> ranked = index.rank("run", List.of(1L, 2L, 3L));
+        
+        // "run" is only a prefix of "running", but a whole word in product 2's description
+        assertEquals(2L, ranked.get(0));
+    }
+    
+    @Test
+    void popularityBreaksTiesBetweenEquallyRelevantProducts() {
+        index.index(10L, "Coffee mug", null);
+        index.index(11L, "Coffee mug", null);
+        index.updateRating(10L, 1.0);
+        index.updateRating(11L, 1.0);
+        index.addSales(11L, 40);
+        
+        assertEquals(List.of(11L, 10L), index.rank("mug", List.of(10L, 11L)));
+        
+        index.addFavorites(10L, 500);
+        index.addSales(10L, 40);
+        assertEquals(List.of(10L, 11L), index.rank("mug", List.of(10L, 11L)));
+    }
+    
+    @Test
+    void unknownCandidatesRankLastInIdOrder() {
+        List<Long> ranked = index.rank("socks", List.of(99L, 3L, 98L));
+        
+        assertEquals(List.of(3L, 98L, 99L), ranked);
+        assertTrue(index.rank("socks", List.of()).isEmpty());
+    }
+}
@@ -0,0 +1,124 @@
+package com.ecommerce.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.Cancellable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SingleFlightTest {
+    
+    private SimpleMeterRegistry registry;
+    private SingleFlight<Long, String> flights;
+    private List<CompletableFuture<String>> loads;
+    
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        flights = new SingleFlight<>("products", registry);
+        loads = new ArrayList<>();
+    }
+    
+    @Test
+    void concurrentCallersShareOneLoad() {
+        AtomicReference<String> first = new AtomicReference<>();
+        AtomicReference<String> second = new AtomicReference<>();
+        flights.execute(1L, this::load).subscribe().with(first::set);
+        flights.execute(1L, this::load).subscribe().with(second::set);
+        
+        assertEquals(1, loads.size());
+        loads.get(0).complete("shoes");
+        
+        assertEquals("shoes", first.get());
+        assertEquals("shoes", second.get());
+        assertEquals(1.0, count("leader"));
+        assertEquals(1.0, count("follower"));
+    }
+    
+    @Test
+    void differentKeysLoadSeparately() {
+        flights.execute(1L, this::load).subscribe().with(ignored -> { });
+        flights.execute(2L, this::load).subscribe().with(ignored -> { });
+        
+        assertEquals(2, loads.size());
+    }
+    
+    @Test
+    void finishedFlightIsNotReused() {
+        AtomicInteger calls = new AtomicInteger();
+        
+        assertEquals("1", flights.execute(1L, () -> Uni.createFrom().item(String.valueOf(calls.incrementAndGet())))
+            .await().indefinitely());
+        assertEquals("2", flights.execute(1L, () -> Uni.createFrom().item(String.valueOf(calls.incrementAndGet())))
+            .await().indefinitely());
+    }
+    
+    @Test
+    void failureReachesEveryWaiterAndIsNotCached() {
+        AtomicReference<Throwable> first = new AtomicReference<>();
+        AtomicReference<Throwable> second = new AtomicReference<>();
+        flights.execute(1L, this::load).subscribe().with(ignored -> { }, first::set);
+        flights.execute(1L, this::load).subscribe().with(ignored -> { }, second::set);
+        
+        IllegalStateException failure = new IllegalStateException("connection lost");
+        loads.get(0).completeExceptionally(failure);
+        
+        assertSame(failure, first.get());
+        assertSame(failure, second.get());
+        flights.execute(1L, this::load).subscribe().with(ignored -> { });
+        assertEquals(2, loads.size());
+    }
+    
+    @Test
+    void forgottenFlightStillAnswersItsWaiters() {
+        AtomicReference<String> before = new AtomicReference<>();
+        AtomicReference<String> after = new AtomicReference<>();
+        flights.execute(1L, this::load).subscribe().with(before::set);
+        
+        // A change notification arrived while the first load was running
+        flights.forget(1L);
+        flights.execute(1L, this::load).subscribe().with(after::set);
+        assertEquals(2, loads.size());
+        
+        loads.get(1).complete("v2");
+        assertNull(before.get());
+        assertEquals("v2", after.get());
+        loads.get(0).complete("v1");
+        assertEquals("v1", before.get());
+        
+        // The first flight finishing must not drop the second one from the map
+        flights.execute(1L, this::load).subscribe().with(ignored -> { });
+        assertEquals(3, loads.size());
+    }
+    
+    @Test
+    void cancelledWaiterDoesNotCancelTheOthers() {
+        AtomicReference<String> kept = new AtomicReference<>();
+        Cancellable cancelled = flights.execute(1L, this::load).subscribe().with(ignored -> { });
+        flights.execute(1L, this::load).subscribe().with(kept::set);
+        
+        cancelled.cancel();
+        loads.get(0).complete("shoes");
+        
+        assertEquals("shoes", kept.get());
+    }
+    
+    private Uni<String> load() {
+        CompletableFuture<String> load = new CompletableFuture<>();
+        loads.add(load);
+        return Uni.createFrom().completionStage(load);
+    }
+    
+    private double count(String role) {
+        return registry.get("singleflight.requests").tag("role", role).counter().count();
+    }
+}
@@ -0,0 +1,105 @@
+package com.ecommerce.service;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StockReservationsTest {
+    
+    @Test
+    void reservationOfLiveReplicaIsHeldElsewhere() {
+        assertTrue(StockReservations.stillHeld("RESERVED", true));
+    }
+    
+    @Test
+    void ownerReclaimedOrderPaidTakesStockFromProducts() {
+        // The owner stopped renewing and its peers returned the leased units to stock_quantity;
+        // nobody will confirm the reservation, so the paying replica must deduct the stock
+        assertFalse(StockReservations.stillHeld("RESERVED", false));
+    }
+    
+    @Test
+    void endedReservationIsNotHeld() {
+        assertFalse(StockReservations.stillHeld("CONFIRMED", true));
+        assertFalse(StockReservations.stillHeld("RELEASED", true));
+        assertFalse(StockReservations.stillHeld("EXPIRED", true));
+        assertFalse(StockReservations.stillHeld(null, true));
+    }
+    
+    @Test
+    void takeMovesOnToOtherStripesUntilSatisfied() throws Exception {
+        StockReservations.Stock stock = new StockReservations.Stock(4);
+        // Each thread puts into its own stripe, so the units end up spread out
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> puts = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                puts.add(executor.submit(() -> stock.put(5)));
+            }
+            for (Future<?> put : puts) {
+                put.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        assertEquals(20, stock.free());
+        assertEquals(12, stock.take(12));
+        assertEquals(8, stock.free());
+        // Asking for more than is left takes what there is
+        assertEquals(8, stock.take(10));
+        assertEquals(0, stock.free());
+        assertEquals(0, stock.take(1));
+    }
+    
+    @Test
+    void nonPositivePutsAreIgnored() {
+        StockReservations.Stock stock = new StockReservations.Stock(0);
+        
+        stock.put(0);
+        stock.put(-3);
+        
+        assertEquals(0, stock.free());
+    }
+    
+    @Test
+    void concurrentTakesNeverHandOutMoreThanWasPut() throws Exception {
+        StockReservations.Stock stock = new StockReservations.Stock(8);
+        stock.put(1000);
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> takers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                takers.add(executor.submit(() -> {
+                    start.await();
+                    int got = 0;
+                    for (int j = 0; j < 100; j++) {
+                        got += stock.take(1);
+                    }
+                    return got;
+                }));
+            }
+            start.countDown();
+            int taken = 0;
+            for (Future<Integer> taker : takers) {
+                taken += taker.get(30, TimeUnit.SECONDS);
+            }
+            
+            assertEquals(1000, taken);
+            assertEquals(0, stock.free());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.ecommerce.service;
+
+import com.ecommerce.domain.dto.TrendingProductDTO;
+import com.ecommerce.domain.dto.TrendingSketchDTO;
+import org.junit.jupiter.api.Test;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrendingProductsTest {
+    
+    private static TrendingProducts trending(int stripes, int candidatesPerBucket) {
+        TrendingProducts trending = new TrendingProducts();
+        trending.window = Duration.ofHours(1);
+        trending.bucketCount = 12;
+        trending.depth = 4;
+        trending.width = 2048;
+        trending.candidatesPerBucket = candidatesPerBucket;
+        trending.stripeCount = stripes;
+        trending.viewWeight = 1;
+        trending.cartWeight = 5;
+        trending.favoriteWeight = 3;
+        trending.init();
+        return trending;
+    }
+    
+    @Test
+    void signalsAreWeighted() {
+        TrendingProducts trending = trending(1, 10);
+        for (int i = 0; i < 4; i++) {
+            trending.record(1L, TrendingProducts.Signal.VIEW);
+        }
+        trending.record(2L, TrendingProducts.Signal.CART);
+        trending.record(3L, TrendingProducts.Signal.FAVORITE);
+        trending.record(null, TrendingProducts.Signal.VIEW);
+        
+        List<TrendingProductDTO> top = trending.trending(10);
+        
+        assertEquals(List.of(2L, 1L, 3L), top.stream().map(TrendingProductDTO::getProductId).toList());
+        assertEquals(List.of(5L, 4L, 3L), top.stream().map(TrendingProductDTO::getScore).toList());
+    }
+    
+    @Test
+    void stripesRecordedByDifferentThreadsAddUp() throws Exception {
+        TrendingProducts trending = trending(4, 50);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> recorders = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                recorders.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        trending.record(7L, TrendingProducts.Signal.VIEW);
+                        trending.record(100L + i % 20, TrendingProducts.Signal.VIEW);
+                    }
+                }));
+            }
+            for (Future<?> recorder : recorders) {
+                recorder.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        TrendingProductDTO top = trending.trending(1).get(0);
+        
+        assertEquals(7L, top.getProductId());
+        // Count-Min never underestimates; with 21 products in 2048 columns it is exact here
+        assertEquals(8000, top.getScore());
+    }
+    
+    @Test
+    void spaceSavingKeepsTheHeavyHitter() {
+        TrendingProducts trending = trending(1, 5);
+        for (long id = 1; id <= 500; id++) {
+            trending.record(id, TrendingProducts.Signal.VIEW);
+            trending.record(42L, TrendingProducts.Signal.CART);
+        }
+        
+        assertEquals(42L, trending.trending(1).get(0).getProductId());
+        assertTrue(trending.snapshot().getCandidates().size() <= 12 * 5);
+    }
+    
+    @Test
+    void sketchesOfReplicasMergeCellByCell() {
+        TrendingProducts first = trending(2, 10);
+        TrendingProducts second = trending(2, 10);
+        first.record(1L, TrendingProducts.Signal.CART);
+        first.record(2L, TrendingProducts.Signal.VIEW);
+        second.record(2L, TrendingProducts.Signal.CART);
+        second.record(2L, TrendingProducts.Signal.CART);
+        
+        List<TrendingProductDTO> merged = first.merge(List.of(first.snapshot(), second.snapshot()), 10);
+        
+        assertEquals(2L, merged.get(0).getProductId());
+        assertEquals(11, merged.get(0).getScore());
+        assertEquals(5, merged.get(1).getScore());
+    }
+    
+    @Test
+    void mismatchedOrOversizedSketchesAreRejected() {
+        TrendingProducts trending = trending(1, 10);
+        TrendingSketchDTO snapshot = trending.snapshot();
+        
+        assertThrows(IllegalArgumentException.class, () -> trending.merge(List.of(), 10));
+        
+        TrendingSketchDTO narrow = new TrendingSketchDTO(snapshot.getWindowEnd(), snapshot.getWindowMillis(),
+            4, 1024, new long[4 * 1024], List.of());
+        assertThrows(IllegalArgumentException.class, () -> trending.merge(List.of(narrow), 10));
+        
+        List<Long> tooMany = LongStream.rangeClosed(1, 12 * 10 + 1).boxed().toList();
+        TrendingSketchDTO flooded = new TrendingSketchDTO(snapshot.getWindowEnd(), snapshot.getWindowMillis(),
+            4, 2048, new long[4 * 2048], tooMany);
+        assertThrows(IllegalArgumentException.class, () -> trending.merge(List.of(flooded), 10));
+        
+        assertThrows(IllegalArgumentException.class,
+            () -> trending.merge(Collections.nCopies(65, snapshot), 10));
+    }
+}